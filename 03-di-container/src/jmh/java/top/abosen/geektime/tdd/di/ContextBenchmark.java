@@ -0,0 +1,121 @@
+package top.abosen.geektime.tdd.di;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.annotation.Annotation;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从 Context 解析组件的耗时: 复用的 ComponentRef 命中已缓存的 id, 新建的 ComponentRef 需要查找一次
+ * <p>
+ * ./gradlew jmh -PjmhArgs="ContextBenchmark -prof gc", 单例与 Provider 的解析不应分配对象;
+ * metrics=true 时为开启 {@link ComponentStatistics} 的开销
+ *
+ * @author qiubaisen
+ * @date 2023/2/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextBenchmark {
+    private static final int COMPONENTS = 1000;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    private Context context;
+    private ComponentRef<Service> singleton;
+    private ComponentRef<Service> prototype;
+    private ComponentRef<Provider<Service>> provider;
+    private Provider<Service> injected;
+
+    @Setup
+    public void setup() {
+        ContextConfig config = new ContextConfig();
+        if (metrics) config.metrics(new ComponentStatistics());
+        config.bindComponent(Repository.class, Repository.class);
+        for (int i = 0; i < COMPONENTS; i++) {
+            config.bindComponent(Service.class, SingletonService.class, new NamedLiteral("singleton-" + i));
+            config.bindComponent(Service.class, PrototypeService.class, new NamedLiteral("prototype-" + i));
+        }
+        context = config.getContext();
+        singleton = ComponentRef.of(Service.class, new NamedLiteral("singleton-" + COMPONENTS / 2));
+        prototype = ComponentRef.of(Service.class, new NamedLiteral("prototype-" + COMPONENTS / 2));
+        provider = new ComponentRef<>(new NamedLiteral("singleton-" + COMPONENTS / 2)) {
+        };
+        injected = ((PrototypeService) context.get(prototype)).provider;
+    }
+
+    @Benchmark
+    public Object singleton() {
+        return context.get(singleton);
+    }
+
+    @Benchmark
+    public Object singletonWithNewRef() {
+        return context.get(ComponentRef.of(Service.class, new NamedLiteral("singleton-" + COMPONENTS / 2)));
+    }
+
+    @Benchmark
+    public Object prototype() {
+        return context.get(prototype);
+    }
+
+    @Benchmark
+    public Object provider() {
+        return context.get(provider);
+    }
+
+    @Benchmark
+    public Object injectedProvider() {
+        return injected.get();
+    }
+
+    interface Service {
+    }
+
+    static class Repository {
+    }
+
+    @Singleton
+    static class SingletonService implements Service {
+    }
+
+    static class PrototypeService implements Service {
+        @Inject
+        @Named("singleton-0")
+        Service service;
+
+        @Inject
+        Repository repository;
+
+        @Inject
+        @Named("singleton-0")
+        Provider<Service> provider;
+    }
+
+    record NamedLiteral(String value) implements Named {
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Named.class;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Named named && Objects.equals(value, named.value());
+        }
+
+        @Override
+        public int hashCode() {
+            return "value".hashCode() * 127 ^ value.hashCode();
+        }
+    }
+}
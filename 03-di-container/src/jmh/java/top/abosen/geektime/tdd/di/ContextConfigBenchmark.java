@@ -0,0 +1,91 @@
+package top.abosen.geektime.tdd.di;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.annotation.Annotation;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 绑定大量组件并创建 Context 的耗时, 同一个类的元数据只扫描一次
+ * <p>
+ * ./gradlew jmh -PjmhArgs="ContextConfigBenchmark"
+ *
+ * @author qiubaisen
+ * @date 2023/2/13
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextConfigBenchmark {
+
+    @Param({"1000", "5000"})
+    int bindings;
+
+    @Benchmark
+    public Context getContext() {
+        ContextConfig config = new ContextConfig();
+        config.bindComponent(Repository.class, Repository.class);
+        for (int i = 0; i < bindings; i++) {
+            Class<? extends Service> implementation = switch (i % 3) {
+                case 0 -> ConstructorService.class;
+                case 1 -> FieldService.class;
+                default -> MethodService.class;
+            };
+            config.bindComponent(Service.class, implementation, new NamedLiteral("service-" + i));
+        }
+        return config.getContext();
+    }
+
+    interface Service {
+    }
+
+    static class Repository {
+    }
+
+    static class BaseService implements Service {
+        @Inject
+        void install(Repository repository) {
+        }
+    }
+
+    static class ConstructorService extends BaseService {
+        @Inject
+        public ConstructorService(Repository repository) {
+        }
+    }
+
+    static class FieldService extends BaseService {
+        @Inject
+        Repository repository;
+    }
+
+    static class MethodService extends BaseService {
+        @Inject
+        @Override
+        void install(Repository repository) {
+        }
+    }
+
+    record NamedLiteral(String value) implements Named {
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Named.class;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Named named && Objects.equals(value, named.value());
+        }
+
+        @Override
+        public int hashCode() {
+            return "value".hashCode() * 127 ^ value.hashCode();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package top.abosen.geektime.tdd.di;
+
+import jakarta.inject.Inject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 MethodHandle 编译后的注入与反射注入
+ * <p>
+ * ./gradlew jmh -PjmhArgs="InjectionProviderBenchmark"
+ *
+ * @author qiubaisen
+ * @date 2023/2/6
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionProviderBenchmark {
+
+    @Param({"constructor", "field", "method"})
+    String injection;
+
+    private InjectionProvider<?> compiled;
+    private InjectionProvider<?> reflective;
+    private Context context;
+
+    @Setup
+    public void setup() {
+        Class<?> component = switch (injection) {
+            case "constructor" -> ConstructorInjection.class;
+            case "field" -> FieldInjection.class;
+            default -> MethodInjection.class;
+        };
+        compiled = new InjectionProvider<>(component, true);
+        reflective = new InjectionProvider<>(component, false);
+
+        Dependency dependency = new Dependency();
+        context = new Context() {
+            @Override
+            public <T> T get(ComponentRef<T> ref) {
+                return (T) dependency;
+            }
+
+            @Override
+            public <T> Optional<T> getOpt(ComponentRef<T> ref) {
+                return Optional.of(get(ref));
+            }
+        };
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return compiled.get(context);
+    }
+
+    @Benchmark
+    public Object reflective() {
+        return reflective.get(context);
+    }
+
+    static class Dependency {
+    }
+
+    static class ConstructorInjection {
+        private final Dependency first;
+        private final Dependency second;
+
+        @Inject
+        public ConstructorInjection(Dependency first, Dependency second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    static class FieldInjection {
+        @Inject
+        private Dependency first;
+        @Inject
+        Dependency second;
+    }
+
+    static class MethodInjection {
+        private Dependency first;
+        private Dependency second;
+
+        @Inject
+        void install(Dependency first, Dependency second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package top.abosen.geektime.tdd.di;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.text.MessageFormat;
+import java.util.*;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * 按 {@link Annotation} 的约定实现 equals / hashCode / toString 的注解实例
+ *
+ * @author qiubaisen
+ * @date 2023/2/14
+ */
+final class AnnotationLiteral implements InvocationHandler {
+    private final Class<? extends Annotation> type;
+    private final Map<Method, Object> values = new LinkedHashMap<>();
+
+    static <A extends Annotation> A of(Class<A> type, Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new AnnotationLiteral(type, values)));
+    }
+
+    private AnnotationLiteral(Class<? extends Annotation> type, Map<String, Object> values) {
+        this.type = type;
+        for (Method member : type.getDeclaredMethods()) {
+            Object value = values.containsKey(member.getName()) ? values.get(member.getName()) : member.getDefaultValue();
+            if (value == null) throw new IllegalArgumentException(MessageFormat.format("Missing value of {0} in {1}", member.getName(), type));
+            member.setAccessible(true);
+            this.values.put(member, value);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (values.containsKey(method)) return copy(values.get(method));
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0] || equalTo(args[0]);
+            case "hashCode" -> hash();
+            case "annotationType" -> type;
+            default -> toString();
+        };
+    }
+
+    private boolean equalTo(Object other) {
+        if (!type.isInstance(other)) return false;
+        try {
+            for (Map.Entry<Method, Object> member : values.entrySet()) {
+                if (!Objects.deepEquals(member.getValue(), member.getKey().invoke(other))) return false;
+            }
+            return true;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return false;
+        }
+    }
+
+    private int hash() {
+        int hash = 0;
+        for (Map.Entry<Method, Object> member : values.entrySet()) {
+            hash += (127 * member.getKey().getName().hashCode()) ^ hash(member.getValue());
+        }
+        return hash;
+    }
+
+    private static int hash(Object value) {
+        if (value instanceof Object[] array) return Arrays.hashCode(array);
+        if (value instanceof boolean[] array) return Arrays.hashCode(array);
+        if (value instanceof byte[] array) return Arrays.hashCode(array);
+        if (value instanceof char[] array) return Arrays.hashCode(array);
+        if (value instanceof short[] array) return Arrays.hashCode(array);
+        if (value instanceof int[] array) return Arrays.hashCode(array);
+        if (value instanceof long[] array) return Arrays.hashCode(array);
+        if (value instanceof float[] array) return Arrays.hashCode(array);
+        if (value instanceof double[] array) return Arrays.hashCode(array);
+        return value.hashCode();
+    }
+
+    private static Object copy(Object value) {
+        if (!value.getClass().isArray()) return value;
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "@" + type.getName() + values.entrySet().stream()
+                .map(it -> it.getKey().getName() + "=" + (it.getValue() instanceof Object[] array ? Arrays.toString(array) : it.getValue()))
+                .collect(joining(", ", "(", ")"));
+    }
+}
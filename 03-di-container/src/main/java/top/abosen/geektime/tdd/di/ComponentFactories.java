@@ -0,0 +1,82 @@
+package top.abosen.geektime.tdd.di;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * 查找 processor 生成的 {@link ComponentFactory}
+ * <p>
+ * 工厂登记在类路径的 {@value #REGISTRY} 文件中, 每行为 {@code 组件类名=工厂类名};
+ * 登记表按类加载器读取一次且只保存类名, 找到的工厂按组件类缓存在 {@link ClassValue} 中.
+ * 没有登记或无法加载工厂时返回 empty, 由 {@link InjectionProvider} 通过反射注入
+ *
+ * @author qiubaisen
+ * @date 2023/2/14
+ */
+final class ComponentFactories {
+    static final String REGISTRY = "META-INF/top.abosen.geektime.tdd.di.factories";
+
+    private static final Map<ClassLoader, Map<String, String>> registries = new WeakHashMap<>();
+
+    private static final ClassValue<Optional<ComponentProvider<?>>> providers = new ClassValue<>() {
+        @Override
+        protected Optional<ComponentProvider<?>> computeValue(Class<?> component) {
+            return Optional.ofNullable(registry(component.getClassLoader()).get(component.getName()))
+                    .flatMap(factory -> instantiate(component, factory))
+                    .map(FactoryProvider::new);
+        }
+    };
+
+    private ComponentFactories() {
+    }
+
+    static Optional<ComponentProvider<?>> provider(Class<?> component) {
+        return providers.get(component);
+    }
+
+    private static synchronized Map<String, String> registry(ClassLoader loader) {
+        if (loader == null) return Map.of();
+        return registries.computeIfAbsent(loader, ComponentFactories::load);
+    }
+
+    private static Map<String, String> load(ClassLoader loader) {
+        Map<String, String> registry = new HashMap<>();
+        try {
+            for (URL url : Collections.list(loader.getResources(REGISTRY))) {
+                Properties factories = new Properties();
+                try (InputStream in = url.openStream()) {
+                    factories.load(in);
+                }
+                factories.stringPropertyNames().forEach(component -> registry.put(component, factories.getProperty(component)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return registry;
+    }
+
+    private static Optional<ComponentFactory<?>> instantiate(Class<?> component, String factory) {
+        try {
+            Object instance = Class.forName(factory, true, component.getClassLoader()).getConstructor().newInstance();
+            if (instance instanceof ComponentFactory<?> found && found.component() == component) return Optional.of(found);
+            return Optional.empty();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return Optional.empty();
+        }
+    }
+
+    private record FactoryProvider<T>(ComponentFactory<T> factory) implements ComponentProvider<T> {
+        @Override
+        public T get(Context context) {
+            return factory.create(context);
+        }
+
+        @Override
+        public List<ComponentRef<?>> getDependencies() {
+            return factory.dependencies();
+        }
+    }
+}
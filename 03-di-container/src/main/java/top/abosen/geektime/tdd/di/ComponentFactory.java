@@ -0,0 +1,34 @@
+package top.abosen.geektime.tdd.di;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译期生成的组件工厂, 创建组件时不再反射扫描和注入
+ * <p>
+ * 由 processor 模块为标注了 {@link jakarta.inject.Inject} 的组件生成, 登记在 {@value ComponentFactories#REGISTRY} 中,
+ * 绑定组件时自动使用; 没有登记工厂的组件仍由 {@link InjectionProvider} 注入
+ *
+ * @author qiubaisen
+ * @date 2023/2/14
+ */
+public interface ComponentFactory<T> {
+    Class<T> component();
+
+    /**
+     * @return 构造器, 字段, 方法的依赖, 创建组件时以同一个 {@link ComponentRef} 实例获取
+     */
+    List<ComponentRef<?>> dependencies();
+
+    T create(Context context);
+
+    /**
+     * 生成代码中的 qualifier 实例, 与注解在类上读取到的实例相等
+     *
+     * @param values 注解的属性值, 未给出的属性使用默认值
+     */
+    static <A extends Annotation> A annotation(Class<A> type, Map<String, Object> values) {
+        return AnnotationLiteral.of(type, values);
+    }
+}
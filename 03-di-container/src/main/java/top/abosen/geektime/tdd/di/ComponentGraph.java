@@ -0,0 +1,268 @@
+package top.abosen.geektime.tdd.di;
+
+import jakarta.inject.Provider;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static top.abosen.geektime.tdd.di.ContextConfigError.circularDependencies;
+import static top.abosen.geektime.tdd.di.ContextConfigError.unsatisfiedResolution;
+
+/**
+ * 组件依赖图, 在 {@link ContextConfig#getContext()} 时构建一次且不可变
+ * <p>
+ * 构建时按深度优先遍历做拓扑排序, 每个组件只检查一次缺失依赖与循环依赖;
+ * 每个组件分配一个连续的整数 id, 节点保存在按 id 索引的数组中.
+ * 每个节点在链接时把 provider 声明的依赖解析为节点数组, 注入时按 {@link ComponentRef} 的引用找到节点, 不对 {@link Component} 做哈希查找;
+ * 从图外通过 {@link #getContext()} 解析的 ref 记录在本图的直接映射缓存中. {@link ComponentRef} 不保存任何图的状态, 可以在多个图之间共享.
+ * 开启度量时每个节点的 provider 被包装一次, 未开启时解析路径上没有任何额外判断
+ *
+ * @author qiubaisen
+ * @date 2023/2/8
+ */
+class ComponentGraph {
+    private static final int CACHE_SIZE = 256;
+
+    private final Map<Component, Integer> ids;
+    private final Node[] nodes;
+    private final List<Node> order;
+    private final Resolution[] resolutions = new Resolution[CACHE_SIZE];
+
+    ComponentGraph(Map<Component, ComponentProvider<?>> components) {
+        this(components, null);
+    }
+
+    ComponentGraph(Map<Component, ComponentProvider<?>> components, ContextMetrics metrics) {
+        Map<Component, Integer> ids = new HashMap<>();
+        this.nodes = new Node[components.size()];
+        components.forEach((component, provider) -> {
+            int id = ids.size();
+            ids.put(component, id);
+            nodes[id] = new Node(id, component, provider, metrics == null ? provider : new Measured(provider, metrics.recorder(component)));
+        });
+        this.ids = Collections.unmodifiableMap(ids);
+        this.order = Collections.unmodifiableList(sort());
+        this.order.forEach(Node::link);
+    }
+
+    /**
+     * ref 在本图中解析到的节点, 不存在时 node 为 null; 不可变, 并发写入缓存时只会互相覆盖
+     */
+    private record Resolution(ComponentRef<?> ref, Node node) {
+    }
+
+    private Node node(Component component) {
+        Integer id = ids.get(component);
+        return id == null ? null : nodes[id];
+    }
+
+    /**
+     * 按 ref 的 identity hash 直接映射到缓存的一项, 冲突时替换
+     */
+    private Node node(ComponentRef<?> ref) {
+        int slot = System.identityHashCode(ref) & (CACHE_SIZE - 1);
+        Resolution resolution = resolutions[slot];
+        if (resolution == null || resolution.ref() != ref) resolutions[slot] = resolution = new Resolution(ref, node(ref.component()));
+        return resolution.node();
+    }
+
+    /**
+     * @return 按依赖在前的拓扑序排列的节点, 通过 Provider 注入的依赖不参与排序
+     */
+    List<Node> order() {
+        return order;
+    }
+
+    /**
+     * 按依赖顺序创建所有单例, 互不依赖的分支在 pool 中并行创建
+     *
+     * @return 每个单例的创建耗时, 不包括其依赖的单例的创建耗时
+     */
+    Map<Component, Duration> warmup(ForkJoinPool pool) {
+        Map<Component, Duration> durations = new ConcurrentHashMap<>();
+        Map<Node, CompletableFuture<Void>> constructed = new HashMap<>();
+        for (Node node : order) {
+            CompletableFuture<Void> dependencies = CompletableFuture.allOf(node.dependencies.stream()
+                    .map(constructed::get).toArray(CompletableFuture[]::new));
+            constructed.put(node, node.isSingleton() ? dependencies.thenRunAsync(() -> {
+                long start = System.nanoTime();
+                node.get();
+                durations.put(node.component, Duration.ofNanos(System.nanoTime() - start));
+            }, pool) : dependencies);
+        }
+        try {
+            CompletableFuture.allOf(constructed.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+        return durations;
+    }
+
+    Context getContext() {
+        return new Context() {
+            @Override
+            public <T> Optional<T> getOpt(ComponentRef<T> ref) {
+                return Optional.ofNullable(resolve(ref, node(ref)));
+            }
+
+            @Override
+            public <T> T get(ComponentRef<T> ref) {
+                T instance = resolve(ref, node(ref));
+                if (instance == null) throw unsatisfiedResolution(ref.component(), ref.component());
+                return instance;
+            }
+        };
+    }
+
+    /**
+     * @return 无法解析时返回 null, 不创建 Optional; Provider 依赖返回节点上预先创建的同一个 Provider
+     */
+    private static <T> T resolve(ComponentRef<T> ref, Node node) {
+        if (node == null) return null;
+        if (ref.isContainer()) return ref.getContainer() == Provider.class ? (T) node.reference : null;
+        return (T) node.get();
+    }
+
+    private List<Node> sort() {
+        List<Node> sorted = new ArrayList<>(nodes.length);
+        Set<Node> visited = new HashSet<>();
+        for (Node node : nodes) {
+            if (!visited.contains(node)) visit(node, new ArrayList<>(), new HashMap<>(), visited, sorted);
+        }
+        return sorted;
+    }
+
+    private void visit(Node node, List<Node> path, Map<Node, Integer> visiting, Set<Node> visited, List<Node> sorted) {
+        visiting.put(node, path.size());
+        path.add(node);
+        for (ComponentRef<?> dependency : node.provider.getDependencies()) {
+            Node required = node(dependency.component());
+            if (required == null) throw unsatisfiedResolution(node.component, dependency.component());
+            if (dependency.isContainer() || visited.contains(required)) continue;
+
+            Integer index = visiting.get(required);
+            if (index != null) {
+                throw circularDependencies(path.subList(index, path.size()).stream().map(Node::component).toList(), required.component);
+            }
+            visit(required, path, visiting, visited, sorted);
+        }
+        path.remove(path.size() - 1);
+        visiting.remove(node);
+        visited.add(node);
+        sorted.add(node);
+    }
+
+    /**
+     * 图中的一个组件, 同时作为其 provider 解析依赖时使用的 Context
+     */
+    final class Node implements Context {
+        private final int id;
+        private final Component component;
+        private final ComponentProvider<?> provider;
+        private final ComponentProvider<?> resolver;
+        private final List<Node> dependencies = new ArrayList<>();
+        private final Provider<Object> reference = this::get;
+        private ComponentRef<?>[] refs = new ComponentRef<?>[0];
+        private Node[] resolved = new Node[0];
+
+        private Node(int id, Component component, ComponentProvider<?> provider, ComponentProvider<?> resolver) {
+            this.id = id;
+            this.component = component;
+            this.provider = provider;
+            this.resolver = resolver;
+        }
+
+        /**
+         * 把 provider 声明的依赖解析为节点, 并记录直接依赖(不含通过 Provider 注入的); 在图的构造函数中完成, 随图一起发布
+         */
+        private void link() {
+            refs = provider.getDependencies().toArray(ComponentRef<?>[]::new);
+            resolved = new Node[refs.length];
+            for (int i = 0; i < refs.length; i++) {
+                resolved[i] = node(refs[i].component());
+                if (!refs[i].isContainer()) dependencies.add(resolved[i]);
+            }
+        }
+
+        /**
+         * provider 注入时使用的就是它声明的 ref, 按引用比较即可找到; 其他 ref 按组件查找
+         */
+        private Node lookup(ComponentRef<?> ref) {
+            ComponentRef<?>[] refs = this.refs;
+            for (int i = 0; i < refs.length; i++) if (refs[i] == ref) return resolved[i];
+            return node(ref.component());
+        }
+
+        int id() {
+            return id;
+        }
+
+        Component component() {
+            return component;
+        }
+
+        ComponentProvider<?> provider() {
+            return provider;
+        }
+
+        /**
+         * @return ref 在图中对应的节点, 不存在时为 null
+         */
+        Node dependency(ComponentRef<?> ref) {
+            return lookup(ref);
+        }
+
+        Object get() {
+            return resolver.get(this);
+        }
+
+        boolean isSingleton() {
+            return provider instanceof SingletonProvider;
+        }
+
+        @Override
+        public <T> Optional<T> getOpt(ComponentRef<T> ref) {
+            return Optional.ofNullable(resolve(ref, lookup(ref)));
+        }
+
+        @Override
+        public <T> T get(ComponentRef<T> ref) {
+            T instance = resolve(ref, lookup(ref));
+            if (instance == null) throw unsatisfiedResolution(component, ref.component());
+            return instance;
+        }
+
+        @Override
+        public String toString() {
+            return component.toString();
+        }
+    }
+
+    private record Measured(ComponentProvider<?> provider, ContextMetrics.Recorder recorder) implements ComponentProvider<Object> {
+        @Override
+        public Object get(Context context) {
+            recorder.resolved();
+            boolean singleton = provider instanceof SingletonProvider;
+            if (singleton && ((SingletonProvider<?>) provider).created()) {
+                recorder.singleton(true);
+                return provider.get(context);
+            }
+            long start = System.nanoTime();
+            Object instance = provider.get(context);
+            recorder.constructed(System.nanoTime() - start);
+            if (singleton) recorder.singleton(false);
+            return instance;
+        }
+
+        @Override
+        public List<ComponentRef<?>> getDependencies() {
+            return provider.getDependencies();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package top.abosen.geektime.tdd.di;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Scope;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.stream;
+import static top.abosen.geektime.tdd.di.ComponentError.*;
+
+/**
+ * 按类缓存的注入元数据: 注入点(已排除被覆盖的方法), 类上的 scope 注解, 类上标注的注解类型
+ * <p>
+ * 使用 {@link ClassValue} 缓存, 不会阻止类加载器被回收
+ *
+ * @author qiubaisen
+ * @date 2023/2/13
+ */
+final class ComponentMetadata {
+    private static final ClassValue<Set<Class<? extends Annotation>>> annotationTypes = new ClassValue<>() {
+        @Override
+        protected Set<Class<? extends Annotation>> computeValue(Class<?> type) {
+            Set<Class<? extends Annotation>> types = new HashSet<>();
+            for (Annotation annotation : type.getAnnotations()) types.add(annotation.annotationType());
+            return Set.copyOf(types);
+        }
+    };
+
+    private static final ClassValue<List<Annotation>> scopes = new ClassValue<>() {
+        @Override
+        protected List<Annotation> computeValue(Class<?> type) {
+            return stream(type.getAnnotations()).filter(it -> isAnnotationPresent(it.annotationType(), Scope.class)).toList();
+        }
+    };
+
+    private static final ClassValue<Map<MethodSignature, List<Method>>> declaredMethods = new ClassValue<>() {
+        @Override
+        protected Map<MethodSignature, List<Method>> computeValue(Class<?> type) {
+            Map<MethodSignature, List<Method>> methods = new HashMap<>();
+            for (Method method : type.getDeclaredMethods()) {
+                methods.computeIfAbsent(MethodSignature.of(method), it -> new ArrayList<>(1)).add(method);
+            }
+            return methods;
+        }
+    };
+
+    private static final ClassValue<InjectionPoints> injectionPoints = new ClassValue<>() {
+        @Override
+        protected InjectionPoints computeValue(Class<?> component) {
+            return new InjectionPoints(getInjectConstructor(component), getInjectFields(component), getInjectMethods(component));
+        }
+    };
+
+    private ComponentMetadata() {
+    }
+
+    /**
+     * @param fields  注入字段, 子类在前
+     * @param methods 注入方法, 子类在前, 已排除被子类覆盖的方法
+     */
+    record InjectionPoints(Constructor<?> constructor, List<Field> fields, List<Method> methods) {
+    }
+
+    /**
+     * @throws ComponentError 组件不可注入时, 错误不会被缓存
+     */
+    static InjectionPoints injectionPoints(Class<?> component) {
+        return injectionPoints.get(component);
+    }
+
+    static List<Annotation> scopes(Class<?> type) {
+        return scopes.get(type);
+    }
+
+    static boolean isAnnotationPresent(Class<?> type, Class<? extends Annotation> annotation) {
+        return annotationTypes.get(type).contains(annotation);
+    }
+
+    private record MethodSignature(String name, List<Class<?>> parameterTypes) {
+        static MethodSignature of(Method method) {
+            return new MethodSignature(method.getName(), List.of(method.getParameterTypes()));
+        }
+    }
+
+    private static Constructor<?> getInjectConstructor(Class<?> component) {
+        if (Modifier.isAbstract(component.getModifiers())) {
+            throw abstractComponent(component);
+        }
+        List<Constructor<?>> injectConstructors = injectable(component.getDeclaredConstructors()).toList();
+        if (injectConstructors.size() > 1) {
+            throw ambiguousInjectableConstructors(component);
+        }
+
+        return injectConstructors.stream().findFirst().orElseGet(() -> defaultConstructor(component));
+    }
+
+    private static List<Field> getInjectFields(Class<?> component) {
+        List<Field> fields = traverse(component, current -> injectable(current.getDeclaredFields()).toList());
+        return check(component, fields, ComponentMetadata::notFinal, ComponentError::finalInjectFields);
+    }
+
+    private static List<Method> getInjectMethods(Class<?> component) {
+        List<Method> methods = traverse(component, current -> injectable(current.getDeclaredMethods())
+                .filter(m -> isLeafMethod(component, m))
+                .toList());
+        return check(component, methods, ComponentMetadata::noTypeParameter, ComponentError::injectMethodsWithTypeParameter);
+    }
+
+    private static Constructor<?> defaultConstructor(Class<?> implementation) {
+        try {
+            return implementation.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw noDefaultConstructor(implementation);
+        }
+    }
+
+    private static <E> List<E> check(Class<?> component, List<E> target, Predicate<E> predicate, BiFunction<Class<?>, List<E>, ComponentError> error) {
+        List<E> found = target.stream().filter(predicate).toList();
+        if (found.size() > 0) throw error.apply(component, found);
+        return target;
+    }
+
+    private static <T> List<T> traverse(Class<?> component, Function<Class<?>, List<T>> finder) {
+        List<T> visited = new ArrayList<>();
+        for (Class<?> current = component; current != Object.class; current = current.getSuperclass()) {
+            visited.addAll(finder.apply(current));
+        }
+        return List.copyOf(visited);
+    }
+
+    /**
+     * 从组件自身向上查找第一个覆盖(或就是) method 的方法, 只比较同签名的方法
+     */
+    private static boolean isLeafMethod(Class<?> component, Method method) {
+        MethodSignature signature = MethodSignature.of(method);
+        for (Class<?> current = component; current != Object.class; current = current.getSuperclass()) {
+            for (Method candidate : declaredMethods.get(current).getOrDefault(signature, List.of())) {
+                if (isOverride(candidate, method)) return candidate.equals(method);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOverride(Method m, Method o) {
+        boolean visible;
+        if (m.getDeclaringClass().getPackageName().equals(o.getDeclaringClass().getPackageName())) {
+            visible = !Modifier.isPrivate(m.getModifiers()) && !Modifier.isPrivate(o.getModifiers());
+        } else {
+            visible = (Modifier.isPublic(m.getModifiers()) || Modifier.isProtected(m.getModifiers())) &&
+                    (Modifier.isPublic(o.getModifiers()) || Modifier.isProtected(o.getModifiers()));
+        }
+        return visible && o.getName().equals(m.getName()) && Arrays.equals(o.getParameterTypes(), m.getParameterTypes());
+    }
+
+    private static <T extends AnnotatedElement> Stream<T> injectable(T[] annotatedElement) {
+        return stream(annotatedElement).filter(it -> it.isAnnotationPresent(Inject.class));
+    }
+
+    private static boolean notFinal(Field field) {
+        return Modifier.isFinal(field.getModifiers());
+    }
+
+    private static boolean noTypeParameter(Method method) {
+        return method.getTypeParameters().length != 0;
+    }
+}
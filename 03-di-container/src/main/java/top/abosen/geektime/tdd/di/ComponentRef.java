@@ -25,10 +25,22 @@ public class ComponentRef<T> {
         return new ComponentRef<>(type, qualifier);
     }
 
+    /**
+     * 容器类型的依赖, 如 {@code Provider<component>}, 不需要构造 {@link ParameterizedType}
+     */
+    public static <T> ComponentRef<T> of(Class<?> container, Class<?> component, Annotation qualifier) {
+        return new ComponentRef<>(container, component, qualifier);
+    }
+
     private ComponentRef(Type container, Annotation qualifier) {
         init(container, qualifier);
     }
 
+    private ComponentRef(Class<?> container, Class<?> component, Annotation qualifier) {
+        this.container = container;
+        this.component = new Component(component, qualifier);
+    }
+
     protected ComponentRef() {
         this(null);
     }
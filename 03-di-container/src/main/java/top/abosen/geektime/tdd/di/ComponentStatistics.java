@@ -0,0 +1,83 @@
+package top.abosen.geektime.tdd.di;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按组件统计解析次数, 创建耗时, 单例命中率的 {@link ContextMetrics}
+ *
+ * @author qiubaisen
+ * @date 2023/2/17
+ */
+public class ComponentStatistics implements ContextMetrics {
+    private final Map<Component, Statistics> statistics = new ConcurrentHashMap<>();
+
+    @Override
+    public Recorder recorder(Component component) {
+        return statistics.computeIfAbsent(component, it -> new Statistics());
+    }
+
+    public Statistics of(Component component) {
+        return statistics.get(component);
+    }
+
+    public Map<Component, Statistics> all() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    public static final class Statistics implements Recorder {
+        private final LongAdder resolutions = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LatencyHistogram constructions = new LatencyHistogram();
+
+        @Override
+        public void resolved() {
+            resolutions.increment();
+        }
+
+        @Override
+        public void constructed(long nanos) {
+            constructions.record(nanos);
+        }
+
+        @Override
+        public void singleton(boolean hit) {
+            (hit ? hits : misses).increment();
+        }
+
+        public long resolutions() {
+            return resolutions.sum();
+        }
+
+        public long singletonHits() {
+            return hits.sum();
+        }
+
+        public long singletonMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return 单例命中率, 非单例组件为 NaN
+         */
+        public double singletonHitRatio() {
+            long hits = singletonHits(), total = hits + singletonMisses();
+            return total == 0 ? Double.NaN : (double) hits / total;
+        }
+
+        /**
+         * @return 创建实例的耗时(纳秒)
+         */
+        public LatencyHistogram constructions() {
+            return constructions;
+        }
+
+        @Override
+        public String toString() {
+            return "resolutions=" + resolutions() + ", hits=" + singletonHits() + ", misses=" + singletonMisses() + ", constructions=[" + constructions + "]";
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package top.abosen.geektime.tdd.di;
 
-import jakarta.inject.Provider;
 import jakarta.inject.Qualifier;
 import jakarta.inject.Scope;
 import jakarta.inject.Singleton;
@@ -8,16 +7,17 @@ import jakarta.inject.Singleton;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.*;
-import static top.abosen.geektime.tdd.di.ContextConfigError.circularDependencies;
-import static top.abosen.geektime.tdd.di.ContextConfigError.unsatisfiedResolution;
 import static top.abosen.geektime.tdd.di.ContextConfigException.*;
 
 /**
@@ -27,10 +27,14 @@ import static top.abosen.geektime.tdd.di.ContextConfigException.*;
 public class ContextConfig {
     public ContextConfig() {
         scope(Singleton.class, SingletonProvider::new);
+        scope(RequestScoped.class, new RequestScope());
     }
 
     private final Map<Component, ComponentProvider<?>> components = new HashMap<>();
     private final Map<Class<?>, ScopeProvider> scopes = new HashMap<>();
+    private Consumer<ComponentGraph> warmup = graph -> {
+    };
+    private ContextMetrics metrics;
 
     static class Bindings {
         public static Bindings component(Class<?> component, Annotation... annotations) {
@@ -57,7 +61,7 @@ public class ContextConfig {
         }
 
         Optional<Annotation> scope() {
-            List<Annotation> scopes = group.getOrDefault(Scope.class, from(type, Scope.class));
+            List<Annotation> scopes = group.getOrDefault(Scope.class, ComponentMetadata.scopes(type));
             if (scopes.size() > 1) {
                 throw illegalAnnotation(type, scopes);
             }
@@ -65,14 +69,10 @@ public class ContextConfig {
         }
 
         private ComponentProvider<?> provider(BiFunction<ComponentProvider<?>, Annotation, ComponentProvider<?>> scoped) {
-            ComponentProvider<?> injectionProvider = new InjectionProvider<>(type);
+            ComponentProvider<?> injectionProvider = ComponentFactories.provider(type).orElseGet(() -> InjectionProvider.of(type));
             return scope().<ComponentProvider<?>>map(s -> scoped.apply(injectionProvider, s)).orElse(injectionProvider);
         }
 
-        private static List<Annotation> from(Class<?> implementation, Class<? extends Annotation> annotation) {
-            return stream(implementation.getAnnotations()).filter(a -> a.annotationType().isAnnotationPresent(annotation)).toList();
-        }
-
         private Map<Class<?>, List<Annotation>> parse(Class<?> type, Annotation[] annotations, Class<? extends Annotation>... allowed) {
             Map<Class<?>, List<Annotation>> annotationGroup = stream(annotations).collect(groupingBy(allow(allowed), toList()));
             if (annotationGroup.containsKey(Illegal.class)) {
@@ -82,10 +82,40 @@ public class ContextConfig {
         }
 
         private static Function<Annotation, Class<?>> allow(Class<? extends Annotation>... allowed) {
-            return annotation -> Stream.of(allowed).filter(annotation.annotationType()::isAnnotationPresent).findFirst().orElse(Illegal.class);
+            return annotation -> Stream.of(allowed).filter(it -> ComponentMetadata.isAnnotationPresent(annotation.annotationType(), it)).findFirst().orElse(Illegal.class);
         }
     }
 
+    /**
+     * 在 {@link #getContext()} 时创建全部单例, 而不是在首次获取时创建
+     */
+    public void eager() {
+        eager(ForkJoinPool.commonPool(), durations -> {
+        });
+    }
+
+    /**
+     * @param pool   并行创建互不依赖的单例
+     * @param report 接收每个单例的创建耗时
+     */
+    public void eager(ForkJoinPool pool, Consumer<Map<Component, Duration>> report) {
+        this.warmup = graph -> report.accept(graph.warmup(pool));
+    }
+
+    /**
+     * 之后创建的 Context 通过 metrics 记录每个组件的解析, 默认不记录
+     */
+    public void metrics(ContextMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 检查依赖并导出依赖图, 与 {@link #getContext()} 做相同的检查
+     */
+    public String graph(GraphFormat format) {
+        return format.render(new ComponentGraph(components));
+    }
+
     public <T> void scope(Class<T> scopeType, ScopeProvider provider) {
         scopes.put(scopeType, provider);
     }
@@ -178,45 +208,9 @@ public class ContextConfig {
 
 
     public Context getContext() {
-        components.keySet().forEach(component -> checkDependencies(component, new ArrayDeque<>()));
-
-        return new Context() {
-            @Override
-            public <T> Optional<T> getOpt(ComponentRef<T> ref) {
-                if (ref.isContainer()) {
-                    if (ref.getContainer() != Provider.class) return Optional.empty();
-                    return Optional.ofNullable(getProvider(ref)).map(it -> (T) (Provider<Object>) () -> it.get(this));
-                }
-                return (Optional<T>) Optional.ofNullable(getProvider(ref)).map(it -> (Object) it.get(this));
-            }
-
-            @Override
-            public <T> T get(ComponentRef<T> ref) {
-                return getOpt(ref).orElseThrow(() -> unsatisfiedResolution(ref.component(), ref.component()));
-            }
-        };
-    }
-
-    private <T> ComponentProvider<?> getProvider(ComponentRef<T> ref) {
-        return components.get(ref.component());
-    }
-
-    private void checkDependencies(Component component, Deque<Component> visiting) {
-        for (ComponentRef<?> dependency : components.get(component).getDependencies()) {
-            if (!components.containsKey(dependency.component())) {
-                throw unsatisfiedResolution(component, dependency.component());
-            }
-            if (!dependency.isContainer()) {
-                if (visiting.contains(dependency.component())) {
-                    List<Component> cyclicPath = new ArrayList<>(visiting);
-                    throw circularDependencies(cyclicPath, component);
-                }
-                visiting.addLast(dependency.component());
-
-                checkDependencies(dependency.component(), visiting);
-                visiting.removeLast();
-            }
-        }
+        ComponentGraph graph = new ComponentGraph(components, metrics);
+        warmup.accept(graph);
+        return graph.getContext();
     }
 }
 
@@ -280,6 +274,10 @@ class ContextConfigException extends RuntimeException {
         return new ContextConfigException(MessageFormat.format("Unknown scope: {0}", annotationType));
     }
 
+    static ContextConfigException outOfScope(Class<? extends Annotation> scope) {
+        return new ContextConfigException(MessageFormat.format("Out of scope: {0}", scope));
+    }
+
     static ContextConfigException duplicated(Component component) {
         return new ContextConfigException(MessageFormat.format("Duplicated: {0}", component));
     }
@@ -0,0 +1,31 @@
+package top.abosen.geektime.tdd.di;
+
+/**
+ * 容器运行时的度量钩子, 通过 {@link ContextConfig#metrics(ContextMetrics)} 开启
+ * <p>
+ * 创建 Context 时为每个组件获取一次 {@link Recorder}, 解析时不再按组件查找;
+ * 未开启时组件的解析路径与没有度量时完全相同
+ *
+ * @author qiubaisen
+ * @date 2023/2/17
+ */
+public interface ContextMetrics {
+    Recorder recorder(Component component);
+
+    interface Recorder {
+        /**
+         * 组件被解析一次, 包括作为其他组件的依赖被解析
+         */
+        void resolved();
+
+        /**
+         * 创建了一个新实例, 耗时包括解析其依赖的时间
+         */
+        void constructed(long nanos);
+
+        /**
+         * 单例组件被解析, hit 表示单例已存在
+         */
+        void singleton(boolean hit);
+    }
+}
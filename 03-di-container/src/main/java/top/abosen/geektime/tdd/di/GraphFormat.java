@@ -0,0 +1,69 @@
+package top.abosen.geektime.tdd.di;
+
+import java.util.StringJoiner;
+
+/**
+ * 依赖图的导出格式, 节点按依赖在前的拓扑序输出, 通过 Provider 注入的依赖标记为 provider
+ *
+ * @author qiubaisen
+ * @date 2023/2/17
+ */
+public enum GraphFormat {
+    DOT {
+        @Override
+        String render(ComponentGraph graph) {
+            StringBuilder dot = new StringBuilder("digraph components {\n");
+            for (ComponentGraph.Node node : graph.order()) {
+                dot.append("  n").append(node.id()).append(" [label=\"").append(escape(label(node.component()))).append('"')
+                        .append(node.isSingleton() ? ", shape=box" : "").append("];\n");
+            }
+            for (ComponentGraph.Node node : graph.order()) {
+                for (ComponentRef<?> ref : node.provider().getDependencies()) {
+                    dot.append("  n").append(node.id()).append(" -> n").append(node.dependency(ref).id())
+                            .append(ref.isContainer() ? " [style=dashed]" : "").append(";\n");
+                }
+            }
+            return dot.append("}\n").toString();
+        }
+    },
+    JSON {
+        @Override
+        String render(ComponentGraph graph) {
+            StringJoiner components = new StringJoiner(",", "{\"components\":[", "]}");
+            for (ComponentGraph.Node node : graph.order()) {
+                StringJoiner dependencies = new StringJoiner(",", "[", "]");
+                for (ComponentRef<?> ref : node.provider().getDependencies()) {
+                    dependencies.add("{\"id\":" + node.dependency(ref).id() + ",\"provider\":" + ref.isContainer() + "}");
+                }
+                Object qualifier = node.component().qualifier();
+                components.add("{\"id\":" + node.id() +
+                        ",\"type\":\"" + escape(node.component().type().getName()) + "\"" +
+                        ",\"qualifier\":" + (qualifier == null ? "null" : "\"" + escape(qualifier.toString()) + "\"") +
+                        ",\"singleton\":" + node.isSingleton() +
+                        ",\"dependencies\":" + dependencies + "}");
+            }
+            return components.toString();
+        }
+    };
+
+    abstract String render(ComponentGraph graph);
+
+    private static String label(Component component) {
+        return component.type().getName() + (component.qualifier() == null ? "" : " " + component.qualifier());
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"', '\\' -> escaped.append('\\').append(c);
+                case '\n' -> escaped.append("\\n");
+                default -> {
+                    if (c < 0x20) escaped.append(String.format("\\u%04x", (int) c));
+                    else escaped.append(c);
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
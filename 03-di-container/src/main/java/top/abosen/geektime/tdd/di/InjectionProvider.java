@@ -1,14 +1,14 @@
 package top.abosen.geektime.tdd.di;
 
-import jakarta.inject.Inject;
 import jakarta.inject.Qualifier;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.text.MessageFormat;
 import java.util.*;
-import java.util.function.BiFunction;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,22 +21,39 @@ import static top.abosen.geektime.tdd.di.ComponentError.*;
  * @date 2022/10/19
  */
 final class InjectionProvider<T> implements ComponentProvider<T> {
+    private static final ClassValue<InjectionProvider<?>> providers = new ClassValue<>() {
+        @Override
+        protected InjectionProvider<?> computeValue(Class<?> component) {
+            return new InjectionProvider<>(component);
+        }
+    };
+
     private final Injectable<Constructor<T>> injectConstructor;
-    private final Map<Class<?>, List<Injectable<Method>>> injectMethods;
-    private final Map<Class<?>, List<Injectable<Field>>> injectFields;
-    private final Collection<Class<?>> superClasses;
+    private final List<Injectable<?>> injectMembers;
     private final List<ComponentRef<?>> dependencies;
+    private final MethodHandle factory;
 
     public InjectionProvider(Class<T> component) {
-        this.injectConstructor = getInjectConstructor(component);
+        this(component, true);
+    }
+
+    /**
+     * 注入计划只与类有关且不可变, 同一个类的多次绑定共享一个实例
+     */
+    static <T> InjectionProvider<T> of(Class<T> component) {
+        return (InjectionProvider<T>) providers.get(component);
+    }
 
-        List<Injectable<Method>> methods = getInjectMethods(component);
-        List<Injectable<Field>> fields = getInjectFields(component);
+    InjectionProvider(Class<T> component, boolean compiled) {
+        ComponentMetadata.InjectionPoints injectionPoints = ComponentMetadata.injectionPoints(component);
+        this.injectConstructor = Injectable.of((Constructor<T>) injectionPoints.constructor());
 
-        this.injectMethods = groupByClass(methods);
-        this.injectFields = groupByClass(fields);
-        this.superClasses = allSuperClass(component);
+        List<Injectable<Method>> methods = injectionPoints.methods().stream().map(Injectable::of).toList();
+        List<Injectable<Field>> fields = injectionPoints.fields().stream().map(Injectable::of).toList();
+
+        this.injectMembers = injectionPlan(allSuperClass(component), groupByClass(fields), groupByClass(methods));
         this.dependencies = concat(concat(Stream.of(injectConstructor), fields.stream()), methods.stream()).flatMap(it -> stream(it.required())).toList();
+        this.factory = compiled ? Factory.compile(injectConstructor, injectMembers).orElse(null) : null;
     }
 
     private static Collection<Class<?>> allSuperClass(Class<?> component) {
@@ -51,26 +68,108 @@ final class InjectionProvider<T> implements ComponentProvider<T> {
         return elements.stream().collect(Collectors.groupingBy(it -> it.element().getDeclaringClass(), Collectors.toList()));
     }
 
+    /**
+     * 按 父类 -> 子类, 字段 -> 方法 的顺序展开注入点, 创建实例时不再遍历类层次
+     */
+    private static List<Injectable<?>> injectionPlan(Collection<Class<?>> superClasses,
+                                                    Map<Class<?>, List<Injectable<Field>>> fields,
+                                                    Map<Class<?>, List<Injectable<Method>>> methods) {
+        List<Injectable<?>> plan = new ArrayList<>();
+        for (Class<?> c : superClasses) {
+            plan.addAll(fields.getOrDefault(c, List.of()));
+            plan.addAll(methods.getOrDefault(c, List.of()));
+        }
+        return List.copyOf(plan);
+    }
+
 
     @Override
     public T get(Context context) {
+        if (factory == null) return reflect(context);
+        try {
+            return (T) (Object) factory.invokeExact(context);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 构造函数或注入方法抛出的异常与编译后的 MethodHandle 一致: 非受检异常原样抛出, 受检异常包装为 RuntimeException
+     */
+    private T reflect(Context context) {
         try {
             T instance = injectConstructor.element().newInstance(injectConstructor.toDependencies(context));
-            for (Class<?> c : superClasses) {
-                for (Injectable<Field> field : injectFields.getOrDefault(c, List.of())) {
-                    field.element().set(instance, field.toDependencies(context)[0]);
-                }
-                for (Injectable<Method> method : injectMethods.getOrDefault(c, List.of())) {
-                    method.element().invoke(instance, method.toDependencies(context));
-                }
+            for (Injectable<?> member : injectMembers) {
+                if (member.element() instanceof Field field) field.set(instance, member.toDependencies(context)[0]);
+                else ((Method) member.element()).invoke(instance, member.toDependencies(context));
             }
-
             return instance;
-        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new RuntimeException(e.getCause());
+        } catch (InstantiationException | IllegalAccessException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 将注入计划编译为一个 (Context)Object 的 MethodHandle: 构造实例, 再依次执行字段和方法注入.
+     * 无法编译时(如访问受限)返回 empty, 由反射完成注入
+     */
+    static class Factory {
+        private static final MethodHandle get;
+
+        static {
+            try {
+                get = MethodHandles.lookup().findVirtual(Context.class, "get", MethodType.methodType(Object.class, ComponentRef.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        static Optional<MethodHandle> compile(Injectable<? extends Constructor<?>> constructor, List<Injectable<?>> members) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle create = resolve(lookup.unreflectConstructor(constructor.element()), 0, constructor.required(), Object.class);
+
+                MethodHandle inject = MethodHandles.dropArguments(MethodHandles.identity(Object.class), 1, Context.class);
+                for (int i = members.size() - 1; i >= 0; i--) {
+                    inject = MethodHandles.foldArguments(inject, resolve(unreflect(lookup, members.get(i).element()), 1, members.get(i).required(), void.class));
+                }
+                return Optional.of(MethodHandles.foldArguments(inject, create));
+            } catch (IllegalAccessException | RuntimeException e) {
+                return Optional.empty();
+            }
+        }
+
+        private static MethodHandle unreflect(MethodHandles.Lookup lookup, AccessibleObject element) throws IllegalAccessException {
+            Member member = (Member) element;
+            MethodHandle handle = element instanceof Field field ? lookup.unreflectSetter(field) : lookup.unreflect((Method) element);
+            return Modifier.isStatic(member.getModifiers()) ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+        }
+
+        /**
+         * 保留 target 的前 keep 个参数, 其余参数替换为从 Context 中获取的依赖
+         */
+        private static MethodHandle resolve(MethodHandle target, int keep, ComponentRef<?>[] required, Class<?> returnType) {
+            target = target.asType(MethodType.genericMethodType(target.type().parameterCount()).changeReturnType(returnType));
+
+            MethodHandle[] dependencies = new MethodHandle[required.length];
+            int[] reorder = new int[keep + required.length];
+            for (int i = 0; i < required.length; i++) {
+                dependencies[i] = MethodHandles.insertArguments(get, 1, required[i]);
+                reorder[keep + i] = keep;
+            }
+            for (int i = 0; i < keep; i++) reorder[i] = i;
+
+            MethodType type = MethodType.genericMethodType(keep).changeReturnType(returnType).appendParameterTypes(Context.class);
+            return MethodHandles.permuteArguments(MethodHandles.filterArguments(target, keep, dependencies), type, reorder);
+        }
+    }
+
     static record Injectable<T extends AccessibleObject>(T element, ComponentRef<?>[] required) {
         Injectable {
             element.setAccessible(true);
@@ -86,7 +185,11 @@ final class InjectionProvider<T> implements ComponentProvider<T> {
 
 
         Object[] toDependencies(Context context) {
-            return stream(required()).map(context::get).toArray();
+            Object[] dependencies = new Object[required.length];
+            for (int i = 0; i < required.length; i++) {
+                dependencies[i] = context.get(required[i]);
+            }
+            return dependencies;
         }
 
         private static ComponentRef<Object> toComponentRef(Field field) {
@@ -98,7 +201,7 @@ final class InjectionProvider<T> implements ComponentProvider<T> {
         }
 
         private static Annotation getQualifier(AnnotatedElement parameter) {
-            List<Annotation> qualifiers = stream(parameter.getAnnotations()).filter(it -> it.annotationType().isAnnotationPresent(Qualifier.class)).toList();
+            List<Annotation> qualifiers = stream(parameter.getAnnotations()).filter(it -> ComponentMetadata.isAnnotationPresent(it.annotationType(), Qualifier.class)).toList();
             if (qualifiers.size() > 1) {
                 throw ambiguousQualifiers(parameter, qualifiers);
             }
@@ -106,107 +209,10 @@ final class InjectionProvider<T> implements ComponentProvider<T> {
         }
     }
 
-    private static <T> Injectable<Constructor<T>> getInjectConstructor(Class<T> component) {
-        if (Modifier.isAbstract(component.getModifiers())) {
-            throw abstractComponent(component);
-        }
-        List<Constructor<?>> injectConstructors = injectable(component.getDeclaredConstructors()).toList();
-        if (injectConstructors.size() > 1) {
-            throw ambiguousInjectableConstructors(component);
-        }
-
-        return Injectable.of((Constructor<T>) injectConstructors.stream().findFirst().orElseGet(() -> defaultConstructor(component)));
-    }
-
-    private static List<Injectable<Field>> getInjectFields(Class<?> component) {
-        List<Injectable<Field>> injectables = InjectionProvider.<Field>traverse(component, (fields, current) -> injectable(current.getDeclaredFields()).toList()).stream().map(Injectable::of).toList();
-        return check(component, injectables, InjectionProvider::notFinal, ComponentError::finalInjectFields);
-    }
-
-    private static List<Injectable<Method>> getInjectMethods(Class<?> component) {
-
-        List<Injectable<Method>> injectables = InjectionProvider.<Method>traverse(component, (methods, current) -> injectable(current.getDeclaredMethods())
-                .filter(m -> isLeafMethod(component, m))
-//                .filter(m -> notOverrideByInjectMethod(methods, m))
-//                .filter(m -> notOverrideByNoInjectMethod(component, m))
-                .toList()).stream().map(Injectable::of).toList();
-
-        return check(component, injectables, InjectionProvider::noTypeParameter, ComponentError::injectMethodsWithTypeParameter);
-    }
-
     @Override
     public List<ComponentRef<?>> getDependencies() {
         return this.dependencies;
     }
-
-    private static <T> Constructor<T> defaultConstructor(Class<T> implementation) {
-        try {
-            return implementation.getDeclaredConstructor();
-        } catch (NoSuchMethodException e) {
-            throw noDefaultConstructor(implementation);
-        }
-    }
-
-    private static <E extends AccessibleObject> List<Injectable<E>> check(
-            Class<?> component, List<Injectable<E>> target, Predicate<E> predicate, BiFunction<Class<?>, List<E>, ComponentError> error) {
-        List<E> found = target.stream().map(Injectable::element).filter(predicate).toList();
-        if (found.size() > 0) throw error.apply(component, found.stream().toList());
-        return target;
-    }
-
-    private static <T> List<T> traverse(Class<?> component, BiFunction<List<T>, Class<?>, List<T>> finder) {
-        List<T> visited = new ArrayList<>();
-        Class<?> current = component;
-        while (current != Object.class) {
-            visited.addAll(finder.apply(visited, current));
-            current = current.getSuperclass();
-        }
-        return visited;
-    }
-
-    private static boolean isLeafMethod(Class<?> component, Method method) {
-        Class<?> current = component;
-        while (current != Object.class) {
-            Optional<Method> lowest = stream(current.getDeclaredMethods()).filter(m -> isOverride(m, method)).findFirst();
-            if (lowest.isPresent()) {
-                return lowest.get().equals(method);
-            }
-            current = current.getSuperclass();
-        }
-        return true;
-    }
-
-    private static boolean notOverrideByNoInjectMethod(Class<?> component, Method m) {
-        return stream(component.getDeclaredMethods()).filter(m1 -> !m1.isAnnotationPresent(Inject.class))
-                .noneMatch(o -> isOverride(m, o));
-    }
-
-    private static boolean notOverrideByInjectMethod(List<Method> injectMethods, Method m) {
-        return injectMethods.stream().noneMatch(o -> isOverride(m, o));
-    }
-
-    private static boolean isOverride(Method m, Method o) {
-        boolean visible;
-        if (m.getDeclaringClass().getPackageName().equals(o.getDeclaringClass().getPackageName())) {
-            visible = !Modifier.isPrivate(m.getModifiers()) && !Modifier.isPrivate(o.getModifiers());
-        } else {
-            visible = (Modifier.isPublic(m.getModifiers()) || Modifier.isProtected(m.getModifiers())) &&
-                    (Modifier.isPublic(o.getModifiers()) || Modifier.isProtected(o.getModifiers()));
-        }
-        return visible && o.getName().equals(m.getName()) && Arrays.equals(o.getParameterTypes(), m.getParameterTypes());
-    }
-
-    private static <T extends AnnotatedElement> Stream<T> injectable(T[] annotatedElement) {
-        return stream(annotatedElement).filter(it -> it.isAnnotationPresent(Inject.class));
-    }
-
-    private static boolean notFinal(Field field) {
-        return Modifier.isFinal(field.getModifiers());
-    }
-
-    private static boolean noTypeParameter(Method method) {
-        return method.getTypeParameters().length != 0;
-    }
 }
 
 class ComponentError extends Error {
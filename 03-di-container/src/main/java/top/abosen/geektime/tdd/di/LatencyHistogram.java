@@ -0,0 +1,72 @@
+package top.abosen.geektime.tdd.di;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的延迟直方图, 与 HdrHistogram 的分桶方式相同
+ * <p>
+ * 每个 2 的幂区间再等分为 {@value #SUB_BUCKETS} 个桶, 相对误差不超过 1/{@value #SUB_BUCKETS};
+ * 记录只需一次原子加, 不分配对象
+ *
+ * @author qiubaisen
+ * @date 2023/2/17
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(Long.MAX_VALUE) + 1);
+    private final LongAdder total = new LongAdder();
+
+    public void record(long value) {
+        counts.incrementAndGet(index(Math.max(0, value)));
+        total.increment();
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * @param percentile 0 ~ 100
+     * @return 不小于该百分位上记录值的桶上界, 没有记录时为 0
+     */
+    public long percentile(double percentile) {
+        long count = count();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) return upperBound(i);
+        }
+        return upperBound(counts.length() - 1);
+    }
+
+    public long max() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) != 0) return upperBound(i);
+        }
+        return 0;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count() + ", p50=" + percentile(50) + ", p99=" + percentile(99) + ", max=" + max();
+    }
+}
@@ -0,0 +1,134 @@
+package top.abosen.geektime.tdd.di;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static top.abosen.geektime.tdd.di.ContextConfigException.outOfScope;
+
+/**
+ * {@link RequestScoped} 的实现
+ * <p>
+ * 每个 ContextConfig 有自己的 RequestScope, 绑定时为其中请求作用域的组件分配一个槽位;
+ * 每次请求按 RequestScope 各保存一个按槽位索引的数组, 长度只取决于该 RequestScope 绑定的组件数.
+ * 请求绑定在当前线程上, 结束时整体丢弃
+ *
+ * @author qiubaisen
+ * @date 2023/2/15
+ */
+public final class RequestScope implements ScopeProvider {
+    private static final ThreadLocal<Request> current = new ThreadLocal<>();
+
+    private final AtomicInteger slots = new AtomicInteger();
+
+    @Override
+    public ComponentProvider<?> create(ComponentProvider<?> provider) {
+        return new Scoped<>(this, provider, slots.getAndIncrement());
+    }
+
+    /**
+     * 在当前线程开启一次请求, 已有请求时嵌套开启, 关闭后恢复外层请求
+     */
+    public static Request open() {
+        Request request = new Request(current.get());
+        current.set(request);
+        return request;
+    }
+
+    /**
+     * 当前线程上的请求, 没有时返回 null
+     */
+    public static Request current() {
+        return current.get();
+    }
+
+    /**
+     * 在当前线程继续另一个线程上开启的请求, 用于把请求交给其他线程执行; 关闭时恢复当前线程原来的请求, 不丢弃实例
+     */
+    public static Attachment attach(Request request) {
+        Attachment attachment = new Attachment(current.get());
+        if (request == null) current.remove();
+        else current.set(request);
+        return attachment;
+    }
+
+    public static final class Attachment implements AutoCloseable {
+        private final Request previous;
+
+        private Attachment(Request previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) current.remove();
+            else current.set(previous);
+        }
+    }
+
+    public static final class Request implements AutoCloseable {
+        private final Request outer;
+        private Instances instances;
+
+        private Request(Request outer) {
+            this.outer = outer;
+        }
+
+        /**
+         * 通常一次请求只用到一个 RequestScope, 链表只有一个节点
+         */
+        private Instances instances(RequestScope scope, boolean create) {
+            for (Instances it = instances; it != null; it = it.next) if (it.scope == scope) return it;
+            return create ? instances = new Instances(scope, instances) : null;
+        }
+
+        private Object get(RequestScope scope, int slot) {
+            Instances instances = instances(scope, false);
+            return instances == null || slot >= instances.values.length ? null : instances.values[slot];
+        }
+
+        private void put(RequestScope scope, int slot, Object instance) {
+            Instances instances = instances(scope, true);
+            if (slot >= instances.values.length) instances.values = Arrays.copyOf(instances.values, scope.slots.get());
+            instances.values[slot] = instance;
+        }
+
+        @Override
+        public void close() {
+            instances = null;
+            if (outer == null) current.remove();
+            else current.set(outer);
+        }
+    }
+
+    private static final class Instances {
+        private final RequestScope scope;
+        private final Instances next;
+        private Object[] values;
+
+        private Instances(RequestScope scope, Instances next) {
+            this.scope = scope;
+            this.next = next;
+            this.values = new Object[scope.slots.get()];
+        }
+    }
+
+    private record Scoped<T>(RequestScope scope, ComponentProvider<T> provider, int slot) implements ComponentProvider<T> {
+        @Override
+        public T get(Context context) {
+            Request request = current.get();
+            if (request == null) throw outOfScope(RequestScoped.class);
+            Object instance = request.get(scope, slot);
+            if (instance == null) {
+                instance = provider.get(context);
+                request.put(scope, slot, instance);
+            }
+            return (T) instance;
+        }
+
+        @Override
+        public List<ComponentRef<?>> getDependencies() {
+            return provider.getDependencies();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package top.abosen.geektime.tdd.di;
+
+import jakarta.inject.Scope;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 组件实例在一次请求内共享, 请求结束时释放, 请求由 {@link RequestScope#open()} 开启
+ *
+ * @author qiubaisen
+ * @date 2023/2/15
+ */
+@Scope
+@Documented
+@Retention(RUNTIME)
+public @interface RequestScoped {
+}
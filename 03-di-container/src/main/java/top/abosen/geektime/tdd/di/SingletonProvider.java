@@ -3,12 +3,15 @@ package top.abosen.geektime.tdd.di;
 import java.util.List;
 
 /**
+ * 单例只构造一次: 初始化后只读一次 volatile 字段, 仅首次构造时加锁
+ *
  * @author qiubaisen
  * @date 2022/11/8
  */
 class SingletonProvider<T> implements ComponentProvider<T> {
-    private T singleton;
-    private ComponentProvider<T> provider;
+    private volatile T singleton;
+    private final ComponentProvider<T> provider;
+    private final Object lock = new Object();
 
     public SingletonProvider(ComponentProvider<T> provider) {
         this.provider = provider;
@@ -16,10 +19,18 @@ class SingletonProvider<T> implements ComponentProvider<T> {
 
     @Override
     public T get(Context context) {
-        if (singleton == null) {
-            singleton = provider.get(context);
+        T instance = singleton;
+        if (instance != null) return instance;
+        synchronized (lock) {
+            if (singleton == null) {
+                singleton = provider.get(context);
+            }
+            return singleton;
         }
-        return singleton;
+    }
+
+    boolean created() {
+        return singleton != null;
     }
 
     @Override
@@ -13,7 +13,10 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.internal.util.collections.Sets;
 import top.abosen.geektime.tdd.di.Utils.*;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -55,6 +58,25 @@ class ContextTest {
             assertSame(dependency, ((TestComponent) config.getContext().get(ComponentRef.of(TestComponent.class))).dependency());
         }
 
+        @Test
+        public void should_resolve_shared_refs_against_each_context_independently() {
+            Dependency first = new Dependency() {
+            }, second = new Dependency() {
+            };
+            config.bindInstance(Dependency.class, first);
+            config.bindComponent(TestComponent.class, ConstructorInjection.class);
+            ContextConfig another = new ContextConfig();
+            another.bindInstance(Dependency.class, second);
+            another.bindComponent(TestComponent.class, ConstructorInjection.class);
+            Context context = config.getContext(), anotherContext = another.getContext();
+
+            ComponentRef<TestComponent> ref = ComponentRef.of(TestComponent.class);
+            for (int i = 0; i < 3; i++) {
+                assertSame(first, context.get(ref).dependency());
+                assertSame(second, anotherContext.get(ref).dependency());
+            }
+        }
+
         static Stream<Arguments> should_bind_type_to_an_injectable_component() {
             return Stream.of(
                     Arguments.of(Named.of("Constructor Injection", TypeBinding.ConstructorInjection.class)),
@@ -108,6 +130,16 @@ class ContextTest {
             assertThrows(ContextConfigError.class, () -> config.getContext().get(ComponentRef.of(TestComponent.class)));
         }
 
+        @Test
+        public void should_not_retrieve_component_bound_after_context_created() {
+            Context context = config.getContext();
+            config.bindInstance(TestComponent.class, new TestComponent() {
+            });
+
+            assertTrue(context.getOpt(ComponentRef.of(TestComponent.class)).isEmpty());
+            assertTrue(config.getContext().getOpt(ComponentRef.of(TestComponent.class)).isPresent());
+        }
+
         @Test
         public void should_retrieve_empty_for_unbind_type_with_optional_get() {
             Optional<TestComponent> component = config.getContext().getOpt(ComponentRef.of(TestComponent.class));
@@ -126,6 +158,17 @@ class ContextTest {
             }).get());
         }
 
+        @Test
+        void should_retrieve_same_provider_of_bind_type_every_time() {
+            config.bindInstance(TestComponent.class, new TestComponent() {
+            });
+
+            Context context = config.getContext();
+            assertSame(context.get(new ComponentRef<Provider<TestComponent>>() {
+            }), context.get(new ComponentRef<Provider<TestComponent>>() {
+            }));
+        }
+
         @Test
         void should_not_retrieve_bind_type_as_unsupported_container() {
             TestComponent instance = new TestComponent() {
@@ -239,6 +282,106 @@ class ContextTest {
                 assertSame(context.get(ComponentRef.of(NotSingleton.class)), context.get(ComponentRef.of(NotSingleton.class)));
             }
 
+            static class CountingSingleton {
+                static final AtomicInteger created = new AtomicInteger();
+
+                public CountingSingleton() throws InterruptedException {
+                    created.incrementAndGet();
+                    Thread.sleep(10);
+                }
+            }
+
+            @Test
+            void should_construct_singleton_exactly_once_if_resolved_concurrently() throws Exception {
+                CountingSingleton.created.set(0);
+                config.bindComponent(CountingSingleton.class, CountingSingleton.class, new SingletonLiteral());
+                Context context = config.getContext();
+
+                int threads = 32;
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    CyclicBarrier barrier = new CyclicBarrier(threads);
+                    List<Future<CountingSingleton>> results = IntStream.range(0, threads).mapToObj(i -> executor.submit(() -> {
+                        barrier.await();
+                        return context.get(ComponentRef.of(CountingSingleton.class));
+                    })).toList();
+
+                    Set<CountingSingleton> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+                    for (Future<CountingSingleton> result : results) instances.add(result.get(10, TimeUnit.SECONDS));
+
+                    assertEquals(1, instances.size());
+                    assertEquals(1, CountingSingleton.created.get());
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            @Singleton
+            static class EagerDependency implements Dependency {
+                static final AtomicInteger created = new AtomicInteger();
+
+                public EagerDependency() {
+                    created.incrementAndGet();
+                }
+            }
+
+            @Singleton
+            static class EagerComponent implements TestComponent {
+                static final AtomicInteger created = new AtomicInteger();
+                private final Dependency dependency;
+
+                @Inject
+                public EagerComponent(Dependency dependency) {
+                    created.incrementAndGet();
+                    this.dependency = dependency;
+                }
+
+                @Override
+                public Dependency dependency() {
+                    return dependency;
+                }
+            }
+
+            @Test
+            void should_create_singletons_when_context_created_if_eager() {
+                EagerDependency.created.set(0);
+                EagerComponent.created.set(0);
+                config.bindComponent(Dependency.class, EagerDependency.class);
+                config.bindComponent(TestComponent.class, EagerComponent.class);
+                config.bindComponent(NotSingleton.class, NotSingleton.class);
+                config.eager();
+
+                Context context = config.getContext();
+                assertEquals(1, EagerDependency.created.get());
+                assertEquals(1, EagerComponent.created.get());
+
+                TestComponent component = context.get(ComponentRef.of(TestComponent.class));
+                assertSame(context.get(ComponentRef.of(Dependency.class)), component.dependency());
+                assertEquals(1, EagerDependency.created.get());
+                assertEquals(1, EagerComponent.created.get());
+            }
+
+            @Test
+            void should_report_construction_time_of_singletons_if_eager() {
+                Map<Component, Duration> durations = new HashMap<>();
+                config.bindComponent(Dependency.class, EagerDependency.class);
+                config.bindComponent(TestComponent.class, EagerComponent.class);
+                config.bindComponent(NotSingleton.class, NotSingleton.class);
+                config.eager(ForkJoinPool.commonPool(), durations::putAll);
+
+                config.getContext();
+                assertEquals(Set.of(new Component(Dependency.class, null), new Component(TestComponent.class, null)), durations.keySet());
+            }
+
+            @Test
+            void should_not_create_singletons_when_context_created_by_default() {
+                EagerDependency.created.set(0);
+                config.bindComponent(Dependency.class, EagerDependency.class);
+
+                config.getContext();
+                assertEquals(0, EagerDependency.created.get());
+            }
+
             @Singleton
             static class SingletonAnnotated implements Dependency {
 
@@ -261,6 +404,111 @@ class ContextTest {
                 assertEquals(PooledProvider.MAX, pooled.size());
             }
 
+            @Nested
+            class Request {
+                @RequestScoped
+                static class RequestScopedComponent {
+                }
+
+                @Test
+                void should_retrieve_same_instance_within_a_request() {
+                    config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context context = config.getContext();
+
+                    try (RequestScope.Request request = RequestScope.open()) {
+                        assertSame(context.get(ComponentRef.of(RequestScopedComponent.class)), context.get(ComponentRef.of(RequestScopedComponent.class)));
+                    }
+                }
+
+                @Test
+                void should_retrieve_different_instances_in_different_requests() {
+                    config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context context = config.getContext();
+
+                    RequestScopedComponent first, second;
+                    try (RequestScope.Request request = RequestScope.open()) {
+                        first = context.get(ComponentRef.of(RequestScopedComponent.class));
+                    }
+                    try (RequestScope.Request request = RequestScope.open()) {
+                        second = context.get(ComponentRef.of(RequestScopedComponent.class));
+                    }
+                    assertNotSame(first, second);
+                }
+
+                @Test
+                void should_restore_outer_request_when_nested_request_closed() {
+                    config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context context = config.getContext();
+
+                    try (RequestScope.Request outer = RequestScope.open()) {
+                        RequestScopedComponent component = context.get(ComponentRef.of(RequestScopedComponent.class));
+                        try (RequestScope.Request inner = RequestScope.open()) {
+                            assertNotSame(component, context.get(ComponentRef.of(RequestScopedComponent.class)));
+                        }
+                        assertSame(component, context.get(ComponentRef.of(RequestScopedComponent.class)));
+                    }
+                }
+
+                @Test
+                void should_continue_request_in_attached_thread() throws Exception {
+                    config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context context = config.getContext();
+
+                    try (RequestScope.Request request = RequestScope.open()) {
+                        RequestScopedComponent component = context.get(ComponentRef.of(RequestScopedComponent.class));
+                        RequestScope.Request current = RequestScope.current();
+                        CompletableFuture<RequestScopedComponent> attached = CompletableFuture.supplyAsync(() -> {
+                            try (RequestScope.Attachment attachment = RequestScope.attach(current)) {
+                                return context.get(ComponentRef.of(RequestScopedComponent.class));
+                            }
+                        });
+                        assertSame(component, attached.get());
+                    }
+                }
+
+                @Test
+                void should_restore_previous_request_when_attachment_closed() {
+                    config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context context = config.getContext();
+
+                    RequestScope.Request other;
+                    try (RequestScope.Request request = RequestScope.open()) {
+                        other = RequestScope.current();
+                    }
+                    try (RequestScope.Attachment attachment = RequestScope.attach(other)) {
+                        assertSame(other, RequestScope.current());
+                    }
+                    assertNull(RequestScope.current());
+                    assertThrows(ContextConfigException.class, () -> context.get(ComponentRef.of(RequestScopedComponent.class)));
+                }
+
+                @Test
+                void should_keep_instances_of_different_containers_apart_within_a_request() {
+                    config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context context = config.getContext();
+                    ContextConfig other = new ContextConfig();
+                    other.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context otherContext = other.getContext();
+
+                    try (RequestScope.Request request = RequestScope.open()) {
+                        RequestScopedComponent component = context.get(ComponentRef.of(RequestScopedComponent.class));
+                        RequestScopedComponent otherComponent = otherContext.get(ComponentRef.of(RequestScopedComponent.class));
+                        assertNotSame(component, otherComponent);
+                        assertSame(component, context.get(ComponentRef.of(RequestScopedComponent.class)));
+                        assertSame(otherComponent, otherContext.get(ComponentRef.of(RequestScopedComponent.class)));
+                    }
+                }
+
+                @Test
+                void should_throw_exception_if_retrieved_outside_request() {
+                    config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+                    Context context = config.getContext();
+
+                    ContextConfigException exception = assertThrows(ContextConfigException.class, () -> context.get(ComponentRef.of(RequestScopedComponent.class)));
+                    assertTrue(exception.getMessage().contains("Out of scope"));
+                }
+            }
+
             @Test
             void should_throw_exception_if_multi_scope_provided() {
                 ContextConfigException exception = assertThrows(ContextConfigException.class, () -> config.bindComponent(NotSingleton.class, NotSingleton.class, new SingletonLiteral(), new PooledLiteral()));
@@ -782,5 +1030,181 @@ class ContextTest {
 
 
     }
+    @Nested
+    class GeneratedFactory {
+        static class FactoryComponent {
+            final Dependency dependency;
+            final boolean generated;
+
+            @Inject
+            FactoryComponent(Dependency dependency) {
+                this(dependency, false);
+            }
+
+            FactoryComponent(Dependency dependency, boolean generated) {
+                this.dependency = dependency;
+                this.generated = generated;
+            }
+        }
+
+        public static class FactoryComponentFactory implements ComponentFactory<FactoryComponent> {
+            static final ComponentRef<?> dependency = ComponentRef.of(Dependency.class, ComponentFactory.annotation(jakarta.inject.Named.class, Map.of("value", "ChosenOne")));
+
+            @Override
+            public Class<FactoryComponent> component() {
+                return FactoryComponent.class;
+            }
+
+            @Override
+            public List<ComponentRef<?>> dependencies() {
+                return List.of(dependency);
+            }
+
+            @Override
+            public FactoryComponent create(Context context) {
+                return new FactoryComponent((Dependency) context.get(dependency), true);
+            }
+        }
+
+        @Test
+        void should_create_component_by_registered_factory() {
+            Dependency dependency = new Dependency() {
+            };
+            config.bindInstance(Dependency.class, dependency, new NamedLiteral("ChosenOne"));
+            config.bindComponent(FactoryComponent.class, FactoryComponent.class);
+
+            FactoryComponent component = config.getContext().get(ComponentRef.of(FactoryComponent.class));
+            assertTrue(component.generated);
+            assertSame(dependency, component.dependency);
+        }
+
+        @Test
+        void should_check_dependencies_declared_by_registered_factory() {
+            config.bindComponent(FactoryComponent.class, FactoryComponent.class);
+
+            ContextConfigError error = assertThrows(ContextConfigError.class, () -> config.getContext());
+            ContextConfigError.DependencyNotFount dependencyNotFount = assertInstanceOf(ContextConfigError.DependencyNotFount.class, error);
+            assertEquals(new Component(Dependency.class, new NamedLiteral("ChosenOne")), dependencyNotFount.dependency());
+        }
+
+        @Test
+        void should_create_qualifier_equal_to_annotation_declared_on_element() throws Exception {
+            jakarta.inject.Named declared = NotCyclicInjectField.class.getDeclaredField("dependency").getAnnotation(jakarta.inject.Named.class);
+            jakarta.inject.Named literal = ComponentFactory.annotation(jakarta.inject.Named.class, Map.of("value", "ChosenOne"));
+
+            assertEquals(declared, literal);
+            assertEquals(literal, declared);
+            assertEquals(declared.hashCode(), literal.hashCode());
+            assertNotEquals(ComponentFactory.annotation(jakarta.inject.Named.class, Map.of("value", "Skywalker")), declared);
+        }
+
+        static class NotCyclicInjectField {
+            @Inject
+            @jakarta.inject.Named("ChosenOne")
+            Dependency dependency;
+        }
+    }
+    @Nested
+    class Instrumentation {
+        @Singleton
+        static class SingletonDependency implements Dependency {
+        }
+
+        static class PrototypeComponent implements TestComponent {
+            @Inject
+            Dependency dependency;
+
+            @Inject
+            Provider<Dependency> provider;
+        }
+
+        ComponentStatistics statistics;
+
+        @BeforeEach
+        void setup() {
+            statistics = new ComponentStatistics();
+            config.bindComponent(Dependency.class, SingletonDependency.class);
+            config.bindComponent(TestComponent.class, PrototypeComponent.class);
+        }
+
+        @Test
+        void should_record_resolutions_and_constructions_of_each_component() {
+            config.metrics(statistics);
+            Context context = config.getContext();
+            for (int i = 0; i < 3; i++) context.get(ComponentRef.of(TestComponent.class));
+
+            ComponentStatistics.Statistics component = statistics.of(new Component(TestComponent.class, null));
+            assertEquals(3, component.resolutions());
+            assertEquals(3, component.constructions().count());
+            assertTrue(Double.isNaN(component.singletonHitRatio()));
+        }
+
+        @Test
+        void should_record_singleton_hits_and_misses() {
+            config.metrics(statistics);
+            Context context = config.getContext();
+            for (int i = 0; i < 3; i++) context.get(ComponentRef.of(TestComponent.class));
+
+            ComponentStatistics.Statistics dependency = statistics.of(new Component(Dependency.class, null));
+            assertEquals(3, dependency.resolutions());
+            assertEquals(1, dependency.singletonMisses());
+            assertEquals(2, dependency.singletonHits());
+            assertEquals(1, dependency.constructions().count());
+        }
+
+        @Test
+        void should_not_record_if_metrics_not_enabled() {
+            config.getContext().get(ComponentRef.of(TestComponent.class));
+            assertTrue(statistics.all().isEmpty());
+        }
+
+        @Test
+        void should_record_latency_in_log_linear_buckets() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (long i = 1; i <= 1000; i++) histogram.record(i * 1000);
+
+            assertEquals(1000, histogram.count());
+            assertEquals(500_000, histogram.percentile(50), 500_000 / 16.0);
+            assertEquals(990_000, histogram.percentile(99), 990_000 / 16.0);
+            assertEquals(1_000_000, histogram.max(), 1_000_000 / 16.0);
+        }
+
+        @Test
+        void should_export_dependency_graph_as_dot() {
+            String dot = config.graph(GraphFormat.DOT);
+
+            assertTrue(dot.startsWith("digraph components {"));
+            assertTrue(dot.contains("[label=\"" + Dependency.class.getName() + "\", shape=box]"));
+            assertTrue(dot.contains("[label=\"" + TestComponent.class.getName() + "\"]"));
+            assertEquals(2, dot.lines().filter(it -> it.contains(" -> ")).count());
+            assertEquals(1, dot.lines().filter(it -> it.endsWith("[style=dashed];")).count());
+        }
+
+        @Test
+        void should_export_dependency_graph_as_json_in_topological_order() {
+            String json = config.graph(GraphFormat.JSON).replaceAll("\"id\":\\d+", "\"id\":_");
+
+            assertEquals("{\"components\":[" +
+                    "{\"id\":_,\"type\":\"" + Dependency.class.getName() + "\",\"qualifier\":null,\"singleton\":true,\"dependencies\":[]}," +
+                    "{\"id\":_,\"type\":\"" + TestComponent.class.getName() + "\",\"qualifier\":null,\"singleton\":false," +
+                    "\"dependencies\":[{\"id\":_,\"provider\":false},{\"id\":_,\"provider\":true}]}" +
+                    "]}", json);
+        }
+
+        @Test
+        void should_check_dependencies_when_exporting_graph() {
+            config.bindComponent(AnotherDependency.class, AnotherDependencyImpl.class);
+            assertThrows(ContextConfigError.class, () -> config.graph(GraphFormat.DOT));
+        }
+
+        static class AnotherDependencyImpl implements AnotherDependency {
+            @Inject
+            Dependency dependency;
+
+            @Inject
+            @jakarta.inject.Named("missing")
+            Dependency qualified;
+        }
+    }
 }
 
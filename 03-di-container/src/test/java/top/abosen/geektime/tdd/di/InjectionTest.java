@@ -6,6 +6,8 @@ import jakarta.inject.Provider;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mockito;
 import top.abosen.geektime.tdd.di.Utils.Dependency;
 import top.abosen.geektime.tdd.di.Utils.NamedLiteral;
@@ -71,6 +73,12 @@ public class InjectionTest {
                 assertSame(dependency, instance.dependency);
             }
 
+            @Test
+            public void should_inject_dependency_via_inject_constructor_without_compiled_invoker() {
+                InjectConstructor instance = new InjectionProvider<>(InjectConstructor.class, false).get(context);
+                assertSame(dependency, instance.dependency);
+            }
+
             @Test
             void should_include_dependency_from_inject_constructor() {
                 InjectionProvider<InjectConstructor> provider = new InjectionProvider<>(InjectConstructor.class);
@@ -99,6 +107,55 @@ public class InjectionTest {
             }
         }
 
+        @Nested
+        class ExceptionThrown {
+            static class ThrowingConstructor {
+                @Inject
+                public ThrowingConstructor(Dependency dependency) {
+                    throw new IllegalStateException("constructor");
+                }
+            }
+
+            static class ThrowingMethod {
+                @Inject
+                void install(Dependency dependency) {
+                    throw new IllegalStateException("method");
+                }
+            }
+
+            static class CheckedThrowingConstructor {
+                @Inject
+                public CheckedThrowingConstructor() throws Exception {
+                    throw new Exception("checked");
+                }
+            }
+
+            @ParameterizedTest(name = "compiled: {0}")
+            @ValueSource(booleans = {true, false})
+            void should_rethrow_runtime_exception_from_inject_constructor(boolean compiled) {
+                IllegalStateException exception = assertThrows(IllegalStateException.class,
+                        () -> new InjectionProvider<>(ThrowingConstructor.class, compiled).get(context));
+                assertEquals("constructor", exception.getMessage());
+            }
+
+            @ParameterizedTest(name = "compiled: {0}")
+            @ValueSource(booleans = {true, false})
+            void should_rethrow_runtime_exception_from_inject_method(boolean compiled) {
+                IllegalStateException exception = assertThrows(IllegalStateException.class,
+                        () -> new InjectionProvider<>(ThrowingMethod.class, compiled).get(context));
+                assertEquals("method", exception.getMessage());
+            }
+
+            @ParameterizedTest(name = "compiled: {0}")
+            @ValueSource(booleans = {true, false})
+            void should_wrap_checked_exception_from_inject_constructor(boolean compiled) {
+                RuntimeException exception = assertThrows(RuntimeException.class,
+                        () -> new InjectionProvider<>(CheckedThrowingConstructor.class, compiled).get(context));
+                assertEquals(Exception.class, exception.getCause().getClass());
+                assertEquals("checked", exception.getCause().getMessage());
+            }
+        }
+
         @Nested
         class IllegalInjectConstructors {
             abstract class AbstractComponent implements TestComponent {
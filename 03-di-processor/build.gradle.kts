@@ -0,0 +1,37 @@
+plugins {
+    `java-library`
+    "jacoco"
+    `maven-publish`
+}
+
+
+group = "top.abosen.geektime.tdd"
+version = "1.0-SNAPSHOT"
+
+
+repositories {
+    mavenLocal()
+    mavenCentral()
+}
+
+dependencies {
+    testImplementation("top.abosen.geektime.tdd:container:1.0-SNAPSHOT")
+    testImplementation("jakarta.inject:jakarta.inject-api:2.0.1")
+    testImplementation("org.junit.jupiter:junit-jupiter-api:5.8.2")
+    testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.8.2")
+}
+tasks.withType<Test>() {
+    useJUnitPlatform()
+}
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+publishing {
+    publications {
+        create<MavenPublication>("maven") {
+            artifactId = "processor"
+            from(components["java"])
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package top.abosen.geektime.tdd.di.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.SimpleAnnotationValueVisitor14;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.*;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * 为标注了 {@code @Inject} 的组件生成 {@code ComponentFactory}, 并登记到 {@value #REGISTRY}
+ * <p>
+ * 生成的工厂与 {@code InjectionProvider} 的注入顺序一致: 构造器, 然后按 父类 -> 子类, 字段 -> 方法 注入,
+ * 被子类覆盖的方法不注入. 工厂与组件在同一个包中, 无法从该包访问的注入点(如 private 成员)不生成工厂,
+ * 不合法的组件也不生成, 运行时仍由反射注入并报告错误
+ *
+ * @author qiubaisen
+ * @date 2023/2/14
+ */
+@SupportedAnnotationTypes(InjectionProcessor.INJECT)
+public class InjectionProcessor extends AbstractProcessor {
+    static final String INJECT = "jakarta.inject.Inject";
+    static final String QUALIFIER = "jakarta.inject.Qualifier";
+    static final String REGISTRY = "META-INF/top.abosen.geektime.tdd.di.factories";
+    static final String SUFFIX = "_InjectionFactory";
+
+    private static final String FACTORY = "top.abosen.geektime.tdd.di.ComponentFactory";
+    private static final String REF = "top.abosen.geektime.tdd.di.ComponentRef";
+    private static final String CONTEXT = "top.abosen.geektime.tdd.di.Context";
+
+    private final Map<String, String> registry = new TreeMap<>();
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeRegistry();
+            return false;
+        }
+        Set<TypeElement> components = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getEnclosingElement() instanceof TypeElement component) components.add(component);
+            }
+        }
+        components.forEach(this::generate);
+        return false;
+    }
+
+    private void generate(TypeElement component) {
+        try {
+            String name = factoryName(component);
+            String source = new FactorySource(component, name).source();
+            try (Writer writer = processingEnv.getFiler().createSourceFile(name, component).openWriter()) {
+                writer.write(source);
+            }
+            registry.put(elements.getBinaryName(component).toString(), name);
+        } catch (Unsupported e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    MessageFormat.format("No factory generated, injected by reflection: {0}", e.getMessage()), component);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeRegistry() {
+        if (registry.isEmpty()) return;
+        try (Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY).openWriter()) {
+            for (Map.Entry<String, String> entry : registry.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String factoryName(TypeElement component) {
+        Deque<String> names = new ArrayDeque<>();
+        Element current = component;
+        for (; current instanceof TypeElement type; current = current.getEnclosingElement()) {
+            names.addFirst(type.getSimpleName().toString());
+        }
+        String pkg = elements.getPackageOf(component).getQualifiedName().toString();
+        return (pkg.isEmpty() ? "" : pkg + ".") + String.join("_", names) + SUFFIX;
+    }
+
+    /**
+     * 生成单个组件的工厂源码, 不支持时抛出 {@link Unsupported}
+     */
+    private class FactorySource {
+        private final TypeElement component;
+        private final String name;
+        private final PackageElement pkg;
+        private final List<String> refs = new ArrayList<>();
+
+        FactorySource(TypeElement component, String name) {
+            this.component = component;
+            this.name = name;
+            this.pkg = elements.getPackageOf(component);
+        }
+
+        String source() {
+            check(component.getKind() == ElementKind.CLASS, "not a class");
+            check(!component.getModifiers().contains(Modifier.ABSTRACT), "abstract");
+            check(component.getTypeParameters().isEmpty(), "type parameters");
+            check(component.getNestingKind() == NestingKind.TOP_LEVEL ||
+                    component.getNestingKind() == NestingKind.MEMBER && component.getModifiers().contains(Modifier.STATIC), "not a static class");
+            String type = typeName(component.asType());
+
+            List<TypeElement> hierarchy = hierarchy();
+            ExecutableElement constructor = constructor();
+            String create = type + " instance = new " + type + "(" + arguments(constructor) + ");";
+
+            Map<Element, String> injections = new HashMap<>();
+            for (TypeElement current : hierarchy) {
+                for (VariableElement field : injectable(ElementFilter.fieldsIn(current.getEnclosedElements()))) {
+                    check(!field.getModifiers().contains(Modifier.FINAL), "final field " + field);
+                    injections.put(field, target(current, field) + field.getSimpleName() + " = " + dependency(field.asType(), field) + ";");
+                }
+            }
+            for (int i = 0; i < hierarchy.size(); i++) {
+                for (ExecutableElement method : injectable(ElementFilter.methodsIn(hierarchy.get(i).getEnclosedElements()))) {
+                    if (overridden(method, hierarchy.subList(0, i))) continue;
+                    check(method.getTypeParameters().isEmpty(), "method with type parameters " + method);
+                    injections.put(method, target(hierarchy.get(i), method) + method.getSimpleName() + "(" + arguments(method) + ");");
+                }
+            }
+
+            StringBuilder body = new StringBuilder("        ").append(create).append("\n");
+            for (TypeElement current : reversed(hierarchy)) {
+                for (Element member : current.getEnclosedElements()) {
+                    if (member.getKind() == ElementKind.FIELD && injections.containsKey(member)) body.append("        ").append(injections.get(member)).append("\n");
+                }
+                for (Element member : current.getEnclosedElements()) {
+                    if (member.getKind() == ElementKind.METHOD && injections.containsKey(member)) body.append("        ").append(injections.get(member)).append("\n");
+                }
+            }
+            return render(type, body.toString());
+        }
+
+        private String render(String type, String body) {
+            String simpleName = name.substring(name.lastIndexOf('.') + 1);
+            return (pkg.isUnnamed() ? "" : "package " + pkg.getQualifiedName() + ";\n\n") +
+                    "/**\n * Generated by " + InjectionProcessor.class.getName() + "\n */\n" +
+                    "@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n" +
+                    "public final class " + simpleName + " implements " + FACTORY + "<" + type + "> {\n" +
+                    "    private static final " + REF + "<?>[] refs = {" + refs.stream().map(it -> "\n            " + it).collect(joining(",")) + "\n    };\n" +
+                    "    private static final java.util.List<" + REF + "<?>> dependencies = java.util.List.of(refs);\n\n" +
+                    "    @Override\n" +
+                    "    public Class<" + type + "> component() {\n" +
+                    "        return " + type + ".class;\n" +
+                    "    }\n\n" +
+                    "    @Override\n" +
+                    "    public java.util.List<" + REF + "<?>> dependencies() {\n" +
+                    "        return dependencies;\n" +
+                    "    }\n\n" +
+                    "    @Override\n" +
+                    "    public " + type + " create(" + CONTEXT + " context) {\n" +
+                    body +
+                    "        return instance;\n" +
+                    "    }\n" +
+                    "}\n";
+        }
+
+        /**
+         * @return 组件自身在前, 直到 Object 之前的所有父类
+         */
+        private List<TypeElement> hierarchy() {
+            List<TypeElement> hierarchy = new ArrayList<>();
+            for (TypeMirror current = component.asType(); current.getKind() == TypeKind.DECLARED; ) {
+                TypeElement type = (TypeElement) types.asElement(current);
+                if (type.getQualifiedName().contentEquals(Object.class.getName())) break;
+                hierarchy.add(type);
+                current = type.getSuperclass();
+            }
+            return hierarchy;
+        }
+
+        private ExecutableElement constructor() {
+            List<ExecutableElement> constructors = ElementFilter.constructorsIn(component.getEnclosedElements());
+            List<ExecutableElement> injectable = injectable(constructors);
+            check(injectable.size() <= 1, "ambiguous injectable constructors");
+            ExecutableElement constructor = injectable.isEmpty() ? constructors.stream().filter(it -> it.getParameters().isEmpty())
+                    .findFirst().orElseThrow(() -> new Unsupported("no default constructor")) : injectable.get(0);
+            check(!constructor.getModifiers().contains(Modifier.PRIVATE), "private constructor");
+            return constructor;
+        }
+
+        /**
+         * 与运行时一致: 在声明类之下的子类中有同名, 同参数类型且互相可见的方法即视为覆盖
+         */
+        private boolean overridden(ExecutableElement method, List<TypeElement> subclasses) {
+            for (TypeElement subclass : subclasses) {
+                for (ExecutableElement candidate : ElementFilter.methodsIn(subclass.getEnclosedElements())) {
+                    if (candidate.getSimpleName().equals(method.getSimpleName()) && sameParameterTypes(candidate, method) && visible(candidate, method)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean sameParameterTypes(ExecutableElement m, ExecutableElement o) {
+            if (m.getParameters().size() != o.getParameters().size()) return false;
+            for (int i = 0; i < m.getParameters().size(); i++) {
+                if (!types.isSameType(types.erasure(m.getParameters().get(i).asType()), types.erasure(o.getParameters().get(i).asType()))) return false;
+            }
+            return true;
+        }
+
+        private boolean visible(ExecutableElement m, ExecutableElement o) {
+            if (elements.getPackageOf(m).equals(elements.getPackageOf(o))) {
+                return !m.getModifiers().contains(Modifier.PRIVATE) && !o.getModifiers().contains(Modifier.PRIVATE);
+            }
+            return isPublicOrProtected(m) && isPublicOrProtected(o);
+        }
+
+        private static boolean isPublicOrProtected(Element element) {
+            return element.getModifiers().contains(Modifier.PUBLIC) || element.getModifiers().contains(Modifier.PROTECTED);
+        }
+
+        private String target(TypeElement declaring, Element member) {
+            check(accessible(member), "inaccessible member " + member + " of " + declaring);
+            String type = typeName(declaring.asType());
+            return member.getModifiers().contains(Modifier.STATIC) ? type + "." : "((" + type + ") instance).";
+        }
+
+        private String arguments(ExecutableElement executable) {
+            return executable.getParameters().stream().map(it -> dependency(it.asType(), it)).collect(joining(", "));
+        }
+
+        private String dependency(TypeMirror type, Element element) {
+            String qualifier = qualifier(element);
+            String ref;
+            if (type instanceof DeclaredType declared && !declared.getTypeArguments().isEmpty()) {
+                TypeMirror argument = declared.getTypeArguments().get(0);
+                check(argument.getKind() == TypeKind.DECLARED && ((DeclaredType) argument).getTypeArguments().isEmpty(), "unsupported type " + type);
+                ref = REF + ".of(" + typeName(type) + ".class, " + typeName(argument) + ".class, " + qualifier + ")";
+            } else {
+                ref = REF + ".of(" + typeName(type) + ".class, " + qualifier + ")";
+            }
+            refs.add(ref);
+            return "(" + typeName(type) + ") context.get(refs[" + (refs.size() - 1) + "])";
+        }
+
+        private String qualifier(Element element) {
+            List<? extends AnnotationMirror> qualifiers = element.getAnnotationMirrors().stream()
+                    .filter(it -> it.getAnnotationType().asElement().getAnnotationMirrors().stream()
+                            .anyMatch(meta -> ((TypeElement) meta.getAnnotationType().asElement()).getQualifiedName().contentEquals(QUALIFIER)))
+                    .toList();
+            check(qualifiers.size() <= 1, "ambiguous qualifiers on " + element);
+            if (qualifiers.isEmpty()) return "null";
+
+            AnnotationMirror qualifier = qualifiers.get(0);
+            String values = qualifier.getElementValues().entrySet().stream()
+                    .map(it -> "java.util.Map.entry(\"" + it.getKey().getSimpleName() + "\", " + literal(it.getValue(), it.getKey().getReturnType()) + ")")
+                    .collect(joining(", "));
+            return FACTORY + ".annotation(" + typeName(qualifier.getAnnotationType()) + ".class, java.util.Map.ofEntries(" + values + "))";
+        }
+
+        private String literal(AnnotationValue value, TypeMirror type) {
+            return value.accept(new SimpleAnnotationValueVisitor14<String, TypeMirror>() {
+                @Override
+                protected String defaultAction(Object constant, TypeMirror type) {
+                    return elements.getConstantExpression(constant);
+                }
+
+                @Override
+                public String visitType(TypeMirror value, TypeMirror type) {
+                    return typeName(value) + ".class";
+                }
+
+                @Override
+                public String visitEnumConstant(VariableElement value, TypeMirror type) {
+                    return typeName(value.getEnclosingElement().asType()) + "." + value.getSimpleName();
+                }
+
+                @Override
+                public String visitAnnotation(AnnotationMirror value, TypeMirror type) {
+                    throw new Unsupported("nested annotation " + value);
+                }
+
+                @Override
+                public String visitArray(List<? extends AnnotationValue> values, TypeMirror type) {
+                    TypeMirror component = ((ArrayType) type).getComponentType();
+                    return "new " + typeName(type) + "{" + values.stream().map(it -> it.accept(this, component)).collect(joining(", ")) + "}";
+                }
+            }, type);
+        }
+
+        /**
+         * 擦除后的类型名, 类型须可从工厂所在的包访问
+         */
+        private String typeName(TypeMirror type) {
+            return switch (type.getKind()) {
+                case BOOLEAN, BYTE, SHORT, INT, LONG, CHAR, FLOAT, DOUBLE -> type.getKind().name().toLowerCase(Locale.ROOT);
+                case ARRAY -> typeName(((ArrayType) type).getComponentType()) + "[]";
+                case DECLARED -> {
+                    TypeElement element = (TypeElement) types.asElement(type);
+                    check(accessible(element), "inaccessible type " + element);
+                    yield element.getQualifiedName().toString();
+                }
+                default -> throw new Unsupported("unsupported type " + type);
+            };
+        }
+
+        private boolean accessible(Element element) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) return false;
+            if (!element.getModifiers().contains(Modifier.PUBLIC) && !elements.getPackageOf(element).equals(pkg)) return false;
+            Element enclosing = element.getEnclosingElement();
+            return !(enclosing instanceof TypeElement) || accessible(enclosing);
+        }
+
+        private <E extends Element> List<E> injectable(List<E> elements) {
+            return elements.stream().filter(it -> it.getAnnotationMirrors().stream()
+                    .anyMatch(annotation -> ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(INJECT))).toList();
+        }
+
+        private static <T> List<T> reversed(List<T> list) {
+            List<T> reversed = new ArrayList<>(list);
+            Collections.reverse(reversed);
+            return reversed;
+        }
+
+        private static void check(boolean condition, String reason) {
+            if (!condition) throw new Unsupported(reason);
+        }
+    }
+
+    private static class Unsupported extends RuntimeException {
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package top.abosen.geektime.tdd.di.processor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.abosen.geektime.tdd.di.ComponentFactory;
+import top.abosen.geektime.tdd.di.ComponentRef;
+import top.abosen.geektime.tdd.di.ContextConfig;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author qiubaisen
+ * @date 2023/2/14
+ */
+class InjectionProcessorTest {
+    @TempDir
+    Path output;
+
+    ClassLoader loader;
+
+    private List<Diagnostic<? extends JavaFileObject>> compile(String... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<JavaFileObject> files = Arrays.stream(sources).map(Source::new).map(JavaFileObject.class::cast).toList();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                List.of("-d", output.toString(), "-classpath", System.getProperty("java.class.path")), null, files);
+        task.setProcessors(List.of(new InjectionProcessor()));
+        assertTrue(task.call(), () -> diagnostics.getDiagnostics().toString());
+        loader = new URLClassLoader(new URL[]{output.toUri().toURL()}, getClass().getClassLoader());
+        return diagnostics.getDiagnostics();
+    }
+
+    private Class<?> load(String name) throws ClassNotFoundException {
+        return Class.forName(name, true, loader);
+    }
+
+    private Properties registry() throws IOException {
+        Properties registry = new Properties();
+        Path file = output.resolve(InjectionProcessor.REGISTRY);
+        if (Files.exists(file)) {
+            try (var in = Files.newInputStream(file)) {
+                registry.load(in);
+            }
+        }
+        return registry;
+    }
+
+    private <T> T get(ContextConfig config, Class<T> type) {
+        return config.getContext().get(ComponentRef.of(type));
+    }
+
+    static class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String code) {
+            super(URI.create("string:///" + name(code).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        private static String name(String code) {
+            String pkg = code.substring(code.indexOf("package ") + 8, code.indexOf(';'));
+            String rest = code.substring(code.indexOf("class ") + 6);
+            return pkg + "." + rest.substring(0, rest.indexOf(' '));
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    static final String DEPENDENCY = """
+            package test;
+            public class Dependency {
+            }
+            """;
+
+    @Nested
+    class Generation {
+        @Test
+        public void should_generate_factory_and_register_it() throws Exception {
+            compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    public class Component {
+                        final Dependency dependency;
+                        @Inject
+                        public Component(Dependency dependency) {
+                            this.dependency = dependency;
+                        }
+                    }
+                    """);
+
+            assertEquals("test.Component" + InjectionProcessor.SUFFIX, registry().getProperty("test.Component"));
+            ComponentFactory<?> factory = (ComponentFactory<?>) load("test.Component" + InjectionProcessor.SUFFIX).getConstructor().newInstance();
+            assertSame(load("test.Component"), factory.component());
+            assertEquals(List.of(ComponentRef.of(load("test.Dependency"))), factory.dependencies());
+        }
+
+        @Test
+        public void should_name_factory_of_nested_component_after_enclosing_classes() throws Exception {
+            compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    public class Outer {
+                        static class Component {
+                            @Inject
+                            Dependency dependency;
+                        }
+                    }
+                    """);
+
+            assertEquals("test.Outer_Component" + InjectionProcessor.SUFFIX, registry().getProperty("test.Outer$Component"));
+        }
+
+        @Test
+        public void should_not_generate_factory_if_injection_point_is_private() throws Exception {
+            List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    public class Component {
+                        @Inject
+                        private Dependency dependency;
+                    }
+                    """);
+
+            assertNull(registry().getProperty("test.Component"));
+            assertTrue(diagnostics.stream().anyMatch(it -> it.getKind() == Diagnostic.Kind.NOTE && it.getMessage(null).contains("reflection")));
+        }
+
+        @Test
+        public void should_not_generate_factory_if_inherited_injection_point_is_not_accessible() throws Exception {
+            compile(DEPENDENCY, """
+                    package base;
+                    import jakarta.inject.Inject;
+                    public class Base {
+                        @Inject
+                        void install(test.Dependency dependency) {
+                        }
+                    }
+                    """, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    public class Component extends base.Base {
+                        @Inject
+                        Dependency dependency;
+                    }
+                    """);
+
+            assertNull(registry().getProperty("test.Component"));
+        }
+
+        @Test
+        public void should_not_generate_factory_for_abstract_component() throws Exception {
+            compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    public abstract class Component {
+                        @Inject
+                        Dependency dependency;
+                    }
+                    """);
+
+            assertTrue(registry().isEmpty());
+        }
+
+        @Test
+        public void should_not_generate_factory_for_invalid_component() throws Exception {
+            compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    public class Component {
+                        @Inject
+                        final Dependency dependency = null;
+                    }
+                    """);
+
+            assertTrue(registry().isEmpty());
+        }
+    }
+
+    @Nested
+    class Injection {
+        ContextConfig config;
+
+        @BeforeEach
+        public void setup() {
+            config = new ContextConfig();
+        }
+
+        @Test
+        public void should_inject_via_generated_factory_in_the_same_order_as_reflection() throws Exception {
+            compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    import java.util.ArrayList;
+                    import java.util.List;
+                    public class Base {
+                        public final List<String> injected = new ArrayList<>();
+                        @Inject
+                        Dependency baseField;
+                        @Inject
+                        void baseMethod(Dependency dependency) {
+                            injected.add("base method:" + (baseField != null));
+                        }
+                        @Inject
+                        void overridden() {
+                            injected.add("base overridden");
+                        }
+                    }
+                    """, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    public class Component extends Base {
+                        @Inject
+                        Dependency field;
+                        @Inject
+                        public Component(Dependency dependency) {
+                            injected.add("constructor");
+                        }
+                        @Inject
+                        void method(Dependency dependency) {
+                            injected.add("method:" + (field != null));
+                        }
+                        void overridden() {
+                            injected.add("overridden");
+                        }
+                    }
+                    """);
+            Class<?> dependency = load("test.Dependency");
+            Class<Object> component = (Class<Object>) load("test.Component");
+            config.bindInstance((Class<Object>) dependency, dependency.getConstructor().newInstance());
+            config.bindComponent(component, component);
+
+            Object instance = get(config, component);
+            assertEquals(List.of("constructor", "base method:true", "method:true"), component.getField("injected").get(instance));
+            assertNotNull(registry().getProperty("test.Component"));
+        }
+
+        @Test
+        public void should_inject_qualified_dependency_via_generated_factory() throws Exception {
+            compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    import jakarta.inject.Named;
+                    public class Component {
+                        @Inject
+                        @Named("ChosenOne")
+                        public Dependency dependency;
+                    }
+                    """);
+            Class<?> dependency = load("test.Dependency");
+            Object chosenOne = dependency.getConstructor().newInstance();
+            Class<Object> component = (Class<Object>) load("test.Component");
+            config.bindInstance((Class<Object>) dependency, chosenOne, ComponentFactory.annotation(jakarta.inject.Named.class, Map.of("value", "ChosenOne")));
+            config.bindComponent(component, component);
+
+            assertSame(chosenOne, component.getField("dependency").get(get(config, component)));
+            assertNotNull(registry().getProperty("test.Component"));
+        }
+
+        @Test
+        public void should_inject_provider_via_generated_factory() throws Exception {
+            compile(DEPENDENCY, """
+                    package test;
+                    import jakarta.inject.Inject;
+                    import jakarta.inject.Provider;
+                    public class Component {
+                        public final Provider<Dependency> dependency;
+                        @Inject
+                        public Component(Provider<Dependency> dependency) {
+                            this.dependency = dependency;
+                        }
+                    }
+                    """);
+            Class<?> dependency = load("test.Dependency");
+            Object instance = dependency.getConstructor().newInstance();
+            Class<Object> component = (Class<Object>) load("test.Component");
+            config.bindInstance((Class<Object>) dependency, instance);
+            config.bindComponent(component, component);
+
+            jakarta.inject.Provider<?> provider = (jakarta.inject.Provider<?>) component.getField("dependency").get(get(config, component));
+            assertSame(instance, provider.get());
+            assertNotNull(registry().getProperty("test.Component"));
+        }
+    }
+}
@@ -9,6 +9,15 @@ version = "1.0-SNAPSHOT"
 repositories {
     mavenCentral()
 }
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+    }
+}
+val jmhImplementation: Configuration by configurations.getting {
+    extendsFrom(configurations.implementation.get(), configurations.testImplementation.get())
+}
 
 dependencies {
     implementation("jakarta.ws.rs:jakarta.ws.rs-api:3.1.0")
@@ -25,11 +34,20 @@ dependencies {
 
     testImplementation("org.junit.jupiter:junit-jupiter:5.9.0")
     testImplementation("org.mockito:mockito-core:4.8.0")
+    jmhImplementation("org.openjdk.jmh:jmh-core:1.36")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.36")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs JMH benchmarks, pass options with -PjmhArgs=\"...\""
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args = (findProperty("jmhArgs") as String? ?: "").split(" ").filter { it.isNotBlank() }
+}
 
 java{
     sourceCompatibility = JavaVersion.VERSION_17
@@ -0,0 +1,155 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 资源方法等待下游 {@link #latency} 毫秒, Jetty 只有 {@link #THREADS} 个线程时, 同步和异步资源方法的吞吐量
+ * <p>
+ * ./gradlew jmh -PjmhArgs="AsyncBenchmark"
+ *
+ * @author qiubaisen
+ * @date 2023/2/25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Threads(64)
+@Fork(1)
+public class AsyncBenchmark {
+    static final int THREADS = 8;
+
+    @Param({"50"})
+    int latency;
+
+    static Executor downstream;
+
+    Server server;
+    HttpClient client;
+    int port;
+
+    @Setup
+    public void setup() throws Exception {
+        downstream = CompletableFuture.delayedExecutor(latency, TimeUnit.MILLISECONDS);
+
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        when(delegate.createResponseBuilder()).thenAnswer(it -> new StubResponseBuilder());
+        RuntimeDelegate.setInstance(delegate);
+
+        Providers providers = mock(Providers.class);
+        when(providers.getMessageBodyWriter(eq(String.class), any(), any(), any())).thenReturn(new StringWriter());
+        ResourceContext resourceContext = mock(ResourceContext.class);
+        when(resourceContext.getResource(eq(Slow.class))).thenReturn(new Slow());
+        Runtime runtime = mock(Runtime.class);
+        ResourceRouter router = new DefaultResourceRouter(runtime, List.of(new ResourceHandler(Slow.class)));
+        when(runtime.getProviders()).thenReturn(providers);
+        when(runtime.getResourceRouter()).thenReturn(router);
+        when(runtime.createResourceContext(any(), any())).thenReturn(resourceContext);
+        when(runtime.createUriInfoBuilder(any())).thenAnswer(it -> new StubUriInfoBuilder());
+
+        server = new Server(new QueuedThreadPool(THREADS, THREADS));
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        server.addConnector(connector);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        ServletHolder holder = new ServletHolder(new ResourceServlet(runtime));
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder, "/");
+        server.start();
+        port = connector.getLocalPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private int get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/slow/" + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int blocking() throws Exception {
+        return get("blocking");
+    }
+
+    @Benchmark
+    public int completionStage() throws Exception {
+        return get("completion-stage");
+    }
+
+    @Benchmark
+    public int suspended() throws Exception {
+        return get("suspended");
+    }
+
+    @Path("/slow")
+    public static class Slow {
+        @GET
+        @Path("/blocking")
+        public String blocking() {
+            return CompletableFuture.supplyAsync(() -> "slow", downstream).join();
+        }
+
+        @GET
+        @Path("/completion-stage")
+        public CompletionStage<String> completionStage() {
+            return CompletableFuture.supplyAsync(() -> "slow", downstream);
+        }
+
+        @GET
+        @Path("/suspended")
+        public void suspended(@Suspended AsyncResponse response) {
+            downstream.execute(() -> response.resume("slow"));
+        }
+    }
+
+    static class StringWriter implements MessageBodyWriter<String> {
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return true;
+        }
+
+        @Override
+        public void writeTo(String s, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws java.io.IOException {
+            entityStream.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package top.abosen.geektime.tdd.rest;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 压缩 size 字节的 JSON 实体: identity 不压缩; stream 每次创建 {@link GZIPOutputStream} (自带 native Deflater);
+ * pooled 使用 {@link Compression} 中复用的 Deflater; cached 从 {@link ResponseCache} 条目取预先压缩好的版本
+ * <p>
+ * ./gradlew jmh -PjmhArgs="CompressionBenchmark -prof gc"
+ *
+ * @author qiubaisen
+ * @date 2023/3/2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+    @Param({"1024", "65536", "1048576"})
+    int size;
+
+    @Param({"identity", "stream", "pooled", "cached"})
+    String mode;
+
+    byte[] content;
+    Compression compression;
+    ResponseCache.Entry entry;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < size - 2; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"").append(i).append("\",\"name\":\"user-").append(i).append("\",\"email\":\"user-").append(i)
+                    .append("@example.com\",\"amount\":").append(i * 37 % 1000).append('}');
+        }
+        content = json.append(']').substring(0, size).getBytes(StandardCharsets.UTF_8);
+        compression = new Compression(Compression.DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION, 4);
+        ResponseCache cache = new ResponseCache();
+        entry = cache.put(new ResponseCache.Key("/users", null, ""), 200, new String[0], content, 60);
+        cache.variant(entry, Compression.Encoding.GZIP, compression.compress(entry.body(), Compression.Encoding.GZIP));
+    }
+
+    @Benchmark
+    public void compress(Blackhole blackhole) throws IOException {
+        switch (mode) {
+            case "identity" -> blackhole.consume(content);
+            case "stream" -> {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 4);
+                try (OutputStream gzip = new GZIPOutputStream(buffer)) {
+                    gzip.write(content);
+                }
+                blackhole.consume(buffer.toByteArray());
+            }
+            case "pooled" -> blackhole.consume(compression.compress(ByteBuffer.wrap(content), Compression.Encoding.GZIP));
+            default -> blackhole.consume(entry.variant(Compression.Encoding.GZIP).slice());
+        }
+    }
+}
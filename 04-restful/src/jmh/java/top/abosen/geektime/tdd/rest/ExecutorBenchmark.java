@@ -0,0 +1,115 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 同时发出 {@link #concurrency} 个阻塞 {@link #latency} 毫秒的请求, 全部完成所需的时间:
+ * container 在 Jetty 的 {@link #THREADS} 个线程上执行资源方法, executor 交给 {@link ResourceServlet#virtualThreads()}
+ * <p>
+ * ./gradlew jmh -PjmhArgs="ExecutorBenchmark"
+ *
+ * @author qiubaisen
+ * @date 2023/2/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ExecutorBenchmark {
+    static final int THREADS = 200;
+
+    @Param({"container", "executor"})
+    String mode;
+
+    @Param({"1000"})
+    int concurrency;
+
+    @Param({"1000"})
+    int latency;
+
+    static int sleep;
+
+    Server server;
+    ExecutorService executor;
+    HttpClient client;
+    HttpRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        sleep = latency;
+
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        when(delegate.createResponseBuilder()).thenAnswer(it -> new StubResponseBuilder());
+        RuntimeDelegate.setInstance(delegate);
+
+        ResourceContext resourceContext = mock(ResourceContext.class);
+        when(resourceContext.getResource(eq(Slow.class))).thenReturn(new Slow());
+        Runtime runtime = mock(Runtime.class);
+        ResourceRouter router = new DefaultResourceRouter(runtime, List.of(new ResourceHandler(Slow.class)));
+        when(runtime.getProviders()).thenReturn(mock(Providers.class));
+        when(runtime.getResourceRouter()).thenReturn(router);
+        when(runtime.createResourceContext(any(), any())).thenReturn(resourceContext);
+        when(runtime.createUriInfoBuilder(any())).thenAnswer(it -> new StubUriInfoBuilder());
+
+        executor = mode.equals("executor") ? ResourceServlet.virtualThreads() : null;
+        server = new Server(new QueuedThreadPool(THREADS));
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setAcceptQueueSize(concurrency);
+        server.addConnector(connector);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        ServletHolder holder = new ServletHolder(new ResourceServlet(runtime, new ResourceServlet.Options().executor(executor)));
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder, "/");
+        server.start();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + connector.getLocalPort() + "/slow")).GET().build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        server.stop();
+        if (executor != null) executor.shutdown();
+    }
+
+    @Benchmark
+    public Object concurrent() {
+        CompletableFuture<?>[] responses = new CompletableFuture[concurrency];
+        for (int i = 0; i < concurrency; i++) responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        return CompletableFuture.allOf(responses).join();
+    }
+
+    @Path("/slow")
+    public static class Slow {
+        @GET
+        public void get() throws InterruptedException {
+            Thread.sleep(sleep);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.SeBootstrap;
+import jakarta.ws.rs.core.*;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 写出 16 个响应头: perValue 是原来每个值都调用 createHeaderDelegate 的写法, cached 使用 {@link HeaderDelegates}
+ * <p>
+ * RuntimeDelegate 像常见实现一样逐个询问 HeaderDelegateProvider 是否支持该类型
+ * <p>
+ * ./gradlew jmh -PjmhArgs="HeaderBenchmark -prof gc"
+ *
+ * @author qiubaisen
+ * @date 2023/2/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderBenchmark {
+    MultivaluedMap<String, Object> headers;
+    HeaderDelegates delegates;
+    HttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        RuntimeDelegate.setInstance(new ScanningDelegate());
+        delegates = new HeaderDelegates(RuntimeDelegate.getInstance());
+        response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletResponse.class},
+                (proxy, method, args) -> null);
+
+        headers = new MultivaluedHashMap<>();
+        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_TYPE);
+        headers.add(HttpHeaders.ALLOW, "GET,HEAD,OPTIONS");
+        headers.add(HttpHeaders.CACHE_CONTROL, "no-cache");
+        headers.add(HttpHeaders.VARY, "Accept");
+        headers.add(HttpHeaders.VARY, "Accept-Encoding");
+        headers.add(HttpHeaders.DATE, new Date(1677369600000L));
+        headers.add(HttpHeaders.LAST_MODIFIED, new Date(1677283200000L));
+        headers.add(HttpHeaders.ETAG, new EntityTag("3f2a"));
+        headers.add(HttpHeaders.LOCATION, URI.create("http://localhost/users/1"));
+        headers.add(HttpHeaders.CONTENT_LOCATION, URI.create("http://localhost/users/1"));
+        headers.add(HttpHeaders.SET_COOKIE, new NewCookie.Builder("SESSION_ID").value("session").build());
+        headers.add(HttpHeaders.SET_COOKIE, new NewCookie.Builder("USER_ID").value("user").build());
+        headers.add(HttpHeaders.SET_COOKIE, new NewCookie.Builder("LOCALE").value("zh-CN").build());
+        headers.add("X-Request-Id", "8c1e2b");
+        headers.add("X-Content-Type-Options", "nosniff");
+        headers.add("X-Frame-Options", "DENY");
+    }
+
+    @Benchmark
+    public void perValue() {
+        for (String name : headers.keySet()) {
+            for (Object value : headers.get(name)) {
+                RuntimeDelegate.HeaderDelegate headerDelegate = RuntimeDelegate.getInstance().createHeaderDelegate(value.getClass());
+                response.addHeader(name, headerDelegate.toString(value));
+            }
+        }
+    }
+
+    @Benchmark
+    public void cached() {
+        delegates.write(response, headers);
+    }
+
+    record Provider(Class<?> type, Function<Object, String> format) implements RuntimeDelegate.HeaderDelegate<Object> {
+        @Override
+        public Object fromString(String value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString(Object value) {
+            return format.apply(value);
+        }
+    }
+
+    static class ScanningDelegate extends RuntimeDelegate {
+        private final List<Provider> providers = List.of(
+                new Provider(CacheControl.class, Object::toString),
+                new Provider(Cookie.class, value -> ((Cookie) value).getName() + "=" + ((Cookie) value).getValue()),
+                new Provider(Locale.class, Object::toString),
+                new Provider(Link.class, Object::toString),
+                new Provider(EntityTag.class, value -> "\"" + ((EntityTag) value).getValue() + "\""),
+                new Provider(MediaType.class, value -> ((MediaType) value).getType() + "/" + ((MediaType) value).getSubtype()),
+                new Provider(NewCookie.class, value -> ((NewCookie) value).getName() + "=" + ((NewCookie) value).getValue() + ";Version=1"),
+                new Provider(Date.class, value -> Long.toString(((Date) value).getTime())),
+                new Provider(URI.class, value -> ((URI) value).toASCIIString()),
+                new Provider(String.class, value -> (String) value));
+
+        @Override
+        public <T> HeaderDelegate<T> createHeaderDelegate(Class<T> type) {
+            for (Provider provider : providers)
+                if (provider.type().isAssignableFrom(type)) return (HeaderDelegate<T>) provider;
+            return null;
+        }
+
+        @Override
+        public UriBuilder createUriBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response.ResponseBuilder createResponseBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Variant.VariantListBuilder createVariantListBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T createEndpoint(Application application, Class<T> endpointType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Link.Builder createLinkBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SeBootstrap.Configuration.Builder createConfigurationBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletionStage<SeBootstrap.Instance> bootstrap(Application application, SeBootstrap.Configuration configuration) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletionStage<SeBootstrap.Instance> bootstrap(Class<? extends Application> clazz, SeBootstrap.Configuration configuration) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EntityPart.Builder createEntityPartBuilder(String partName) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package top.abosen.geektime.tdd.rest;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以不同 {@link MethodInvoker.Strategy} 调用 0 / 1 / 4 个参数的资源方法
+ * <p>
+ * ./gradlew jmh -PjmhArgs="InvokerBenchmark"
+ *
+ * @author qiubaisen
+ * @date 2023/2/23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokerBenchmark {
+
+    @Param({"REFLECTION", "METHOD_HANDLE", "LAMBDA"})
+    String strategy;
+
+    @Param({"0", "1", "4"})
+    int arguments;
+
+    MethodInvoker.Invocation invocation;
+    Resource resource = new Resource();
+    Object[] parameters;
+
+    @Setup
+    public void setup() {
+        Method method = Arrays.stream(Resource.class.getMethods())
+                .filter(it -> it.getName().equals("get") && it.getParameterCount() == arguments)
+                .findFirst().orElseThrow();
+        invocation = MethodInvoker.Strategy.valueOf(strategy).bind(method);
+        parameters = new Object[arguments];
+        Arrays.fill(parameters, "value");
+    }
+
+    @Benchmark
+    public Object invoke() throws Throwable {
+        return invocation.invoke(resource, parameters);
+    }
+
+    public static class Resource {
+        public String get() {
+            return "resource";
+        }
+
+        public String get(String first) {
+            return first;
+        }
+
+        public String get(String first, String second, String third, String fourth) {
+            return fourth;
+        }
+    }
+}
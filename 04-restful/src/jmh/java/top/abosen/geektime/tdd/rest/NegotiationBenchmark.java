@@ -0,0 +1,88 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 浏览器的 Accept 在 4 个 @Produces 不同的资源方法中选择: negotiate 每次按 header 原文取缓存的解析结果,
+ * unconstrained 是同一路径只有一个不限制媒体类型的方法
+ * <p>
+ * ./gradlew jmh -PjmhArgs="NegotiationBenchmark -prof gc"
+ *
+ * @author qiubaisen
+ * @date 2023/2/27
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NegotiationBenchmark {
+    static final String ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8";
+
+    ResourceMethods negotiated;
+    ResourceMethods unconstrained;
+
+    @Setup
+    public void setup() {
+        negotiated = new ResourceMethods(Negotiated.class.getMethods());
+        unconstrained = new ResourceMethods(Unconstrained.class.getMethods());
+    }
+
+    @Benchmark
+    public Optional<ResourceRouter.ResourceMethod> negotiate() {
+        return negotiated.findResourceMethod("/users", "GET", Negotiation.of(ACCEPT, null));
+    }
+
+    @Benchmark
+    public Optional<ResourceRouter.ResourceMethod> unconstrained() {
+        return unconstrained.findResourceMethod("/users", "GET", Negotiation.of(ACCEPT, null));
+    }
+
+    @Path("/")
+    public static class Negotiated {
+        @GET
+        @Path("/users")
+        @Produces(MediaType.APPLICATION_JSON)
+        public String json() {
+            return "json";
+        }
+
+        @GET
+        @Path("/users")
+        @Produces(MediaType.TEXT_PLAIN)
+        public String plain() {
+            return "plain";
+        }
+
+        @GET
+        @Path("/users")
+        @Produces({MediaType.APPLICATION_XML, MediaType.TEXT_XML})
+        public String xml() {
+            return "xml";
+        }
+
+        @GET
+        @Path("/users")
+        @Produces(MediaType.TEXT_HTML)
+        public String html() {
+            return "html";
+        }
+    }
+
+    @Path("/")
+    public static class Unconstrained {
+        @GET
+        @Path("/users")
+        public String get() {
+            return "users";
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.UriInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 经过两层 sub-resource locator 的请求 /users/{id}/orders/{id}, 从匹配根资源到调用资源方法
+ * <p>
+ * ./gradlew jmh -PjmhArgs="NestedRouteBenchmark -prof gc"
+ *
+ * @author qiubaisen
+ * @date 2023/2/22
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NestedRouteBenchmark {
+    static final String PATH = "/users/1/orders/2";
+    static final Negotiation ACCEPT = Negotiation.of("*/*", null);
+
+    ResourceHandler root;
+    ResourceContext context;
+
+    @Setup
+    public void setup() {
+        root = new ResourceHandler(Users.class);
+        Users users = new Users();
+        context = (ResourceContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ResourceContext.class},
+                (proxy, method, args) -> method.getName().equals("getResource") ? users : null);
+    }
+
+    @Benchmark
+    public GenericEntity<?> dispatch() {
+        Builder builder = new Builder();
+        UriTemplate.MatchResult result = root.getUriTemplate().match(PATH).get();
+        return root.match(result, "GET", ACCEPT, context, builder).get().call(context, builder);
+    }
+
+    @Path("/users")
+    public static class Users {
+        @Path("/{id}")
+        public User user(@PathParam("id") String id) {
+            return new User(id);
+        }
+    }
+
+    public static class User {
+        private final String id;
+
+        User(String id) {
+            this.id = id;
+        }
+
+        @Path("/orders")
+        public Orders orders() {
+            return new Orders(id);
+        }
+    }
+
+    public static class Orders {
+        private final String user;
+
+        Orders(String user) {
+            this.user = user;
+        }
+
+        @GET
+        @Path("/{id}")
+        public String get(@PathParam("id") String id) {
+            return user + ":" + id;
+        }
+    }
+
+    static class Builder implements UriInfoBuilder {
+        private final List<Object> resources = new ArrayList<>();
+        private final MultivaluedMap<String, String> parameters = new MultivaluedHashMap<>();
+        private final UriInfo uriInfo = (UriInfo) Proxy.newProxyInstance(UriInfo.class.getClassLoader(), new Class[]{UriInfo.class},
+                (proxy, method, args) -> method.getName().equals("getPathParameters") ? parameters : null);
+
+        @Override
+        public Object getLastMatchedResource() {
+            return resources.get(resources.size() - 1);
+        }
+
+        @Override
+        public void addMatchedResource(Object resource) {
+            resources.add(resource);
+        }
+
+        @Override
+        public void addMatchedPathParameter(Map<String, String> pathParameter) {
+            pathParameter.forEach(parameters::add);
+        }
+
+        @Override
+        public UriInfo createUriInfo() {
+            return uriInfo;
+        }
+    }
+}
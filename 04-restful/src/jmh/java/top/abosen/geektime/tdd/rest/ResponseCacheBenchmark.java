@@ -0,0 +1,183 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import top.abosen.geektime.tdd.di.Context;
+
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * GET /users/{id} 经过 {@link ResourceServlet#service} 的完整处理: none 每次路由, 调用资源方法并序列化约 1.5KB 的 JSON;
+ * cache 命中 {@link ResponseCache}, 直接写出缓存的字节
+ * <p>
+ * ./gradlew jmh -PjmhArgs="ResponseCacheBenchmark -prof gc"
+ *
+ * @author qiubaisen
+ * @date 2023/3/1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseCacheBenchmark {
+    @Param({"none", "cache"})
+    String mode;
+
+    ResourceServlet servlet;
+    HttpServletRequest request;
+    HttpServletResponse response;
+    Discard output;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        when(delegate.createResponseBuilder()).thenAnswer(it -> new StubResponseBuilder());
+        RuntimeDelegate.setInstance(delegate);
+
+        Users users = new Users();
+        ResourceContext resourceContext = (ResourceContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ResourceContext.class},
+                (proxy, method, args) -> method.getName().equals("getResource") ? users : null);
+        UserWriter writer = new UserWriter();
+        Providers providers = (Providers) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Providers.class},
+                (proxy, method, args) -> method.getName().equals("getMessageBodyWriter") ? writer : null);
+        Runtime runtime = new Runtime() {
+            final ResourceRouter router = new DefaultResourceRouter(this, List.of(new ResourceHandler(Users.class)));
+
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest request, HttpServletResponse response) {
+                return resourceContext;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return new StubUriInfoBuilder();
+            }
+        };
+        servlet = new ResourceServlet(runtime, new ResourceServlet.Options().cache(mode.equals("cache") ? new ResponseCache() : null));
+
+        request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getMethod" -> "GET";
+                    case "getServletPath" -> "/users/1";
+                    case "getHeader" -> HttpHeaders.ACCEPT.equals(args[0]) ? MediaType.APPLICATION_JSON : null;
+                    case "getHeaders" -> Collections.enumeration(HttpHeaders.ACCEPT.equals(args[0]) ? List.of(MediaType.APPLICATION_JSON) : List.of());
+                    case "isAsyncSupported" -> false;
+                    default -> null;
+                });
+        output = new Discard(blackhole);
+        response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletResponse.class},
+                (proxy, method, args) -> method.getName().equals("getOutputStream") ? output : null);
+    }
+
+    @Benchmark
+    public void get() throws Exception {
+        servlet.service(request, response);
+    }
+
+    @Path("/users")
+    public static class Users {
+        @GET
+        @Path("/{id}")
+        @Produces(MediaType.APPLICATION_JSON)
+        @Cached(maxAge = 60)
+        public User get(@PathParam("id") String id) {
+            return new User(id, "user-" + id, "user-" + id + "@example.com",
+                    IntStream.range(0, 20).mapToObj(i -> new Order("order-" + i, i * 100 + 99)).toList());
+        }
+    }
+
+    public record User(String id, String name, String email, List<Order> orders) {
+    }
+
+    public record Order(String id, long amount) {
+    }
+
+    static class UserWriter implements MessageBodyWriter<User> {
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return true;
+        }
+
+        @Override
+        public void writeTo(User user, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws java.io.IOException {
+            StringBuilder json = new StringBuilder(2048).append("{\"id\":\"").append(user.id()).append("\",\"name\":\"").append(user.name())
+                    .append("\",\"email\":\"").append(user.email()).append("\",\"orders\":[");
+            for (int i = 0; i < user.orders().size(); i++) {
+                Order order = user.orders().get(i);
+                if (i > 0) json.append(',');
+                json.append("{\"id\":\"").append(order.id()).append("\",\"amount\":").append(order.amount())
+                        .append(",\"links\":[{\"rel\":\"self\",\"href\":\"/users/").append(user.id()).append("/orders/").append(order.id()).append("\"}]}");
+            }
+            entityStream.write(json.append("]}").toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static class Discard extends ServletOutputStream {
+        private final Blackhole blackhole;
+
+        Discard(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package top.abosen.geektime.tdd.rest;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在 N 个根资源中查找请求路径对应的资源, 对比逐个正则匹配与 {@link RouteTrie} 先按字面量段筛选
+ * <p>
+ * ./gradlew jmh -PjmhArgs="RouteBenchmark"
+ *
+ * @author qiubaisen
+ * @date 2023/2/20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int routes;
+
+    List<Route> handlers;
+    RouteTrie<Route> trie;
+    String path;
+
+    record Route(UriTemplate getUriTemplate) implements UriHandler {
+    }
+
+    @Setup
+    public void setup() {
+        handlers = new ArrayList<>();
+        for (int i = 0; i < routes; i++) {
+            handlers.add(new Route(new PathTemplate("/resource-" + i + "/{id}")));
+        }
+        handlers.add(new Route(new PathTemplate("/{resources}/{id}/orders")));
+        trie = new RouteTrie<>(handlers);
+        path = "/resource-" + routes / 2 + "/1234";
+    }
+
+    @Benchmark
+    public Optional<Route> scan() {
+        return handlers.stream()
+                .map(handler -> handler.getUriTemplate().match(path).map(result -> new Matched(result, handler)))
+                .flatMap(Optional::stream)
+                .sorted()
+                .findFirst()
+                .map(Matched::handler);
+    }
+
+    @Benchmark
+    public Optional<Route> trie() {
+        return UriHandlers.match(path, trie);
+    }
+
+    record Matched(UriTemplate.MatchResult result, Route handler) implements Comparable<Matched> {
+        @Override
+        public int compareTo(Matched o) {
+            return result.compareTo(o.result);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与 {@link NestedRouteBenchmark} 相同的请求 /users/{id}/orders/{id}, 比较每个请求新建 List / MultivaluedMap 的 UriInfoBuilder
+ * 与按线程复用的 {@link RequestState} 的分配量
+ * <p>
+ * ./gradlew jmh -PjmhArgs="UriInfoBenchmark -prof gc"
+ *
+ * @author qiubaisen
+ * @date 2023/3/3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriInfoBenchmark {
+    @Param({"builder", "pooled"})
+    String mode;
+
+    ResourceHandler root;
+    ResourceContext context;
+    HttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        root = new ResourceHandler(NestedRouteBenchmark.Users.class);
+        NestedRouteBenchmark.Users users = new NestedRouteBenchmark.Users();
+        context = (ResourceContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ResourceContext.class},
+                (proxy, method, args) -> method.getName().equals("getResource") ? users : null);
+        Map<Object, Object> attributes = new HashMap<>();
+        request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getAttribute" -> attributes.get(args[0]);
+                    case "setAttribute" -> attributes.put(args[0], args[1]);
+                    case "removeAttribute" -> attributes.remove(args[0]);
+                    default -> null;
+                });
+    }
+
+    @Benchmark
+    public GenericEntity<?> dispatch() {
+        UriInfoBuilder builder = mode.equals("pooled") ? RequestState.acquire(request) : new NestedRouteBenchmark.Builder();
+        try {
+            UriTemplate.MatchResult result = root.getUriTemplate().match(NestedRouteBenchmark.PATH).get();
+            return root.match(result, "GET", NestedRouteBenchmark.ACCEPT, context, builder).get().call(context, builder);
+        } finally {
+            RequestState.release(request);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package top.abosen.geektime.tdd.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 资源方法的响应可以被缓存 maxAge 秒; 资源方法返回实体时, 路由为 200 响应加上对应的 Cache-Control, 返回 Response 时由方法自行设置
+ *
+ * @author qiubaisen
+ * @date 2023/3/1
+ * @see ResponseCache
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cached {
+    int maxAge();
+
+    /**
+     * 只允许客户端缓存, {@link ResponseCache} 不缓存
+     */
+    boolean isPrivate() default false;
+}
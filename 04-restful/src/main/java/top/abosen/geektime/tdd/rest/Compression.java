@@ -0,0 +1,284 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 按 Accept-Encoding 压缩响应实体, 作用在 {@link jakarta.ws.rs.ext.MessageBodyWriter} 写出之后, 相当于一个全局的 WriterInterceptor
+ * <p>
+ * 只压缩文本, JSON 和 XML 类型, 实体小于 threshold 字节时原样写出. {@link Deflater} 在池中复用, 不为每个请求分配 native 内存;
+ * 压缩后的响应 ETag 加上编码后缀, 评估条件请求时去掉后缀比较
+ *
+ * @author qiubaisen
+ * @date 2023/3/2
+ */
+public class Compression {
+    public static final int DEFAULT_THRESHOLD = 1024;
+    static final int MAX_CACHED = 256;
+
+    enum Encoding {
+        GZIP("gzip", true), DEFLATE("deflate", false);
+
+        final String token;
+        final boolean nowrap;
+
+        Encoding(String token, boolean nowrap) {
+            this.token = token;
+            this.nowrap = nowrap;
+        }
+    }
+
+    private static final Map<String, Optional<Encoding>> negotiated = new ConcurrentHashMap<>();
+
+    private final int threshold;
+    private final int level;
+    private final BlockingQueue<Deflater>[] pools;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public Compression() {
+        this(DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION, 2 * java.lang.Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param poolSize 每种编码最多保留的空闲 Deflater 数量, 超出时归还的 Deflater 直接释放
+     */
+    @SuppressWarnings("unchecked")
+    public Compression(int threshold, int level, int poolSize) {
+        this.threshold = threshold;
+        this.level = level;
+        this.pools = new BlockingQueue[Encoding.values().length];
+        for (int i = 0; i < pools.length; i++) pools[i] = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    int threshold() {
+        return threshold;
+    }
+
+    /**
+     * 创建过的 Deflater 数量
+     */
+    int allocated() {
+        return allocated.get();
+    }
+
+    /**
+     * q 值最高的 gzip / deflate, 相同时优先 gzip; * 表示未列出的编码, q=0 表示不接受. 没有可用的编码时返回 null
+     */
+    static Encoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return null;
+        Optional<Encoding> encoding = negotiated.get(acceptEncoding);
+        if (encoding != null) return encoding.orElse(null);
+        encoding = Optional.ofNullable(parse(acceptEncoding));
+        if (negotiated.size() < MAX_CACHED) negotiated.put(acceptEncoding, encoding);
+        return encoding.orElse(null);
+    }
+
+    private static Encoding parse(String acceptEncoding) {
+        int[] qualities = {-1, -1};
+        int any = -1;
+        for (String item : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = item.split(";");
+            String token = parts[0].trim();
+            int quality = 1000;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) quality = quality(parameter.substring(2).trim());
+            }
+            if (token.equals("*")) any = quality;
+            for (Encoding encoding : Encoding.values())
+                if (token.equals(encoding.token) || token.equals("x-" + encoding.token)) qualities[encoding.ordinal()] = quality;
+        }
+        Encoding selected = null;
+        int selectedQuality = 0;
+        for (Encoding encoding : Encoding.values()) {
+            int quality = qualities[encoding.ordinal()] >= 0 ? qualities[encoding.ordinal()] : any;
+            if (quality > selectedQuality) {
+                selected = encoding;
+                selectedQuality = quality;
+            }
+        }
+        return selected;
+    }
+
+    private static int quality(String value) {
+        try {
+            double q = Double.parseDouble(value);
+            return q < 0 || q > 1 ? 1000 : (int) Math.round(q * 1000);
+        } catch (NumberFormatException e) {
+            return 1000;
+        }
+    }
+
+    /**
+     * 文本, JSON, XML 和 JavaScript; 图片, 压缩包等已经压缩过的类型不再压缩
+     */
+    static boolean compressible(MediaType type) {
+        if (type == null || type.isWildcardType() || type.isWildcardSubtype()) return false;
+        if (type.getType().equalsIgnoreCase("text")) return true;
+        String subtype = type.getSubtype().toLowerCase(Locale.ROOT);
+        return subtype.equals("json") || subtype.equals("xml") || subtype.equals("javascript") || subtype.equals("x-www-form-urlencoded")
+               || subtype.endsWith("+json") || subtype.endsWith("+xml");
+    }
+
+    /**
+     * 强 ETag "v" 压缩后为 "v-gzip", 弱 ETag 不变
+     */
+    static String tag(String entityTag, Encoding encoding) {
+        if (entityTag == null || entityTag.startsWith("W/") || !entityTag.endsWith("\"") || entityTag.length() < 2) return entityTag;
+        return entityTag.substring(0, entityTag.length() - 1) + "-" + encoding.token + "\"";
+    }
+
+    /**
+     * 去掉 {@link #tag} 加上的编码后缀, 参数不带引号
+     */
+    static String untag(String value) {
+        for (Encoding encoding : Encoding.values())
+            if (value.endsWith("-" + encoding.token)) return value.substring(0, value.length() - encoding.token.length() - 1);
+        return value;
+    }
+
+    byte[] compress(ByteBuffer content, Encoding encoding) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, content.remaining() / 4));
+        Deflater deflater = acquire(encoding);
+        try {
+            Deflating output = new Deflating(buffer, deflater, encoding, Math.min(8192, Math.max(512, content.remaining())));
+            output.write(content.duplicate());
+            output.finish();
+        } finally {
+            release(encoding, deflater);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 先缓存 threshold 字节, 超出时才设置 Content-Encoding 并开始压缩; 关闭时结束压缩并归还 Deflater, 不关闭 servlet 输出流
+     */
+    Output output(HttpServletResponse response, Encoding encoding) {
+        return new Output(response, encoding);
+    }
+
+    class Output extends OutputStream {
+        private final HttpServletResponse response;
+        private final Encoding encoding;
+        private final byte[] buffer = new byte[threshold];
+        private int count;
+        private Deflater deflater;
+        private Deflating target;
+
+        Output(HttpServletResponse response, Encoding encoding) {
+            this.response = response;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null && count + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+                return;
+            }
+            if (target == null) start();
+            target.write(b, off, len);
+        }
+
+        private void start() throws IOException {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.token);
+            String entityTag = response.getHeader(HttpHeaders.ETAG);
+            if (entityTag != null) response.setHeader(HttpHeaders.ETAG, tag(entityTag, encoding));
+            deflater = acquire(encoding);
+            target = new Deflating(response.getOutputStream(), deflater, encoding, 8192);
+            target.write(buffer, 0, count);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (target != null) target.finish();
+                else if (count > 0) {
+                    response.setContentLength(count);
+                    response.getOutputStream().write(buffer, 0, count);
+                }
+            } finally {
+                if (deflater != null) release(encoding, deflater);
+                deflater = null;
+            }
+        }
+    }
+
+    private Deflater acquire(Encoding encoding) {
+        Deflater deflater = pools[encoding.ordinal()].poll();
+        if (deflater != null) return deflater;
+        allocated.incrementAndGet();
+        return new Deflater(level, encoding.nowrap);
+    }
+
+    private void release(Encoding encoding, Deflater deflater) {
+        deflater.reset();
+        if (!pools[encoding.ordinal()].offer(deflater)) deflater.end();
+    }
+
+    /**
+     * 使用给定 Deflater 的压缩流, gzip 在 raw deflate 数据前后加上头部和 CRC32 / 长度尾部, deflate 为 zlib 格式
+     */
+    private static class Deflating extends DeflaterOutputStream {
+        private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final CRC32 crc;
+        private long length;
+
+        Deflating(OutputStream out, Deflater deflater, Encoding encoding, int size) throws IOException {
+            super(out, deflater, size);
+            this.crc = encoding == Encoding.GZIP ? new CRC32() : null;
+            if (crc != null) out.write(GZIP_HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (crc != null) crc.update(b, off, len);
+            length += len;
+            super.write(b, off, len);
+        }
+
+        void write(ByteBuffer content) throws IOException {
+            if (crc != null) crc.update(content.duplicate());
+            length += content.remaining();
+            def.setInput(content);
+            while (!def.needsInput()) deflate();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            super.finish();
+            if (crc == null) return;
+            long value = crc.getValue();
+            out.write(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24),
+                    (byte) length, (byte) (length >> 8), (byte) (length >> 16), (byte) (length >> 24)});
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.HttpOutput;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 不经过 {@link jakarta.ws.rs.ext.MessageBodyWriter} 直接写出的实体: {@link File} / {@link Path} 和 {@link ByteBuffer}
+ * <p>
+ * 设置 Content-Length 后写出; 运行在 Jetty 中时交给 {@link HttpOutput#sendContent}, 文件按 Jetty 的输出缓冲区大小分块读取发送, 不映射整个文件
+ *
+ * @author qiubaisen
+ * @date 2023/2/24
+ */
+final class Contents {
+    private Contents() {
+    }
+
+    /**
+     * 由 {@link #write} 直接写出的文件和缓冲区; {@link jakarta.ws.rs.core.StreamingOutput} 仍需执行才能得到内容, 和其他实体一样序列化
+     */
+    static boolean direct(Object entity) {
+        return entity instanceof File || entity instanceof Path || entity instanceof ByteBuffer;
+    }
+
+    /**
+     * 不写出内容就能确定的长度, 无法确定时返回 -1
+     */
+    static long length(Object entity) throws IOException {
+        if (entity instanceof File file) return Files.size(file.toPath());
+        if (entity instanceof Path path) return Files.size(path);
+        if (entity instanceof ByteBuffer buffer) return buffer.remaining();
+        return -1;
+    }
+
+    /**
+     * 只统计写入的字节数, 用于 HEAD 请求计算 Content-Length
+     */
+    static class Counter extends OutputStream {
+        private long count;
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    static boolean write(Object entity, HttpServletResponse response) throws IOException {
+        if (entity instanceof File file) {
+            write(file.toPath(), response);
+            return true;
+        }
+        if (entity instanceof Path path) {
+            write(path, response);
+            return true;
+        }
+        if (entity instanceof ByteBuffer buffer) {
+            write(buffer.slice(), response);
+            return true;
+        }
+        return false;
+    }
+
+    private static void write(Path path, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            response.setContentLengthLong(size);
+            ServletOutputStream out = response.getOutputStream();
+            if (out instanceof HttpOutput jetty) {
+                jetty.sendContent(channel);
+                return;
+            }
+            WritableByteChannel target = Channels.newChannel(out);
+            for (long position = 0; position < size; )
+                position += channel.transferTo(position, size - position, target);
+        }
+    }
+
+    private static void write(ByteBuffer buffer, HttpServletResponse response) throws IOException {
+        response.setContentLength(buffer.remaining());
+        ServletOutputStream out = response.getOutputStream();
+        if (out instanceof HttpOutput jetty) {
+            jetty.sendContent(buffer);
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        while (buffer.hasRemaining()) target.write(buffer);
+    }
+}
@@ -0,0 +1,190 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.container.ResourceContext;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按 (HTTP 方法, Accept, Content-Type, 归一后的路径) 缓存已解析的根资源和资源方法, 命中时跳过根资源的查找和资源方法的选择
+ * <p>
+ * 只缓存直接落在根资源上的资源方法; 经过 sub-resource locator 的请求每次都要调用 locator, 不缓存.
+ * 超出容量时按 CLOCK 淘汰: 命中只设置条目的引用位, 淘汰时沿上次停下的位置扫描, 清除引用位并移除没有被引用的条目
+ *
+ * @author qiubaisen
+ * @date 2023/2/21
+ */
+class DispatchCache {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Map<Key, Entry> routes = new ConcurrentHashMap<>();
+    private final ReentrantLock eviction = new ReentrantLock();
+    private Iterator<Map.Entry<Key, Entry>> hand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    DispatchCache(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity: " + capacity);
+        this.capacity = capacity;
+    }
+
+    record Key(String httpMethod, String accept, String contentType, String path) {
+    }
+
+    /**
+     * 匹配到的根资源和资源方法; 路径参数随请求变化, 绑定时重新匹配根资源的模板, 按 {@link ResourceHandler#match} 的方式记录匹配的资源和参数
+     */
+    record Route(ResourceHandler resource, ResourceRouter.ResourceMethod method) {
+        /**
+         * @return 根资源的模板与 path 不匹配时返回 null
+         */
+        ResourceRouter.ResourceMethod bind(String path, ResourceContext resourceContext, UriInfoBuilder builder) {
+            Optional<UriTemplate.MatchResult> result = resource.getUriTemplate().match(path);
+            if (result.isEmpty()) return null;
+            resource.bind(result.get(), resourceContext, builder);
+            return method;
+        }
+    }
+
+    private static class Entry {
+        private final Route route;
+        private volatile boolean referenced;
+
+        Entry(Route route) {
+            this.route = route;
+        }
+    }
+
+    /**
+     * 把请求路径归一为缓存键中的路径: 不是任何模板字面量的路径段替换为 *, /users/1 和 /users/2 对应同一个键, 缓存的条目数只取决于路由
+     * <p>
+     * 所有模板的每一段都是字面量或整段的默认变量时, 形状相同的路径匹配到相同的模板, 优先级也相同;
+     * 否则无法只凭形状判断, 只缓存全部由字面量组成的路径
+     */
+    static final class Paths {
+        private static final String WILDCARD = "*";
+
+        private final String[][] literals;
+        private final boolean segmented;
+
+        Paths(List<UriTemplate> templates) {
+            Set<String> literals = new HashSet<>();
+            boolean segmented = true;
+            for (UriTemplate template : templates) {
+                String[] segments = template.segments();
+                if (segments == null) {
+                    segmented = false;
+                    literals.addAll(template.literalSegments());
+                    continue;
+                }
+                for (String segment : segments) if (!segment.equals(UriTemplate.VARIABLE_SEGMENT)) literals.add(segment);
+            }
+            this.segmented = segmented;
+            this.literals = byLength(literals);
+        }
+
+        private static String[][] byLength(Set<String> literals) {
+            int max = literals.stream().mapToInt(String::length).max().orElse(0);
+            List<List<String>> groups = new ArrayList<>();
+            for (int i = 0; i <= max; i++) groups.add(new ArrayList<>());
+            literals.forEach(it -> groups.get(it.length()).add(it));
+            return groups.stream().map(it -> it.toArray(String[]::new)).toArray(String[][]::new);
+        }
+
+        /**
+         * @return 缓存键中的路径, 不能缓存时返回 null; 不需要替换时返回 path 本身
+         */
+        String normalize(String path) {
+            StringBuilder shape = null;
+            int start = path.startsWith("/") ? 1 : 0;
+            while (start <= path.length()) {
+                int end = path.indexOf('/', start);
+                if (end < 0) end = path.length();
+                boolean literal = end == start || literal(path, start, end - start);
+                if (!literal && !segmented) return null;
+                if (!literal && shape == null) shape = new StringBuilder(path.length()).append(path, 0, start);
+                if (shape != null) {
+                    if (literal) shape.append(path, start, end);
+                    else shape.append(WILDCARD);
+                    if (end < path.length()) shape.append('/');
+                }
+                start = end + 1;
+            }
+            return shape == null ? path : shape.toString();
+        }
+
+        private boolean literal(String path, int start, int length) {
+            if (length >= literals.length) return false;
+            for (String literal : literals[length]) if (path.startsWith(literal, start)) return true;
+            return false;
+        }
+    }
+
+    Route get(Key key) {
+        Entry entry = routes.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!entry.referenced) entry.referenced = true;
+        return entry.route;
+    }
+
+    void put(Key key, Route route) {
+        if (capacity == 0) return;
+        routes.put(key, new Entry(route));
+        if (routes.size() > capacity) evict(key);
+    }
+
+    /**
+     * 新放入的条目不淘汰; 最多扫描两圈, 第一圈清除的引用位在第二圈一定能淘汰
+     */
+    private void evict(Key added) {
+        if (!eviction.tryLock()) return;
+        try {
+            int excess = routes.size() - capacity;
+            if (excess <= 0) return;
+            int target = excess + capacity / 8;
+            for (int scanned = 0, limit = 2 * routes.size(); target > 0 && scanned < limit; scanned++) {
+                if (hand == null || !hand.hasNext()) hand = routes.entrySet().iterator();
+                if (!hand.hasNext()) return;
+                Map.Entry<Key, Entry> it = hand.next();
+                Entry entry = it.getValue();
+                if (it.getKey().equals(added)) continue;
+                if (entry.referenced) entry.referenced = false;
+                else if (routes.remove(it.getKey(), entry)) {
+                    evictions.increment();
+                    target--;
+                }
+            }
+        } finally {
+            eviction.unlock();
+        }
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    double hitRate() {
+        long hits = hits(), total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
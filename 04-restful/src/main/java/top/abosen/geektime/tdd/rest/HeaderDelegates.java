@@ -0,0 +1,74 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把响应头写到 {@link HttpServletResponse}, 按值的类型缓存 {@link RuntimeDelegate.HeaderDelegate}
+ * <p>
+ * String 值直接写出, 不经过 HeaderDelegate; Content-Type 使用的 {@link MediaType} 不可变, 缓存它序列化后的字符串
+ *
+ * @author qiubaisen
+ * @date 2023/2/26
+ */
+class HeaderDelegates {
+    static final int MAX_STRINGS = 256;
+
+    private final RuntimeDelegate runtimeDelegate;
+    private final ClassValue<RuntimeDelegate.HeaderDelegate> delegates = new ClassValue<>() {
+        @Override
+        protected RuntimeDelegate.HeaderDelegate computeValue(Class<?> type) {
+            return runtimeDelegate.createHeaderDelegate(type);
+        }
+    };
+    private final Map<MediaType, String> mediaTypes = new ConcurrentHashMap<>();
+
+    HeaderDelegates(RuntimeDelegate runtimeDelegate) {
+        this.runtimeDelegate = runtimeDelegate;
+    }
+
+    RuntimeDelegate getRuntimeDelegate() {
+        return runtimeDelegate;
+    }
+
+    void write(HttpServletResponse resp, MultivaluedMap<String, Object> headers) {
+        for (Map.Entry<String, List<Object>> header : headers.entrySet())
+            for (Object value : header.getValue()) resp.addHeader(header.getKey(), toString(value));
+    }
+
+    /**
+     * 依次排列的名字和值, 末尾留出 reserved 个空位
+     */
+    String[] toStrings(MultivaluedMap<String, Object> headers, int reserved) {
+        int size = 0;
+        for (List<Object> values : headers.values()) size += values.size();
+        String[] strings = new String[(size + reserved) * 2];
+        int i = 0;
+        for (Map.Entry<String, List<Object>> header : headers.entrySet())
+            for (Object value : header.getValue()) {
+                strings[i++] = header.getKey();
+                strings[i++] = toString(value);
+            }
+        return strings;
+    }
+
+    String toString(Object value) {
+        if (value instanceof String string) return string;
+        if (value instanceof MediaType mediaType) return toString(mediaType);
+        return delegates.get(value.getClass()).toString(value);
+    }
+
+    private String toString(MediaType mediaType) {
+        String string = mediaTypes.get(mediaType);
+        if (string != null) return string;
+        string = delegates.get(mediaType.getClass()).toString(mediaType);
+        if (mediaTypes.size() < MAX_STRINGS) mediaTypes.put(mediaType, string);
+        return string;
+    }
+}
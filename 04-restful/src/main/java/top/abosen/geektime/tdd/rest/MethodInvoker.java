@@ -3,18 +3,24 @@ package top.abosen.geektime.tdd.rest;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.UriInfo;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.lang.reflect.Type;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static top.abosen.geektime.tdd.rest.MethodInvoker.ValueConverter.singleValued;
 
@@ -24,55 +30,204 @@ import static top.abosen.geektime.tdd.rest.MethodInvoker.ValueConverter.singleVa
  */
 class MethodInvoker {
 
-    private static ValueProvider pathParam = (parameter, uriInfo) -> Optional.ofNullable(parameter.getAnnotation(PathParam.class))
-            .map(annotation -> uriInfo.getPathParameters().get(annotation.value()));
-    private static ValueProvider queryParam = (parameter, uriInfo) -> Optional.ofNullable(parameter.getAnnotation(QueryParam.class))
-            .map(annotation -> uriInfo.getQueryParameters().get(annotation.value()));
-    private static final List<ValueProvider> providers = List.of(pathParam, queryParam);
+    private final Invocation invocation;
+    private final ParameterBinder[] binders;
+    private final int suspended;
+    private final int request;
 
-    static Object invoke(Method method, ResourceContext resourceContext, UriInfoBuilder builder) {
+    MethodInvoker(Method method) {
+        this(method, Strategy.DEFAULT);
+    }
+
+    /**
+     * 注册时为每个参数选好取值方式和转换器, 并按 strategy 绑定资源方法, 调用时不再查找注解或转换器
+     */
+    MethodInvoker(Method method, Strategy strategy) {
+        this.invocation = strategy.bind(method);
+        this.binders = Arrays.stream(method.getParameters()).map(MethodInvoker::binder).toArray(ParameterBinder[]::new);
+        this.suspended = IntStream.range(0, method.getParameterCount())
+                .filter(i -> method.getParameters()[i].isAnnotationPresent(Suspended.class)).findFirst().orElse(-1);
+        this.request = IntStream.range(0, method.getParameterCount())
+                .filter(i -> method.getParameters()[i].isAnnotationPresent(Context.class) && method.getParameterTypes()[i].equals(Request.class))
+                .findFirst().orElse(-1);
+    }
+
+    /**
+     * 有 {@link Suspended} 参数时注入 {@link SuspendedResponse}, 并以它的 {@link CompletionStage} 作为调用结果;
+     * 带有 @Context 的 {@link Request} 参数由 {@link UriInfoBuilder#createRequest} 提供
+     */
+    Object invoke(ResourceContext resourceContext, UriInfoBuilder builder) {
+        UriInfo uriInfo = builder.createUriInfo();
+        Object[] parameters = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) parameters[i] = binders[i].bind(resourceContext, uriInfo);
+        SuspendedResponse response = suspended < 0 ? null : new SuspendedResponse();
+        if (response != null) parameters[suspended] = response;
+        if (request >= 0) parameters[request] = builder.createRequest();
         try {
-            UriInfo uriInfo = builder.createUriInfo();
-            Object[] parameters = Arrays.stream(method.getParameters()).map(parameter ->
-                            injectParameter(parameter, uriInfo)
-                                    .or(() -> injectContext(parameter, resourceContext, uriInfo))
-                                    .orElse(null)
-                    )
-                    .toArray(Object[]::new);
-            return method.invoke(builder.getLastMatchedResource(), parameters);
-        } catch (IllegalAccessException | IllegalArgumentException e) {
+            Object result = invocation.invoke(builder.getLastMatchedResource(), parameters);
+            return response == null ? result : response.stage();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException(e);
-        } catch (InvocationTargetException e) {
-            Throwable targetException = e.getTargetException();
-            if (targetException instanceof RuntimeException re) throw re;
-            throw new RuntimeException(targetException);
         }
     }
 
-    private static Optional<Object> injectContext(Parameter parameter, ResourceContext resourceContext, UriInfo uriInfo) {
-        if (!parameter.isAnnotationPresent(Context.class)) return Optional.empty();
-        if (parameter.getType().equals(ResourceContext.class)) return Optional.of(resourceContext);
-        if (parameter.getType().equals(UriInfo.class)) return Optional.of(uriInfo);
-        return Optional.of(resourceContext.getResource(parameter.getType()));
+    /**
+     * 调用资源方法的方式, 默认使用 LAMBDA, 可通过系统属性 {@value #PROPERTY}=reflection|method_handle 切换
+     */
+    enum Strategy {
+        REFLECTION {
+            @Override
+            Invocation bind(Method method) {
+                return (resource, parameters) -> {
+                    try {
+                        return method.invoke(resource, parameters);
+                    } catch (IllegalAccessException | IllegalArgumentException e) {
+                        throw new RuntimeException(e);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                };
+            }
+        },
+        /**
+         * 把方法绑定为 (Object, Object[])Object 形式的 {@link MethodHandle}; 无法访问时退回反射
+         */
+        METHOD_HANDLE {
+            @Override
+            Invocation bind(Method method) {
+                try {
+                    MethodHandle handle = MethodHandles.lookup().unreflect(method);
+                    if (Modifier.isStatic(method.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                    MethodHandle invoker = handle.asSpreader(Object[].class, method.getParameterCount())
+                            .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+                    return (resource, parameters) -> (Object) invoker.invokeExact(resource, parameters);
+                } catch (IllegalAccessException e) {
+                    return REFLECTION.bind(method);
+                }
+            }
+        },
+        /**
+         * 用 {@link LambdaMetafactory} 为不超过 4 个参数, 有返回值的实例方法生成实现类, 调用点可以被内联; 其他情况使用反射
+         */
+        LAMBDA {
+            @Override
+            Invocation bind(Method method) {
+                if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class || method.getParameterCount() > 4
+                    || !visible(method.getDeclaringClass()) || !visible(method.getReturnType())
+                    || !Arrays.stream(method.getParameterTypes()).allMatch(Strategy::visible))
+                    return REFLECTION.bind(method);
+                try {
+                    MethodHandles.Lookup lookup = MethodHandles.lookup();
+                    MethodHandle target = lookup.unreflect(method);
+                    int count = method.getParameterCount();
+                    Object function = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Arities[count]),
+                            MethodType.genericMethodType(count + 1), target, target.type().wrap()).getTarget().invoke();
+                    return switch (count) {
+                        case 0 -> (resource, parameters) -> ((Arity0) function).apply(resource);
+                        case 1 -> (resource, parameters) -> ((Arity1) function).apply(resource, parameters[0]);
+                        case 2 -> (resource, parameters) -> ((Arity2) function).apply(resource, parameters[0], parameters[1]);
+                        case 3 -> (resource, parameters) -> ((Arity3) function).apply(resource, parameters[0], parameters[1], parameters[2]);
+                        default -> (resource, parameters) -> ((Arity4) function).apply(resource, parameters[0], parameters[1], parameters[2], parameters[3]);
+                    };
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    return REFLECTION.bind(method);
+                }
+            }
+        };
+
+        private static final Class<?>[] Arities = {Arity0.class, Arity1.class, Arity2.class, Arity3.class, Arity4.class};
+
+        static final String PROPERTY = "top.abosen.geektime.tdd.rest.invoker";
+        static final Strategy DEFAULT = parse(System.getProperty(PROPERTY));
+
+        abstract Invocation bind(Method method);
+
+        /**
+         * 没有设置时使用 LAMBDA; 无法识别的值记录警告后同样使用 LAMBDA, 不让类初始化失败
+         */
+        static Strategy parse(String value) {
+            if (value == null) return LAMBDA;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.getLogger(MethodInvoker.class.getName()).log(System.Logger.Level.WARNING,
+                        "unknown invoker strategy {0}={1}, using {2}", PROPERTY, value, LAMBDA);
+                return LAMBDA;
+            }
+        }
+
+        /**
+         * 生成的实现类定义在 MethodInvoker 的类加载器中, 方法签名上的类型都要能从这里加载到
+         */
+        private static boolean visible(Class<?> type) {
+            if (type.isPrimitive()) return true;
+            if (type.isArray()) return visible(type.getComponentType());
+            try {
+                return Class.forName(type.getName(), false, MethodInvoker.class.getClassLoader()) == type;
+            } catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
+    }
+
+    interface Invocation {
+        Object invoke(Object resource, Object[] parameters) throws Throwable;
+    }
+
+    interface Arity0 {
+        Object apply(Object resource);
+    }
+
+    interface Arity1 {
+        Object apply(Object resource, Object first);
     }
 
-    private static Optional<Object> injectParameter(Parameter parameter, UriInfo uriInfo) {
-        return providers.stream()
-                .map(provider -> provider.provide(parameter, uriInfo))
-                .filter(Optional::isPresent)
-                .findFirst()
-                .flatMap(it -> it.flatMap(values -> convert(parameter, values)));
+    interface Arity2 {
+        Object apply(Object resource, Object first, Object second);
     }
 
-    private static Optional<Object> convert(Parameter parameter, List<String> values) {
-        return ConverterPrimitive.convert(parameter, values)
-                .or(() -> ConverterConstructor.convert(parameter.getType(), values.get(0)))
-                .or(() -> ConverterFactory.convert(parameter.getType(), values.get(0)))
-                ;
+    interface Arity3 {
+        Object apply(Object resource, Object first, Object second, Object third);
     }
 
-    interface ValueProvider {
-        Optional<List<String>> provide(Parameter parameter, UriInfo uriInfo);
+    interface Arity4 {
+        Object apply(Object resource, Object first, Object second, Object third, Object fourth);
+    }
+
+    private static ParameterBinder binder(Parameter parameter) {
+        PathParam pathParam = parameter.getAnnotation(PathParam.class);
+        if (pathParam != null) return values(parameter, uriInfo -> uriInfo.getPathParameters().get(pathParam.value()));
+        QueryParam queryParam = parameter.getAnnotation(QueryParam.class);
+        if (queryParam != null) return values(parameter, uriInfo -> uriInfo.getQueryParameters().get(queryParam.value()));
+        if (parameter.isAnnotationPresent(Context.class)) return context(parameter.getType());
+        return (resourceContext, uriInfo) -> null;
+    }
+
+    private static ParameterBinder values(Parameter parameter, Function<UriInfo, List<String>> provider) {
+        ValueConverter<Object> converter = ConverterPrimitive.converter(parameter.getType())
+                .or(() -> ConverterConstructor.converter(parameter.getType()))
+                .or(() -> ConverterFactory.converter(parameter.getType()))
+                .orElse(null);
+        if (converter == null) return (resourceContext, uriInfo) -> null;
+        return (resourceContext, uriInfo) -> {
+            List<String> values = provider.apply(uriInfo);
+            return values == null ? null : converter.fromString(values);
+        };
+    }
+
+    private static ParameterBinder context(Class<?> type) {
+        if (type.equals(ResourceContext.class)) return (resourceContext, uriInfo) -> resourceContext;
+        if (type.equals(UriInfo.class)) return (resourceContext, uriInfo) -> uriInfo;
+        if (type.equals(Request.class)) return (resourceContext, uriInfo) -> null;
+        return (resourceContext, uriInfo) -> resourceContext.getResource(type);
+    }
+
+    interface ParameterBinder {
+        Object bind(ResourceContext resourceContext, UriInfo uriInfo);
     }
 
     interface ValueConverter<T> {
@@ -96,30 +251,66 @@ class ConverterPrimitive {
             String.class, singleValued(it -> it)
     );
 
-    public static Optional<Object> convert(Parameter parameter, List<String> values) {
-        return Optional.ofNullable(primitives.get(parameter.getType()))
-                .map(c -> c.fromString(values));
+    public static Optional<MethodInvoker.ValueConverter<Object>> converter(Class<?> type) {
+        return Optional.ofNullable(primitives.get(type));
     }
 }
 
 class ConverterConstructor {
 
-    public static <T> Optional<T> convert(Class<T> converter, String value) {
+    /**
+     * 公开的 String 构造函数; 构造函数抛出异常时再尝试公开的静态 valueOf(String), 都失败时得到 null
+     */
+    public static Optional<MethodInvoker.ValueConverter<Object>> converter(Class<?> converter) {
         try {
-            return Optional.of(converter.getConstructor(String.class).newInstance(value));
-        } catch (IllegalAccessException | IllegalArgumentException | InstantiationException | NoSuchMethodException |
-                 SecurityException | InvocationTargetException e) {
+            MethodHandle constructor = MethodHandles.lookup().unreflectConstructor(converter.getConstructor(String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+            MethodHandle factory = ConverterFactory.factory(converter);
+            MethodHandle handle = factory == null ? constructor
+                    : MethodHandles.catchException(constructor, Exception.class, MethodHandles.dropArguments(factory, 0, Exception.class));
+            return Optional.of(singleValued(value -> invoke(handle, value)));
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
             return Optional.empty();
         }
     }
+
+    /**
+     * 构造函数或 valueOf 抛出的异常表示转换失败, 得到 null; {@link Error} 原样抛出
+     */
+    static Object invoke(MethodHandle converter, String value) {
+        try {
+            return (Object) converter.invokeExact(value);
+        } catch (Exception e) {
+            return null;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
 
 class ConverterFactory {
-    public static Optional<?> convert(Class<?> converter, String value) {
+
+    /**
+     * 公开的静态 valueOf(String) 方法
+     */
+    public static Optional<MethodInvoker.ValueConverter<Object>> converter(Class<?> converter) {
+        MethodHandle factory = factory(converter);
+        if (factory == null) return Optional.empty();
+        return Optional.of(singleValued(value -> ConverterConstructor.invoke(factory, value)));
+    }
+
+    /**
+     * valueOf 的 (String)Object 句柄, 没有时为 null
+     */
+    static MethodHandle factory(Class<?> converter) {
         try {
-            return Optional.of(converter.getMethod("valueOf", String.class).invoke(null, value));
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-            return Optional.empty();
+            Method valueOf = converter.getMethod("valueOf", String.class);
+            if (!Modifier.isStatic(valueOf.getModifiers())) return null;
+            return MethodHandles.lookup().unreflect(valueOf).asType(MethodType.methodType(Object.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            return null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 请求的 Accept 和 Content-Type
+ * <p>
+ * 解析结果按 header 原文缓存, 相同的媒体类型共用同一个 {@link MediaType} 实例; 缓存达到 {@link #MAX_CACHED} 后不再加入新的条目
+ *
+ * @author qiubaisen
+ * @date 2023/2/27
+ */
+record Negotiation(List<Accepted> accept, MediaType contentType) {
+    static final int MAX_CACHED = 256;
+
+    private static final Map<String, List<Accepted>> accepts = new ConcurrentHashMap<>();
+    private static final Map<String, Optional<MediaType>> mediaTypes = new ConcurrentHashMap<>();
+    private static final Map<MediaType, MediaType> interned = new ConcurrentHashMap<>();
+
+    static final List<Accepted> ANY = List.of(new Accepted(MediaType.WILDCARD_TYPE, 1000));
+    static final Negotiation NONE = new Negotiation(ANY, null);
+
+    /**
+     * Accept 中的一项, quality 是 q 值乘以 1000
+     */
+    record Accepted(MediaType type, int quality) {
+    }
+
+    static Negotiation of(String accept, String contentType) {
+        return new Negotiation(accept(accept), contentType == null ? null : mediaType(contentType));
+    }
+
+    /**
+     * 按 q 值从高到低, q 值相同时具体的类型在前; q=0 的类型保留在最后, 表示明确排除. 没有 Accept 时等同于 *&#47;*
+     */
+    static List<Accepted> accept(String header) {
+        if (header == null || header.isBlank()) return ANY;
+        List<Accepted> accepted = accepts.get(header);
+        if (accepted != null) return accepted;
+        accepted = parseAccept(header);
+        if (accepts.size() < MAX_CACHED) accepts.put(header, accepted);
+        return accepted;
+    }
+
+    /**
+     * 无法解析时返回 null
+     */
+    static MediaType mediaType(String value) {
+        Optional<MediaType> mediaType = mediaTypes.get(value);
+        if (mediaType != null) return mediaType.orElse(null);
+        mediaType = Optional.ofNullable(parse(value)).map(Negotiation::intern);
+        if (mediaTypes.size() < MAX_CACHED) mediaTypes.put(value, mediaType);
+        return mediaType.orElse(null);
+    }
+
+    private static MediaType intern(MediaType mediaType) {
+        MediaType existing = interned.get(mediaType);
+        if (existing != null) return existing;
+        if (interned.size() >= MAX_CACHED) return mediaType;
+        existing = interned.putIfAbsent(mediaType, mediaType);
+        return existing == null ? mediaType : existing;
+    }
+
+    private static List<Accepted> parseAccept(String header) {
+        List<Accepted> accepted = new ArrayList<>();
+        for (String item : header.split(",")) {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            MediaType type = parse(item, parameters);
+            if (type == null) continue;
+            int quality = quality(parameters.remove("q"));
+            if (!parameters.isEmpty()) type = new MediaType(type.getType(), type.getSubtype(), parameters);
+            accepted.add(new Accepted(intern(type), quality));
+        }
+        if (accepted.isEmpty()) return ANY;
+        accepted.sort(Comparator.comparingInt(Accepted::quality).reversed()
+                .thenComparing(Comparator.comparingInt((Accepted it) -> specificity(it.type())).reversed()));
+        return List.copyOf(accepted);
+    }
+
+    /**
+     * 包含 type 的最具体的一项的 q 值, 具体程度相同时取排在前面的一项; 没有一项包含 type 时为 0, 不可接受
+     */
+    static int quality(List<Accepted> accept, MediaType type) {
+        int quality = 0;
+        int specificity = -1;
+        for (Accepted accepted : accept) {
+            int current = specificity(accepted.type());
+            if (current > specificity && includes(accepted.type(), type)) {
+                quality = accepted.quality();
+                specificity = current;
+            }
+        }
+        return quality;
+    }
+
+    /**
+     * range 是否包含 type, 不比较参数; 与 {@link MediaType#isCompatible} 不同, 通配的 type 不被具体的 range 包含
+     */
+    private static boolean includes(MediaType range, MediaType type) {
+        return (range.isWildcardType() || range.getType().equals(type.getType()))
+               && (range.isWildcardSubtype() || range.getSubtype().equals(type.getSubtype()));
+    }
+
+    private static int quality(String value) {
+        if (value == null) return 1000;
+        try {
+            double q = Double.parseDouble(value);
+            return q < 0 || q > 1 ? 1000 : (int) Math.round(q * 1000);
+        } catch (NumberFormatException e) {
+            return 1000;
+        }
+    }
+
+    private static MediaType parse(String value) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        MediaType type = parse(value, parameters);
+        return type == null || parameters.isEmpty() ? type : new MediaType(type.getType(), type.getSubtype(), parameters);
+    }
+
+    private static MediaType parse(String value, Map<String, String> parameters) {
+        String[] parts = value.split(";");
+        String name = parts[0].trim().toLowerCase(Locale.ROOT);
+        if (name.equals("*")) name = MediaType.MEDIA_TYPE_WILDCARD + "/" + MediaType.MEDIA_TYPE_WILDCARD;
+        int slash = name.indexOf('/');
+        if (slash <= 0 || slash == name.length() - 1) return null;
+        for (int i = 1; i < parts.length; i++) {
+            int equals = parts[i].indexOf('=');
+            if (equals <= 0) continue;
+            parameters.put(parts[i].substring(0, equals).trim().toLowerCase(Locale.ROOT), unquote(parts[i].substring(equals + 1).trim()));
+        }
+        return new MediaType(name.substring(0, slash).trim(), name.substring(slash + 1).trim());
+    }
+
+    private static String unquote(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+    }
+
+    /**
+     * 具体类型 2, 子类型通配 1, *&#47;* 为 0
+     */
+    static int specificity(MediaType type) {
+        return (type.isWildcardType() ? 0 : 1) + (type.isWildcardSubtype() ? 0 : 1);
+    }
+}
@@ -0,0 +1,72 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Variant;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 注入到 @Context {@link Request} 参数的请求, 资源方法在产生副作用之前用资源当前的 ETag / Last-Modified 评估条件请求,
+ * 不满足时返回 304 / 412 的 {@link Response.ResponseBuilder}, 满足时返回 null; 规则见 {@link Preconditions}
+ * <p>
+ * 不支持 {@link #selectVariant}
+ *
+ * @author qiubaisen
+ * @date 2023/3/4
+ */
+class PreconditionRequest implements Request {
+    private final HttpServletRequest request;
+
+    PreconditionRequest(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public String getMethod() {
+        return request.getMethod();
+    }
+
+    @Override
+    public Variant selectVariant(List<Variant> variants) {
+        if (variants == null || variants.isEmpty()) throw new IllegalArgumentException("variants");
+        throw new UnsupportedOperationException("variant selection is not supported");
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(EntityTag eTag) {
+        if (eTag == null) throw new IllegalArgumentException("eTag");
+        return result(Preconditions.evaluate(request, eTag, null), eTag);
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(Date lastModified) {
+        if (lastModified == null) throw new IllegalArgumentException("lastModified");
+        return result(Preconditions.evaluate(request, null, lastModified), null);
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(Date lastModified, EntityTag eTag) {
+        if (lastModified == null || eTag == null) throw new IllegalArgumentException(lastModified == null ? "lastModified" : "eTag");
+        return result(Preconditions.evaluate(request, eTag, lastModified), eTag);
+    }
+
+    /**
+     * 资源当前不存在, 有 If-Match 时总是 412
+     */
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions() {
+        if (request.getHeader(HttpHeaders.IF_MATCH) == null) return null;
+        return Response.status(Preconditions.PRECONDITION_FAILED);
+    }
+
+    private static Response.ResponseBuilder result(int precondition, EntityTag eTag) {
+        if (precondition == Preconditions.PROCEED) return null;
+        Response.ResponseBuilder builder = Response.status(precondition);
+        return eTag == null ? builder : builder.tag(eTag);
+    }
+}
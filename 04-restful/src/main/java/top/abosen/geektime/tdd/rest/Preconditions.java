@@ -0,0 +1,105 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * 按响应的 ETag 和 Last-Modified 评估请求的条件头, 规则与 {@link jakarta.ws.rs.core.Request#evaluatePreconditions} 相同 (RFC 7232 第 6 节):
+ * If-Match / If-Unmodified-Since 不满足时 412; If-None-Match 命中或 If-Modified-Since 之后未修改时, GET / HEAD 为 304, 其他方法为 412
+ * <p>
+ * 由 {@link ResourceServlet} 评估 GET / HEAD 的响应, 由 {@link PreconditionRequest} 在资源方法中评估其他方法
+ * <p>
+ * 响应头的值可以是 {@link EntityTag} / {@link Date}, 也可以是已经序列化的字符串; 请求中压缩后的 ETag 只在弱比较时去掉编码后缀与之比较,
+ * 强比较要求逐字节相同的表示, 压缩前后不相等
+ *
+ * @author qiubaisen
+ * @date 2023/2/28
+ */
+final class Preconditions {
+    static final int PROCEED = 0;
+    static final int NOT_MODIFIED = 304;
+    static final int PRECONDITION_FAILED = 412;
+
+    private Preconditions() {
+    }
+
+    static int evaluate(HttpServletRequest request, Object entityTag, Object lastModified) {
+        Tag tag = tag(entityTag);
+        long modified = time(lastModified);
+        String ifMatch = header(request, HttpHeaders.IF_MATCH);
+        if (ifMatch != null) {
+            if (!matches(ifMatch, tag, false)) return PRECONDITION_FAILED;
+        } else if (modified >= 0) {
+            long ifUnmodifiedSince = date(request, HttpHeaders.IF_UNMODIFIED_SINCE);
+            if (ifUnmodifiedSince >= 0 && modified / 1000 > ifUnmodifiedSince / 1000) return PRECONDITION_FAILED;
+        }
+        boolean safe = HttpMethod.GET.equals(request.getMethod()) || HttpMethod.HEAD.equals(request.getMethod());
+        String ifNoneMatch = header(request, HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (matches(ifNoneMatch, tag, true)) return safe ? NOT_MODIFIED : PRECONDITION_FAILED;
+        } else if (safe && modified >= 0) {
+            long ifModifiedSince = date(request, HttpHeaders.IF_MODIFIED_SINCE);
+            if (ifModifiedSince >= 0 && modified / 1000 <= ifModifiedSince / 1000) return NOT_MODIFIED;
+        }
+        return PROCEED;
+    }
+
+    private record Tag(String value, boolean weak) {
+    }
+
+    /**
+     * * 匹配任意存在的表示; If-Match 使用强比较, If-None-Match 使用弱比较, 只有弱比较时压缩后的 ETag 与未压缩的相等
+     */
+    private static boolean matches(String header, Tag tag, boolean weakComparison) {
+        if (header.trim().equals("*")) return true;
+        if (tag == null || (!weakComparison && tag.weak())) return false;
+        for (String candidate : header.split(",")) {
+            Tag other = tag(candidate);
+            if (other == null || (!weakComparison && other.weak())) continue;
+            if (other.value().equals(tag.value()) || weakComparison && Compression.untag(other.value()).equals(tag.value())) return true;
+        }
+        return false;
+    }
+
+    private static Tag tag(Object value) {
+        if (value instanceof EntityTag entityTag) return new Tag(entityTag.getValue(), entityTag.isWeak());
+        if (!(value instanceof String string)) return null;
+        String tag = string.trim();
+        boolean weak = tag.startsWith("W/");
+        if (weak) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        return new Tag(tag, weak);
+    }
+
+    private static long time(Object value) {
+        if (value instanceof Date date) return date.getTime();
+        if (value instanceof String string) return parse(string);
+        return -1;
+    }
+
+    private static long parse(String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static long date(HttpServletRequest request, String name) {
+        String value = request.getHeader(name);
+        return value == null ? -1 : parse(value);
+    }
+
+    private static String header(HttpServletRequest request, String name) {
+        if (request.getHeader(name) == null) return null;
+        return String.join(",", Collections.list(request.getHeaders(name)));
+    }
+}
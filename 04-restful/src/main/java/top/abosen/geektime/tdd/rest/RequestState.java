@@ -0,0 +1,456 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.*;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 一次请求匹配到的资源, 路径参数和 URI, 按匹配顺序记录在数组中; {@link #createUriInfo()} 每次请求只创建一个 {@link UriInfo}, 读取时反映最新的匹配结果
+ * <p>
+ * 实例按线程复用: {@link #acquire} 取出当前线程上空闲的实例, 响应写出后由 {@link ResourceServlet} 调用 {@link #release} 清空并放回释放时所在的线程.
+ * 释放时本次请求的 UriInfo 随之失效, 响应写出后继续使用会抛出 {@link IllegalStateException}, 不会读到之后请求的数据
+ *
+ * @author qiubaisen
+ * @date 2023/3/3
+ */
+final class RequestState implements UriInfoBuilder {
+    static final String ATTRIBUTE = RequestState.class.getName();
+
+    private static final ThreadLocal<RequestState> idle = new ThreadLocal<>();
+
+    private HttpServletRequest request;
+    private Object[] resources = new Object[4];
+    private int resourceCount;
+    private String[] parameters = new String[8];
+    private int parameterCount;
+    private int[] matched = new int[4];
+    private int matchedCount;
+    private View view;
+
+    private RequestState() {
+    }
+
+    /**
+     * 当前线程上有空闲的实例时直接使用, 否则新建; 实例记录在请求属性中, 供 {@link #release} 找回
+     */
+    static RequestState acquire(HttpServletRequest request) {
+        RequestState state = idle.get();
+        if (state != null) idle.set(null);
+        else state = new RequestState();
+        state.request = request;
+        request.setAttribute(ATTRIBUTE, state);
+        return state;
+    }
+
+    static void release(HttpServletRequest request) {
+        if (!(request.getAttribute(ATTRIBUTE) instanceof RequestState state)) return;
+        request.removeAttribute(ATTRIBUTE);
+        state.clear();
+        idle.set(state);
+    }
+
+    private void clear() {
+        Arrays.fill(resources, 0, resourceCount, null);
+        Arrays.fill(parameters, 0, parameterCount * 2, null);
+        resourceCount = parameterCount = matchedCount = 0;
+        if (view != null) view.state = null;
+        view = null;
+        request = null;
+    }
+
+    @Override
+    public Object getLastMatchedResource() {
+        return resources[resourceCount - 1];
+    }
+
+    @Override
+    public void addMatchedResource(Object resource) {
+        if (resourceCount == resources.length) resources = Arrays.copyOf(resources, resourceCount * 2);
+        resources[resourceCount++] = resource;
+    }
+
+    @Override
+    public void addMatchedPathParameter(Map<String, String> pathParameter) {
+        int size = (parameterCount + pathParameter.size()) * 2;
+        if (size > parameters.length) parameters = Arrays.copyOf(parameters, Math.max(size, parameters.length * 2));
+        for (Map.Entry<String, String> parameter : pathParameter.entrySet()) {
+            parameters[parameterCount * 2] = parameter.getKey();
+            parameters[parameterCount * 2 + 1] = parameter.getValue();
+            parameterCount++;
+        }
+    }
+
+    /**
+     * 只记录匹配到的 URI 在 servlet path 中的结束位置
+     */
+    @Override
+    public void addMatchedPath(String remaining) {
+        if (matchedCount == matched.length) matched = Arrays.copyOf(matched, matchedCount * 2);
+        matched[matchedCount++] = request.getServletPath().length() - (remaining == null ? 0 : remaining.length());
+    }
+
+    /**
+     * 同一请求内总是返回同一个视图
+     */
+    @Override
+    public UriInfo createUriInfo() {
+        if (view == null) view = new View(this);
+        return view;
+    }
+
+    @Override
+    public Request createRequest() {
+        return new PreconditionRequest(request);
+    }
+
+    /**
+     * 按 RFC 3986 的 pchar 编码, slash 为 true 时保留 /
+     */
+    static String encode(String value, boolean slash) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        StringBuilder encoded = null;
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            boolean allowed = b < 0x80 && (Character.isLetterOrDigit(b) || "-._~!$&'()*+,;=:@".indexOf(b) >= 0 || slash && b == '/');
+            if (allowed && encoded == null) continue;
+            if (encoded == null) encoded = new StringBuilder(bytes.length + 16).append(value, 0, i);
+            if (allowed) encoded.append((char) b);
+            else encoded.append('%').append(Character.toUpperCase(Character.forDigit(b >> 4, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+        }
+        return encoded == null ? value : encoded.toString();
+    }
+
+    /**
+     * 路径中的 + 不表示空格
+     */
+    static String decode(String value) {
+        return value.indexOf('%') < 0 ? value : URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按加入顺序排列的路径参数; 第一次修改时复制为独立的 {@link MultivaluedHashMap}, 之后的读写都在副本上进行, 不再反映之后匹配的参数
+     */
+    private static final class PathParameters extends AbstractMap<String, List<String>> implements MultivaluedMap<String, String> {
+        private final View view;
+        private final boolean decode;
+        private MultivaluedMap<String, String> copy;
+
+        PathParameters(View view, boolean decode) {
+            this.view = view;
+            this.decode = decode;
+        }
+
+        private String value(RequestState state, int index) {
+            String value = state.parameters[index * 2 + 1];
+            return decode ? value : encode(value, false);
+        }
+
+        private MultivaluedMap<String, String> copy() {
+            RequestState state = view.state();
+            if (copy == null) {
+                MultivaluedMap<String, String> copy = new MultivaluedHashMap<>();
+                for (int i = 0; i < state.parameterCount; i++) copy.add(state.parameters[i * 2], value(state, i));
+                this.copy = copy;
+            }
+            return copy;
+        }
+
+        @Override
+        public List<String> get(Object key) {
+            RequestState state = view.state();
+            if (copy != null) return copy.get(key);
+            String first = null;
+            List<String> values = null;
+            for (int i = 0; i < state.parameterCount; i++) {
+                if (!state.parameters[i * 2].equals(key)) continue;
+                if (first == null) first = value(state, i);
+                else {
+                    if (values == null) values = new ArrayList<>(List.of(first));
+                    values.add(value(state, i));
+                }
+            }
+            if (values != null) return Collections.unmodifiableList(values);
+            return first == null ? null : List.of(first);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            RequestState state = view.state();
+            if (copy != null) return copy.containsKey(key);
+            for (int i = 0; i < state.parameterCount; i++) if (state.parameters[i * 2].equals(key)) return true;
+            return false;
+        }
+
+        @Override
+        public String getFirst(String key) {
+            RequestState state = view.state();
+            if (copy != null) return copy.getFirst(key);
+            for (int i = 0; i < state.parameterCount; i++) if (state.parameters[i * 2].equals(key)) return value(state, i);
+            return null;
+        }
+
+        /**
+         * 遍历和通过 entrySet 的修改都在副本上进行
+         */
+        @Override
+        public Set<Entry<String, List<String>>> entrySet() {
+            return copy().entrySet();
+        }
+
+        @Override
+        public List<String> put(String key, List<String> value) {
+            return copy().put(key, value);
+        }
+
+        @Override
+        public List<String> remove(Object key) {
+            return copy().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            copy().clear();
+        }
+
+        @Override
+        public void putSingle(String key, String value) {
+            copy().putSingle(key, value);
+        }
+
+        @Override
+        public void add(String key, String value) {
+            copy().add(key, value);
+        }
+
+        @Override
+        public void addAll(String key, String... newValues) {
+            copy().addAll(key, newValues);
+        }
+
+        @Override
+        public void addAll(String key, List<String> valueList) {
+            copy().addAll(key, valueList);
+        }
+
+        @Override
+        public void addFirst(String key, String value) {
+            copy().addFirst(key, value);
+        }
+
+        @Override
+        public boolean equalsIgnoreValueOrder(MultivaluedMap<String, String> otherMap) {
+            return copy().equalsIgnoreValueOrder(otherMap);
+        }
+    }
+
+    private record Segment(String path, MultivaluedMap<String, String> matrix) implements PathSegment {
+        /**
+         * 分号之后是 matrix 参数, 没有 = 的参数值为空串
+         */
+        static Segment parse(String segment, boolean decode) {
+            int semicolon = segment.indexOf(';');
+            String path = semicolon < 0 ? segment : segment.substring(0, semicolon);
+            MultivaluedMap<String, String> matrix = new MultivaluedHashMap<>();
+            if (semicolon >= 0) for (String parameter : segment.substring(semicolon + 1).split(";")) {
+                if (parameter.isEmpty()) continue;
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals), value = equals < 0 ? "" : parameter.substring(equals + 1);
+                matrix.add(decode ? decode(name) : name, decode ? decode(value) : value);
+            }
+            return new Segment(decode ? decode(path) : path, matrix);
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getMatrixParameters() {
+            return matrix;
+        }
+    }
+
+    /**
+     * 每次请求新建, 释放时失效; 路径参数和查询参数按 decode 分别缓存
+     */
+    private static final class View implements UriInfo {
+        private volatile RequestState state;
+        private PathParameters decodedPathParameters, encodedPathParameters;
+        private MultivaluedMap<String, String> decodedQueryParameters, encodedQueryParameters;
+
+        View(RequestState state) {
+            this.state = state;
+        }
+
+        private RequestState state() {
+            RequestState state = this.state;
+            if (state == null) throw new IllegalStateException("UriInfo is only valid while the request is being handled");
+            return state;
+        }
+
+        private HttpServletRequest request() {
+            return state().request;
+        }
+
+        @Override
+        public String getPath() {
+            return getPath(true);
+        }
+
+        /**
+         * 不解码时取 request URI 中去掉 context path 的部分
+         */
+        @Override
+        public String getPath(boolean decode) {
+            HttpServletRequest request = request();
+            String uri = request.getRequestURI();
+            if (decode || uri == null) {
+                String path = request.getServletPath() + Objects.toString(request.getPathInfo(), "");
+                path = path.startsWith("/") ? path.substring(1) : path;
+                return decode ? path : encode(path, true);
+            }
+            String context = Objects.toString(request.getContextPath(), "");
+            String path = uri.startsWith(context) ? uri.substring(context.length()) : uri;
+            return path.startsWith("/") ? path.substring(1) : path;
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments() {
+            return getPathSegments(true);
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments(boolean decode) {
+            List<PathSegment> segments = new ArrayList<>();
+            for (String segment : getPath(false).split("/", -1)) segments.add(Segment.parse(segment, decode));
+            return Collections.unmodifiableList(segments);
+        }
+
+        @Override
+        public URI getRequestUri() {
+            HttpServletRequest request = request();
+            String query = request.getQueryString();
+            return URI.create(request.getRequestURL() + (query == null ? "" : "?" + query));
+        }
+
+        @Override
+        public UriBuilder getRequestUriBuilder() {
+            return UriBuilder.fromUri(getRequestUri());
+        }
+
+        @Override
+        public URI getAbsolutePath() {
+            return URI.create(request().getRequestURL().toString());
+        }
+
+        @Override
+        public UriBuilder getAbsolutePathBuilder() {
+            return UriBuilder.fromUri(getAbsolutePath());
+        }
+
+        @Override
+        public URI getBaseUri() {
+            return getAbsolutePath().resolve(Objects.toString(request().getContextPath(), "") + "/");
+        }
+
+        @Override
+        public UriBuilder getBaseUriBuilder() {
+            return UriBuilder.fromUri(getBaseUri());
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getPathParameters() {
+            return getPathParameters(true);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+            state();
+            if (decode) {
+                if (decodedPathParameters == null) decodedPathParameters = new PathParameters(this, true);
+                return decodedPathParameters;
+            }
+            if (encodedPathParameters == null) encodedPathParameters = new PathParameters(this, false);
+            return encodedPathParameters;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters() {
+            return getQueryParameters(true);
+        }
+
+        /**
+         * 第一次读取时解析查询字符串
+         */
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+            String query = request().getQueryString();
+            if (decode) {
+                if (decodedQueryParameters == null) decodedQueryParameters = parse(query, true);
+                return decodedQueryParameters;
+            }
+            if (encodedQueryParameters == null) encodedQueryParameters = parse(query, false);
+            return encodedQueryParameters;
+        }
+
+        private static MultivaluedMap<String, String> parse(String query, boolean decode) {
+            MultivaluedMap<String, String> parsed = new MultivaluedHashMap<>();
+            if (query != null) for (String pair : query.split("&")) {
+                if (pair.isEmpty()) continue;
+                int equals = pair.indexOf('=');
+                String name = equals < 0 ? pair : pair.substring(0, equals), value = equals < 0 ? "" : pair.substring(equals + 1);
+                if (decode) parsed.add(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+                else parsed.add(name, value);
+            }
+            return parsed;
+        }
+
+        @Override
+        public List<String> getMatchedURIs() {
+            return getMatchedURIs(true);
+        }
+
+        /**
+         * 当前资源的 URI 在前, 根资源的在最后; 不带开头的 /
+         */
+        @Override
+        public List<String> getMatchedURIs(boolean decode) {
+            RequestState state = state();
+            String path = state.request.getServletPath();
+            int start = path.startsWith("/") ? 1 : 0;
+            List<String> uris = new ArrayList<>(state.matchedCount);
+            for (int i = state.matchedCount - 1; i >= 0; i--) {
+                String uri = path.substring(Math.min(start, state.matched[i]), state.matched[i]);
+                uris.add(decode ? uri : encode(uri, true));
+            }
+            return Collections.unmodifiableList(uris);
+        }
+
+        /**
+         * 当前资源在前, 根资源在最后
+         */
+        @Override
+        public List<Object> getMatchedResources() {
+            RequestState state = state();
+            List<Object> matched = new ArrayList<>(state.resourceCount);
+            for (int i = state.resourceCount - 1; i >= 0; i--) matched.add(state.resources[i]);
+            return Collections.unmodifiableList(matched);
+        }
+
+        @Override
+        public URI resolve(URI uri) {
+            return getBaseUri().resolve(uri);
+        }
+
+        @Override
+        public URI relativize(URI uri) {
+            return getRequestUri().relativize(uri.isAbsolute() ? uri : resolve(uri));
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package top.abosen.geektime.tdd.rest;
 
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.ws.rs.HttpMethod;
-import jakarta.ws.rs.Path;
+import jakarta.ws.rs.*;
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.GenericEntity;
 import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -23,13 +24,27 @@ interface ResourceRouter {
     OutboundResponse dispatch(HttpServletRequest request, ResourceContext resourceContext);
 
     interface Resource extends UriHandler {
-        Optional<ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, String[] mediaType, ResourceContext resourceContext, UriInfoBuilder builder);
+        Optional<ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, Negotiation negotiation, ResourceContext resourceContext, UriInfoBuilder builder);
     }
 
     interface ResourceMethod extends UriHandler {
         GenericEntity<?> call(ResourceContext resourceContext, UriInfoBuilder builder);
 
         String getHttpMethod();
+
+        /**
+         * 返回实体时加到 200 响应上的 Cache-Control, 没有时为 null
+         */
+        default String getCacheControl() {
+            return null;
+        }
+
+        /**
+         * 按 Accept 和 @Produces 协商出的响应类型, 加到 200 响应上; 没有 @Produces 或协商出的是通配类型时为 null
+         */
+        default MediaType getMediaType() {
+            return null;
+        }
     }
 
 }
@@ -37,38 +52,74 @@ interface ResourceRouter {
 class DefaultResourceRouter implements ResourceRouter {
 
     private Runtime runtime;
-    private List<Resource> rootResources;
+    private RouteTrie<Resource> rootResources;
+    private DispatchCache cache;
+    private DispatchCache.Paths paths;
 
     public DefaultResourceRouter(Runtime runtime, List<Resource> rootResources) {
+        this(runtime, rootResources, DispatchCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param cacheCapacity 最多缓存的 (HTTP 方法, Accept, Content-Type, 归一后的路径) 数量, 0 表示不缓存
+     */
+    public DefaultResourceRouter(Runtime runtime, List<Resource> rootResources, int cacheCapacity) {
         this.runtime = runtime;
-        this.rootResources = rootResources;
+        this.rootResources = new RouteTrie<>(rootResources);
+        this.cache = new DispatchCache(cacheCapacity);
+        this.paths = new DispatchCache.Paths(rootResources.stream().flatMap(it -> it instanceof ResourceHandler handler
+                ? handler.templates() : Stream.of(it.getUriTemplate())).toList());
+    }
+
+    DispatchCache getDispatchCache() {
+        return cache;
     }
 
     @Override
     public OutboundResponse dispatch(HttpServletRequest request, ResourceContext resourceContext) {
         String path = request.getServletPath();
         UriInfoBuilder uri = runtime.createUriInfoBuilder(request);
-
-        List<Resource> rootResources = this.rootResources;
-
-        return (OutboundResponse) UriHandlers.match(path, rootResources,
-                        (result, handler) -> findResourceMethod(request, resourceContext, uri, result, handler))
+        String accept = String.join(",", Collections.list(request.getHeaders(HttpHeaders.ACCEPT)));
+        DispatchCache.Key key = new DispatchCache.Key(request.getMethod(), accept, request.getContentType(), paths.normalize(path));
+        DispatchCache.Route route = key.path() == null ? null : cache.get(key);
+
+        return (OutboundResponse) Optional.ofNullable(route == null ? null : route.bind(path, resourceContext, uri))
+                .or(() -> {
+                    Negotiation negotiation = Negotiation.of(accept, key.contentType());
+                    return UriHandlers.match(path, rootResources,
+                            (result, handler) -> findResourceMethod(key, negotiation, resourceContext, uri, result, handler));
+                })
                 .map(m -> callMethod(resourceContext, uri, m)
                         .map(entity -> {
                             if (entity.getEntity() instanceof OutboundResponse) {
                                 return ((OutboundResponse) entity.getEntity());
                             }
-                            return Response.ok(entity).build();
+                            Response.ResponseBuilder builder = Response.ok(entity);
+                            MediaType type = m.getMediaType();
+                            if (type != null) builder.type(type);
+                            String cacheControl = m.getCacheControl();
+                            if (cacheControl != null) builder.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+                            return builder.build();
                         })
                         .orElseGet(() -> Response.noContent().build()))
                 .orElseGet(() -> Response.status(Response.Status.NOT_FOUND).build())
                 ;
     }
 
-    private static Optional<ResourceMethod> findResourceMethod(HttpServletRequest request, ResourceContext resourceContext, UriInfoBuilder uri,
-                                                               Optional<UriTemplate.MatchResult> matched, Resource handler) {
-        return matched.flatMap(it -> handler.match(it, request.getMethod(),
-                Collections.list(request.getHeaders(HttpHeaders.ACCEPT)).toArray(String[]::new), resourceContext, uri));
+    /**
+     * 根资源上的资源方法只查找一次: 找到时放入缓存, 找不到时只再查找 sub-resource locator
+     */
+    private Optional<ResourceMethod> findResourceMethod(DispatchCache.Key key, Negotiation negotiation, ResourceContext resourceContext, UriInfoBuilder uri,
+                                                        Optional<UriTemplate.MatchResult> matched, Resource handler) {
+        return matched.flatMap(it -> {
+            if (!(handler instanceof ResourceHandler resource))
+                return handler.match(it, key.httpMethod(), negotiation, resourceContext, uri);
+            Optional<DispatchCache.Route> route = resource.route(it, key.httpMethod(), negotiation);
+            if (route.isEmpty()) return resource.locate(it, key.httpMethod(), negotiation, resourceContext, uri);
+            if (key.path() != null) cache.put(key, route.get());
+            resource.bind(it, resourceContext, uri);
+            return Optional.of(route.get().method());
+        });
     }
 
     private static Optional<? extends GenericEntity<?>> callMethod(ResourceContext resourceContext, UriInfoBuilder uri, ResourceMethod m) {
@@ -79,26 +130,40 @@ class DefaultResourceRouter implements ResourceRouter {
 
 
 class ResourceMethods {
-    private final Map<String, List<ResourceRouter.ResourceMethod>> resourceMethods;
+    private final Map<String, RouteTrie<Candidates>> resourceMethods;
 
     public ResourceMethods(Method[] methods) {
         this.resourceMethods = getResourceMethods(methods);
     }
 
-    private static Map<String, List<ResourceRouter.ResourceMethod>> getResourceMethods(Method[] methods) {
+    /**
+     * 同一 HTTP 方法和路径下的资源方法归为一组, 路径匹配只在组之间进行, 组内按 {@link Negotiation} 选择
+     */
+    private static Map<String, RouteTrie<Candidates>> getResourceMethods(Method[] methods) {
         return Arrays.stream(methods).filter(m -> Arrays.stream(m.getAnnotations())
                         .anyMatch(it -> it.annotationType().isAnnotationPresent(HttpMethod.class)))
                 .map(DefaultResourceMethod::new)
-                .collect(Collectors.groupingBy(ResourceRouter.ResourceMethod::getHttpMethod));
+                .collect(Collectors.groupingBy(DefaultResourceMethod::getHttpMethod, Collectors.collectingAndThen(
+                        Collectors.groupingBy(DefaultResourceMethod::getPath, LinkedHashMap::new, Collectors.toList()),
+                        groups -> new RouteTrie<>(groups.values().stream().map(Candidates::new).toList()))));
+    }
+
+    Stream<UriTemplate> templates() {
+        return resourceMethods.values().stream().flatMap(it -> it.handlers().stream()).map(Candidates::getUriTemplate);
     }
 
     public Optional<ResourceRouter.ResourceMethod> findResourceMethod(String path, String method) {
-        return findMethods(path, method).or(() -> findAlternative(path, method));
+        return findResourceMethod(path, method, Negotiation.NONE);
+    }
+
+    public Optional<ResourceRouter.ResourceMethod> findResourceMethod(String path, String method, Negotiation negotiation) {
+        return findMethods(path, method).map(candidates -> candidates.select(negotiation))
+                .or(() -> findAlternative(path, method, negotiation));
     }
 
-    private Optional<ResourceRouter.ResourceMethod> findAlternative(String remaining, String httpMethod) {
+    private Optional<ResourceRouter.ResourceMethod> findAlternative(String remaining, String httpMethod, Negotiation negotiation) {
         if (HttpMethod.HEAD.equals(httpMethod))
-            return findResourceMethod(remaining, HttpMethod.GET).map(HeadResourceMethod::new);
+            return findResourceMethod(remaining, HttpMethod.GET, negotiation).map(HeadResourceMethod::new);
         if (HttpMethod.OPTIONS.equals(httpMethod)) {
             return Optional.of(new OptionResourceMethod(remaining));
         }
@@ -106,21 +171,76 @@ class ResourceMethods {
     }
 
 
-    private Optional<ResourceRouter.ResourceMethod> findMethods(String path, String method) {
-        return UriHandlers.match(path, resourceMethods.getOrDefault(method, Collections.emptyList()), it -> it.getRemaining() == null);
+    private Optional<Candidates> findMethods(String path, String method) {
+        return UriHandlers.match(path, resourceMethods.getOrDefault(method, RouteTrie.empty()), it -> it.getRemaining() == null);
+    }
+
+    /**
+     * 路径相同的资源方法, 只有一个且不限制媒体类型时, Accept 没有全部排除就直接返回
+     */
+    static class Candidates implements UriHandler {
+        private final UriTemplate uriTemplate;
+        private final DefaultResourceMethod[] methods;
+        private final boolean unconstrained;
+
+        Candidates(List<DefaultResourceMethod> methods) {
+            this.uriTemplate = methods.get(0).getUriTemplate();
+            this.methods = methods.toArray(DefaultResourceMethod[]::new);
+            this.unconstrained = methods.size() == 1 && methods.get(0).isUnconstrained();
+        }
+
+        /**
+         * 先按 Content-Type 过滤 @Consumes, 再比较每个方法能产出的最好的类型的 q 值和产出类型的具体程度;
+         * 都相同时保留先声明的方法. 协商出的具体类型随方法返回
+         *
+         * @throws NotSupportedException  没有方法接受请求的 Content-Type
+         * @throws NotAcceptableException 没有方法能产出 Accept 中的类型
+         */
+        ResourceRouter.ResourceMethod select(Negotiation negotiation) {
+            if (unconstrained) {
+                if (negotiation.accept().get(0).quality() == 0) throw new NotAcceptableException();
+                return methods[0];
+            }
+            DefaultResourceMethod selected = null;
+            DefaultResourceMethod.Produced produced = null;
+            boolean consumable = false;
+            for (DefaultResourceMethod method : methods) {
+                if (!method.consumes(negotiation.contentType())) continue;
+                consumable = true;
+                DefaultResourceMethod.Produced current = method.produces(negotiation.accept());
+                if (current != null && (produced == null || current.score() > produced.score())) {
+                    selected = method;
+                    produced = current;
+                }
+            }
+            if (!consumable) throw new NotSupportedException();
+            if (selected == null) throw new NotAcceptableException();
+            return produced.type() == null ? selected : new NegotiatedResourceMethod(selected, produced.type());
+        }
+
+        @Override
+        public UriTemplate getUriTemplate() {
+            return uriTemplate;
+        }
     }
 
     class OptionResourceMethod implements ResourceRouter.ResourceMethod {
 
         private final String path;
+        private volatile Set<String> allowed;
 
         public OptionResourceMethod(String path) {
             this.path = path;
         }
 
+        /**
+         * 允许的方法只取决于路径, 实例被 {@link DispatchCache} 复用时只计算一次
+         */
         @Override
         public GenericEntity<?> call(ResourceContext resourceContext, UriInfoBuilder builder) {
-            return new GenericEntity<>(Response.noContent().allow(findAllowedMethod()).build(), Response.class);
+            Set<String> methods = allowed;
+            if (methods == null) allowed = methods = Set.copyOf(findAllowedMethod());
+            return new GenericEntity<>(Response.noContent().allow(methods).build(), Response.class);
         }
 
         private Set<String> findAllowedMethod() {
@@ -148,22 +268,95 @@ class ResourceMethods {
 
 class DefaultResourceMethod implements ResourceRouter.ResourceMethod {
 
+    private static final MediaType[] ANY = {MediaType.WILDCARD_TYPE};
+
     private final Method method;
+    private final MethodInvoker invoker;
+    private final String path;
     private final UriTemplate uriTemplate;
     private final String httpMethod;
+    private final MediaType[] produces;
+    private final MediaType[] consumes;
+    private final String cacheControl;
 
     public DefaultResourceMethod(Method method) {
         this.method = method;
-        this.uriTemplate = new PathTemplate(Optional.ofNullable(method.getAnnotation(Path.class)).map(Path::value).orElse(""));
+        this.invoker = new MethodInvoker(method);
+        this.path = Optional.ofNullable(method.getAnnotation(Path.class)).map(Path::value).orElse("");
+        this.uriTemplate = new PathTemplate(path);
         this.httpMethod = Arrays.stream(method.getAnnotations())
                 .map(Annotation::annotationType)
                 .filter(a -> a.isAnnotationPresent(HttpMethod.class)).findFirst().map(it -> it.getAnnotation(HttpMethod.class).value()).get();
+        this.produces = mediaTypes(Optional.ofNullable(method.getAnnotation(Produces.class))
+                .or(() -> Optional.ofNullable(method.getDeclaringClass().getAnnotation(Produces.class))).map(Produces::value));
+        this.consumes = mediaTypes(Optional.ofNullable(method.getAnnotation(Consumes.class))
+                .or(() -> Optional.ofNullable(method.getDeclaringClass().getAnnotation(Consumes.class))).map(Consumes::value));
+        this.cacheControl = Optional.ofNullable(method.getAnnotation(Cached.class))
+                .map(it -> (it.isPrivate() ? "private, " : "") + "max-age=" + it.maxAge()).orElse(null);
+    }
+
+    /**
+     * 注解的每个值都可以是逗号分隔的多个类型, 没有注解时为 *&#47;*
+     */
+    private static MediaType[] mediaTypes(Optional<String[]> values) {
+        MediaType[] types = values.stream().flatMap(Arrays::stream).flatMap(value -> Arrays.stream(value.split(",")))
+                .map(Negotiation::mediaType).filter(Objects::nonNull).toArray(MediaType[]::new);
+        return types.length == 0 ? ANY : types;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    boolean isUnconstrained() {
+        return produces == ANY && consumes == ANY;
+    }
+
+    /**
+     * 没有 Content-Type 的请求可以由任意方法处理
+     */
+    boolean consumes(MediaType contentType) {
+        if (contentType == null) return true;
+        for (MediaType type : consumes) if (type.isCompatible(contentType)) return true;
+        return false;
+    }
+
+    /**
+     * 协商结果, score 由 q 值和产出类型的具体程度组成; 没有 @Produces 或协商出的类型含有通配时 type 为 null
+     */
+    record Produced(MediaType type, int score) {
+    }
+
+    /**
+     * 每个产出类型和 Accept 中兼容的一项取两者中更具体的类型, 它的 q 值由 Accept 中包含它的最具体的一项决定,
+     * 因此 q=0 的类型排除了更宽泛的通配; 返回得分最高的一个, 都不可接受时返回 null
+     */
+    Produced produces(List<Negotiation.Accepted> accept) {
+        MediaType selected = null;
+        int score = -1;
+        for (MediaType type : produces)
+            for (Negotiation.Accepted accepted : accept) {
+                if (accepted.quality() == 0 || !type.isCompatible(accepted.type())) continue;
+                MediaType candidate = Negotiation.specificity(accepted.type()) > Negotiation.specificity(type) ? accepted.type() : type;
+                int quality = Negotiation.quality(accept, candidate);
+                if (quality == 0) continue;
+                int current = quality * 4 + Negotiation.specificity(type);
+                if (current > score) {
+                    selected = candidate;
+                    score = current;
+                }
+            }
+        if (score < 0) return null;
+        boolean concrete = produces != ANY && !selected.isWildcardType() && !selected.isWildcardSubtype();
+        return new Produced(concrete ? selected : null, score);
     }
 
     @Override
     public GenericEntity<?> call(ResourceContext resourceContext, UriInfoBuilder builder) {
-        Object result = MethodInvoker.invoke(method, resourceContext, builder);
-        return result == null ? null : new GenericEntity<>(result, method.getGenericReturnType());
+        if (!path.isEmpty()) builder.addMatchedPath(null);
+        Object result = invoker.invoke(resourceContext, builder);
+        if (result == null) return null;
+        return new GenericEntity<>(result, method.getReturnType() == void.class ? CompletionStage.class : method.getGenericReturnType());
     }
 
 
@@ -177,6 +370,11 @@ class DefaultResourceMethod implements ResourceRouter.ResourceMethod {
         return httpMethod;
     }
 
+    @Override
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
     @Override
     public String toString() {
         return method.getDeclaringClass().getSimpleName() + "." + method.getName();
@@ -200,6 +398,59 @@ class HeadResourceMethod implements ResourceRouter.ResourceMethod {
         return HttpMethod.HEAD;
     }
 
+    @Override
+    public String getCacheControl() {
+        return target.getCacheControl();
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return target.getMediaType();
+    }
+
+    @Override
+    public UriTemplate getUriTemplate() {
+        return target.getUriTemplate();
+    }
+
+    @Override
+    public String toString() {
+        return target.toString();
+    }
+}
+
+/**
+ * 带有协商结果的资源方法, 和 Accept 一起放入 {@link DispatchCache}
+ */
+class NegotiatedResourceMethod implements ResourceRouter.ResourceMethod {
+    private final ResourceRouter.ResourceMethod target;
+    private final MediaType mediaType;
+
+    NegotiatedResourceMethod(ResourceRouter.ResourceMethod target, MediaType mediaType) {
+        this.target = target;
+        this.mediaType = mediaType;
+    }
+
+    @Override
+    public GenericEntity<?> call(ResourceContext resourceContext, UriInfoBuilder builder) {
+        return target.call(resourceContext, builder);
+    }
+
+    @Override
+    public String getHttpMethod() {
+        return target.getHttpMethod();
+    }
+
+    @Override
+    public String getCacheControl() {
+        return target.getCacheControl();
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
     @Override
     public UriTemplate getUriTemplate() {
         return target.getUriTemplate();
@@ -213,26 +464,28 @@ class HeadResourceMethod implements ResourceRouter.ResourceMethod {
 
 class SubResourceLocators {
 
-    private final List<ResourceRouter.Resource> rootResources;
+    private final RouteTrie<ResourceRouter.Resource> rootResources;
 
     public SubResourceLocators(Method[] methods) {
-        rootResources = Arrays.stream(methods).filter(method -> method.isAnnotationPresent(Path.class) &&
+        rootResources = new RouteTrie<>(Arrays.stream(methods).filter(method -> method.isAnnotationPresent(Path.class) &&
                         Arrays.stream(method.getAnnotations()).noneMatch(a -> a.annotationType().isAnnotationPresent(HttpMethod.class)))
-                .map(SubResourceLocator::new).collect(Collectors.toList());
+                .map(SubResourceLocator::new).collect(Collectors.toList()));
     }
 
-    public Optional<ResourceRouter.ResourceMethod> findSubResourceMethod(String path, String method, String[] mediaTypes, ResourceContext resourceContext, UriInfoBuilder builder) {
+    public Optional<ResourceRouter.ResourceMethod> findSubResourceMethod(String path, String method, Negotiation negotiation, ResourceContext resourceContext, UriInfoBuilder builder) {
         return UriHandlers.match(path, rootResources, (result, locator) ->
-                locator.match(result.get(), method, mediaTypes, resourceContext, builder)
+                locator.match(result.get(), method, negotiation, resourceContext, builder)
         );
     }
 
     static class SubResourceLocator implements ResourceRouter.Resource {
         private final Method method;
+        private final MethodInvoker invoker;
         private final UriTemplate uriTemplate;
 
         public SubResourceLocator(Method method) {
             this.method = method;
+            this.invoker = new MethodInvoker(method);
             uriTemplate = new PathTemplate(method.getAnnotation(Path.class).value());
         }
 
@@ -247,10 +500,10 @@ class SubResourceLocators {
         }
 
         @Override
-        public Optional<ResourceRouter.ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, String[] mediaType, ResourceContext resourceContext, UriInfoBuilder builder) {
+        public Optional<ResourceRouter.ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, Negotiation negotiation, ResourceContext resourceContext, UriInfoBuilder builder) {
             builder.addMatchedPathParameter(result.getMatchedPathParameters());
-            Object subResource = MethodInvoker.invoke(method, resourceContext, builder);
-            return new ResourceHandler(subResource, uriTemplate).match(excludePathParameter(result), httpMethod, mediaType, resourceContext, builder);
+            Object subResource = invoker.invoke(resourceContext, builder);
+            return new ResourceHandler(subResource, uriTemplate).match(excludePathParameter(result), httpMethod, negotiation, resourceContext, builder);
         }
 
         private static UriTemplate.MatchResult excludePathParameter(UriTemplate.MatchResult result) {
@@ -282,6 +535,20 @@ class SubResourceLocators {
 
 class ResourceHandler implements ResourceRouter.Resource {
 
+    /**
+     * 资源类上的资源方法和 sub-resource locator 只与类有关, 每个类只反射一次;
+     * sub-resource locator 每次请求返回的新实例复用同一份
+     */
+    private static final ClassValue<Model> models = new ClassValue<>() {
+        @Override
+        protected Model computeValue(Class<?> resourceClass) {
+            return new Model(new ResourceMethods(resourceClass.getMethods()), new SubResourceLocators(resourceClass.getMethods()));
+        }
+    };
+
+    private record Model(ResourceMethods resourceMethods, SubResourceLocators subResourceLocators) {
+    }
+
     private final UriTemplate uriTemplate;
     private final ResourceMethods resourceMethods;
     private final SubResourceLocators subResourceLocators;
@@ -303,17 +570,50 @@ class ResourceHandler implements ResourceRouter.Resource {
     private ResourceHandler(Class<?> resourceClass, UriTemplate uriTemplate, Function<ResourceContext, Object> resource) {
         this.uriTemplate = uriTemplate;
         this.resource = resource;
-        this.resourceMethods = new ResourceMethods(resourceClass.getMethods());
-        this.subResourceLocators = new SubResourceLocators(resourceClass.getMethods());
+        Model model = models.get(resourceClass);
+        this.resourceMethods = model.resourceMethods();
+        this.subResourceLocators = model.subResourceLocators();
     }
 
     @Override
-    public Optional<ResourceRouter.ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, String[] mediaType, ResourceContext resourceContext, UriInfoBuilder builder) {
-        String remaining = Optional.ofNullable(result.getRemaining()).orElse("");
+    public Optional<ResourceRouter.ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, Negotiation negotiation, ResourceContext resourceContext, UriInfoBuilder builder) {
+        String remaining = remaining(result);
+        bind(result, resourceContext, builder);
+        return resourceMethods.findResourceMethod(remaining, httpMethod, negotiation)
+                .or(() -> subResourceLocators.findSubResourceMethod(remaining, httpMethod, negotiation, resourceContext, builder));
+    }
+
+    /**
+     * 直接在本资源上找到资源方法时返回可缓存的路由, 需要经过 sub-resource locator 时返回 empty
+     */
+    Optional<DispatchCache.Route> route(UriTemplate.MatchResult result, String httpMethod, Negotiation negotiation) {
+        return resourceMethods.findResourceMethod(remaining(result), httpMethod, negotiation)
+                .map(method -> new DispatchCache.Route(this, method));
+    }
+
+    /**
+     * {@link #route} 没有找到资源方法之后, 只在 sub-resource locator 中查找
+     */
+    Optional<ResourceRouter.ResourceMethod> locate(UriTemplate.MatchResult result, String httpMethod, Negotiation negotiation, ResourceContext resourceContext, UriInfoBuilder builder) {
+        bind(result, resourceContext, builder);
+        return subResourceLocators.findSubResourceMethod(remaining(result), httpMethod, negotiation, resourceContext, builder);
+    }
+
+    void bind(UriTemplate.MatchResult result, ResourceContext resourceContext, UriInfoBuilder builder) {
         builder.addMatchedResource(resource.apply(resourceContext));
         builder.addMatchedPathParameter(result.getMatchedPathParameters());
-        return resourceMethods.findResourceMethod(remaining, httpMethod)
-                .or(() -> subResourceLocators.findSubResourceMethod(remaining, httpMethod, mediaType, resourceContext, builder));
+        builder.addMatchedPath(result.getRemaining());
+    }
+
+    private static String remaining(UriTemplate.MatchResult result) {
+        return Optional.ofNullable(result.getRemaining()).orElse("");
+    }
+
+    /**
+     * 本资源的模板和资源方法的模板, 用于归一 {@link DispatchCache} 的键
+     */
+    Stream<UriTemplate> templates() {
+        return Stream.concat(Stream.of(uriTemplate), resourceMethods.templates());
     }
 
     @Override
@@ -1,70 +1,503 @@
 package top.abosen.geektime.tdd.rest;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.HttpMethod;
 import jakarta.ws.rs.WebApplicationException;
-import jakarta.ws.rs.core.GenericEntity;
-import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.*;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.MessageBodyWriter;
 import jakarta.ws.rs.ext.Providers;
 import jakarta.ws.rs.ext.RuntimeDelegate;
+import top.abosen.geektime.tdd.di.RequestScope;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.zip.CRC32C;
 
 /**
  * @author qiubaisen
  * @date 2022/12/1
  */
 public class ResourceServlet extends HttpServlet {
+    /**
+     * 异步请求的默认超时 (毫秒)
+     */
+    public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private static final System.Logger logger = System.getLogger(ResourceServlet.class.getName());
 
     private final Runtime runtime;
     private final Providers providers;
+    private final Executor executor;
+    private final boolean entityTags;
+    private final ResponseCache cache;
+    private final Compression compression;
+    private final long timeout;
+    private volatile HeaderDelegates headerDelegates;
 
     public ResourceServlet(Runtime runtime) {
+        this(runtime, new Options());
+    }
+
+    /**
+     * 按 options 开启可选功能; 之后再修改 options 不影响已经创建的实例
+     */
+    public ResourceServlet(Runtime runtime, Options options) {
         this.runtime = runtime;
         this.providers = runtime.getProviders();
+        this.executor = options.executor;
+        this.entityTags = options.entityTags;
+        this.cache = options.cache;
+        this.compression = options.compression;
+        this.timeout = options.timeout;
+    }
+
+    /**
+     * {@link ResourceServlet} 的可选功能, 默认都不开启
+     */
+    public static final class Options {
+        private Executor executor;
+        private boolean entityTags;
+        private ResponseCache cache;
+        private Compression compression;
+        private long timeout = DEFAULT_TIMEOUT;
+
+        /**
+         * 每次请求交给 executor 执行, 容器线程在分派后立即释放; 为 null 时在容器线程上执行
+         *
+         * @see #virtualThreads()
+         */
+        public Options executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 为没有 ETag 的 GET / HEAD 响应按序列化后的内容生成 ETag, 需要先把实体写到内存中
+         */
+        public Options entityTags(boolean entityTags) {
+            this.entityTags = entityTags;
+            return this;
+        }
+
+        /**
+         * 在路由之前查找的 GET 响应缓存, 为 null 时不缓存
+         */
+        public Options cache(ResponseCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * 按 Accept-Encoding 压缩实体, 为 null 时不压缩
+         */
+        public Options compression(Compression compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * 交给 executor 执行或挂起的请求从开始异步到写出响应的超时 (毫秒), 超时后返回 503;
+         * 资源方法通过 {@link jakarta.ws.rs.container.AsyncResponse#setTimeout} 设置的超时需要比它短
+         */
+        public Options timeout(long timeout) {
+            if (timeout <= 0) throw new IllegalArgumentException("timeout: " + timeout);
+            this.timeout = timeout;
+            return this;
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程的 executor; 运行时不支持虚拟线程 (Java 21 以前) 时记录警告, 退回为有界的守护线程池:
+     * 每个处理器 8 个线程, 排队的任务满了之后拒绝, 由容器线程直接执行
+     */
+    public static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int size = java.lang.Runtime.getRuntime().availableProcessors() * 8;
+            logger.log(System.Logger.Level.WARNING, "virtual threads are not available on Java {0}, dispatching on at most {1} platform threads",
+                    System.getProperty("java.specification.version"), size);
+            AtomicInteger threads = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(size * 16), task -> {
+                Thread thread = new Thread(task, "resource-dispatch-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
     }
 
     @Override
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (cache != null && cached(req, resp)) return;
+        if (executor == null || !req.isAsyncSupported()) {
+            dispatch(req, resp, null);
+            return;
+        }
+        RequestScope.Request outer = RequestScope.current();
+        Async async = Async.start(req, timeout);
+        try {
+            executor.execute(() -> {
+                try (RequestScope.Attachment attachment = RequestScope.attach(outer)) {
+                    dispatch(req, resp, async);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dispatch(req, resp, async);
+        }
+    }
+
+    /**
+     * 命中缓存时同样评估条件请求, 不进入请求作用域和路由; 压缩后的实体在第一次需要时生成并放回缓存
+     */
+    private boolean cached(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        boolean head = HttpMethod.HEAD.equals(req.getMethod());
+        if (!head && !HttpMethod.GET.equals(req.getMethod()) || !ResponseCache.cacheable(req)) return false;
+        ResponseCache.Entry entry = cache.get(ResponseCache.Key.of(req));
+        if (entry == null || !entry.shared() && req.getHeader(HttpHeaders.COOKIE) != null) return false;
+        String contentType = entry.header(HttpHeaders.CONTENT_TYPE);
+        Compression.Encoding encoding = encoding(req, resp, head, contentType == null ? null : Negotiation.mediaType(contentType),
+                entry.header(HttpHeaders.CONTENT_ENCODING) != null, entry.body().remaining());
+        int precondition = Preconditions.evaluate(req, entry.header(HttpHeaders.ETAG), entry.header(HttpHeaders.LAST_MODIFIED));
+        if (precondition != Preconditions.PROCEED) {
+            write(resp, precondition, entry.headers(), null, head, encoding);
+            return true;
+        }
+        ByteBuffer body = encoding == null ? entry.body() : entry.variant(encoding);
+        if (body == null) body = cache.variant(entry, encoding, compression.compress(entry.body(), encoding));
+        write(resp, entry.status(), entry.headers(), body, head, encoding);
+        return true;
+    }
+
+    /**
+     * 可以压缩的响应都加上 Vary: Accept-Encoding; 返回协商出的编码, HEAD 请求或实体小于阈值时不压缩, 返回 null
+     */
+    private Compression.Encoding encoding(HttpServletRequest req, HttpServletResponse resp, boolean head, MediaType type, boolean encoded, long length) {
+        if (compression == null || encoded || !Compression.compressible(type)) return null;
+        resp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (head || (length >= 0 && length < compression.threshold())) return null;
+        return Compression.negotiate(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    /**
+     * 请求作用域和 {@link UriInfoBuilder} 都在执行分派的线程上创建; async 不为 null 时由 executor 执行, 响应写出后结束异步请求.
+     * 响应写出后回收 {@link RequestState}, 挂起的响应在完成时回收; 在队列中等到超时的请求不再分派
+     */
+    private void dispatch(HttpServletRequest req, HttpServletResponse resp, Async async) {
+        if (async != null && async.expired()) return;
         ResourceRouter router = runtime.getResourceRouter();
-        respond(resp, () -> router.dispatch(req, runtime.createResourceContext(req, resp)));
+        boolean suspended = false;
+        try (RequestScope.Request request = RequestScope.open()) {
+            suspended = respond(req, resp, () -> router.dispatch(req, runtime.createResourceContext(req, resp)), outbound -> suspend(req, resp, async, outbound), async);
+        } finally {
+            if (!suspended) finish(req, async);
+        }
+    }
+
+    /**
+     * 超时的请求已经由容器结束, 不再访问; 它的 {@link RequestState} 不放回线程
+     */
+    private static void finish(HttpServletRequest req, Async async) {
+        if (async != null && !async.respond()) return;
+        RequestState.release(req);
+        if (async != null) async.complete();
+    }
+
+    private void respond(HttpServletRequest req, HttpServletResponse resp, Supplier<OutboundResponse> response) {
+        respond(req, resp, response, null);
+    }
+
+    private void respond(HttpServletRequest req, HttpServletResponse resp, Supplier<OutboundResponse> response, Async async) {
+        respond(req, resp, response, stage -> {
+            throw new IllegalStateException("nested asynchronous response");
+        }, async);
     }
 
-    private void respond(HttpServletResponse resp, Supplier<OutboundResponse> response) {
+    /**
+     * @return 响应是否被挂起, 挂起时由 suspend 在完成后写出; 异步请求已经超时时不写出
+     */
+    private boolean respond(HttpServletRequest req, HttpServletResponse resp, Supplier<OutboundResponse> response, Consumer<OutboundResponse> suspend, Async async) {
         try {
-            respond(resp, response.get());
+            OutboundResponse outbound = response.get();
+            if (outbound.getGenericEntity() != null && outbound.getGenericEntity().getEntity() instanceof CompletionStage) {
+                suspend.accept(outbound);
+                return true;
+            }
+            if (async == null || async.respond()) respond(req, resp, outbound);
         } catch (WebApplicationException e) {
-            respond(resp, () -> (OutboundResponse) e.getResponse());
+            if (async == null || async.respond()) respond(req, resp, () -> (OutboundResponse) e.getResponse());
         } catch (Throwable throwable) {
-            respond(resp, () -> from(throwable));
+            if (async == null || async.respond()) respond(req, resp, () -> from(throwable));
+        }
+        return false;
+    }
+
+    /**
+     * 超时和写出响应只有先发生的一方生效: 开始写出之后不再超时, 超时之后不再写出, 也不再访问已经被容器回收的请求和响应
+     */
+    private static final class Async implements AsyncListener {
+        private static final int PENDING = 0, RESPONDING = 1, EXPIRED = 2;
+
+        private final AsyncContext context;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private Async(AsyncContext context) {
+            this.context = context;
+        }
+
+        static Async start(HttpServletRequest req, long timeout) {
+            AsyncContext context = req.startAsync();
+            Async async = new Async(context);
+            context.setTimeout(timeout);
+            context.addListener(async);
+            return async;
+        }
+
+        /**
+         * @return 可以写出响应, 已经超时时返回 false
+         */
+        boolean respond() {
+            return state.compareAndSet(PENDING, RESPONDING) || state.get() == RESPONDING;
+        }
+
+        boolean expired() {
+            return state.get() == EXPIRED;
+        }
+
+        void complete() {
+            context.complete();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (!state.compareAndSet(PENDING, EXPIRED)) return;
+            ((HttpServletResponse) context.getResponse()).setStatus(Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+            context.complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * 资源方法返回 {@link CompletionStage} 或使用 {@link jakarta.ws.rs.container.Suspended} 时, 释放容器线程, 在完成时写出响应;
+     * 请求不支持异步时在当前线程等待完成.
+     * 完成回调在请求作用域之外执行; 已经交给 executor 执行时沿用它的 {@link AsyncContext}.
+     * 包装 {@link CompletionStage} 的响应上的响应头和类型 (如 {@link Cached} 的 Cache-Control) 加到完成后的 200 响应上
+     */
+    private void suspend(HttpServletRequest req, HttpServletResponse resp, Async started, OutboundResponse response) {
+        GenericEntity entity = response.getGenericEntity();
+        CompletionStage<?> stage = (CompletionStage<?>) entity.getEntity();
+        Type type = entity.getType() instanceof ParameterizedType parameterized ? parameterized.getActualTypeArguments()[0] : null;
+        if (started == null && !req.isAsyncSupported()) {
+            try {
+                complete(req, resp, response, stage.toCompletableFuture().handle((value, throwable) -> new Completion(value, throwable)).join(), type, null);
+            } finally {
+                RequestState.release(req);
+            }
+            return;
         }
+        Async async = started != null ? started : Async.start(req, timeout);
+        stage.whenComplete((value, throwable) -> {
+            try {
+                complete(req, resp, response, new Completion(value, throwable), type, async);
+            } finally {
+                finish(req, async);
+            }
+        });
+    }
+
+    private record Completion(Object value, Throwable throwable) {
     }
 
-    private void respond(HttpServletResponse resp, OutboundResponse response) throws IOException {
+    private void complete(HttpServletRequest req, HttpServletResponse resp, OutboundResponse suspended, Completion completion, Type type, Async async) {
+        respond(req, resp, () -> {
+            Throwable throwable = completion.throwable() instanceof CompletionException e && e.getCause() != null ? e.getCause() : completion.throwable();
+            if (throwable instanceof RuntimeException e) throw e;
+            if (throwable != null) throw new RuntimeException(throwable);
+            Object value = completion.value();
+            if (value instanceof OutboundResponse outbound) return outbound;
+            if (value == null) return (OutboundResponse) Response.noContent().build();
+            Response.ResponseBuilder builder = Response.ok(new GenericEntity<>(value, type instanceof Class<?> || type instanceof ParameterizedType ? type : value.getClass()));
+            if (suspended.getMediaType() != null) builder.type(suspended.getMediaType());
+            suspended.getHeaders().forEach((name, values) -> {
+                if (!name.equalsIgnoreCase(HttpHeaders.CONTENT_TYPE)) for (Object header : values) builder.header(name, header);
+            });
+            return (OutboundResponse) builder.build();
+        }, async);
+    }
+
+    /**
+     * 成功的 GET / HEAD 响应先按 ETag / Last-Modified 评估条件请求, 304 和 412 在写出实体之前返回; HEAD 请求只计算 Content-Length, 不写出实体.
+     * 其他方法的资源方法已经执行, 副作用已经产生, 不再评估条件请求, 由资源方法在执行前通过 @Context {@link Request#evaluatePreconditions} 判断;
+     * 成功时使同一路径的缓存失效.
+     * 需要生成 ETag 或放入缓存时先把实体写到内存中
+     */
+    private void respond(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response) throws IOException {
+        GenericEntity entity = response.getGenericEntity();
+        boolean head = HttpMethod.HEAD.equals(req.getMethod());
+        boolean safe = head || HttpMethod.GET.equals(req.getMethod());
+        if (Response.Status.Family.familyOf(response.getStatus()) == Response.Status.Family.SUCCESSFUL) {
+            MultivaluedMap<String, Object> headers = response.getHeaders();
+            if (cache != null && !safe && !HttpMethod.OPTIONS.equals(req.getMethod()))
+                cache.invalidate(req.getServletPath());
+            int precondition = safe ? Preconditions.evaluate(req, headers.getFirst(HttpHeaders.ETAG), headers.getFirst(HttpHeaders.LAST_MODIFIED))
+                    : Preconditions.PROCEED;
+            if (precondition != Preconditions.PROCEED) {
+                resp.setStatus(precondition);
+                headers(resp, response);
+                return;
+            }
+            boolean tag = entityTags && safe && entity != null && !headers.containsKey(HttpHeaders.ETAG) && !Contents.direct(entity.getEntity());
+            long maxAge = maxAge(req, response, entity);
+            if (tag || maxAge > 0) {
+                buffered(req, resp, response, entity, head, tag, maxAge);
+                return;
+            }
+        }
         resp.setStatus(response.getStatus());
         headers(resp, response);
-        body(resp, response, response.getGenericEntity());
+        if (head) length(resp, response, entity);
+        else body(req, resp, response, entity);
     }
 
-    private void body(HttpServletResponse resp, OutboundResponse response, GenericEntity entity) throws IOException {
+    /**
+     * 可以放入 {@link ResponseCache} 的 GET 响应的有效期 (秒), 不能缓存时返回 -1;
+     * 带有 Cookie 的请求只缓存 public 的响应, Vary 含有键以外的请求头时不缓存
+     */
+    private long maxAge(HttpServletRequest req, OutboundResponse response, GenericEntity entity) {
+        if (cache == null || entity == null || response.getStatus() != Response.Status.OK.getStatusCode()
+            || !HttpMethod.GET.equals(req.getMethod()) || Contents.direct(entity.getEntity()) || !ResponseCache.cacheable(req)) return -1;
+        MultivaluedMap<String, Object> headers = response.getHeaders();
+        Object cacheControl = headers.getFirst(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl == null || headers.containsKey(HttpHeaders.SET_COOKIE)) return -1;
+        String directives = delegates().toString(cacheControl);
+        if (req.getHeader(HttpHeaders.COOKIE) != null && !ResponseCache.shared(directives)) return -1;
+        List<Object> vary = headers.get(HttpHeaders.VARY);
+        if (vary != null) for (Object value : vary)
+            if (!ResponseCache.keyed(delegates().toString(value), headers.containsKey(HttpHeaders.CONTENT_ENCODING))) return -1;
+        return ResponseCache.maxAge(directives);
+    }
+
+    /**
+     * 生成的 ETag 由长度和 CRC32C 组成, 不能保证内容不同时一定不同, 因此是弱 ETag: 只用于 If-None-Match, 不满足 If-Match 的强比较
+     */
+    private void buffered(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response, GenericEntity entity,
+                          boolean head, boolean tag, long maxAge) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        serialize(response, entity, buffer);
+        byte[] content = buffer.toByteArray();
+        String[] headers = delegates().toStrings(response.getHeaders(), tag ? 1 : 0);
+        if (tag) {
+            CRC32C crc = new CRC32C();
+            crc.update(content);
+            headers[headers.length - 2] = HttpHeaders.ETAG;
+            headers[headers.length - 1] = "W/\"" + Integer.toHexString(content.length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+        ResponseCache.Entry entry = maxAge > 0 ? cache.put(ResponseCache.Key.of(req), response.getStatus(), headers, content, maxAge) : null;
+        Compression.Encoding encoding = encoding(req, resp, head, response.getMediaType(), response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING), content.length);
+        int precondition = tag ? Preconditions.evaluate(req, headers[headers.length - 1], response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED))
+                : Preconditions.PROCEED;
+        if (precondition != Preconditions.PROCEED) {
+            write(resp, precondition, headers, null, head, encoding);
+            return;
+        }
+        ByteBuffer body = ByteBuffer.wrap(content);
+        if (encoding != null) {
+            byte[] compressed = compression.compress(body, encoding);
+            body = entry == null ? ByteBuffer.wrap(compressed) : cache.variant(entry, encoding, compressed);
+        }
+        write(resp, response.getStatus(), headers, body, head, encoding);
+    }
+
+    /**
+     * 写出已经序列化的响应, body 为 null 时不写出实体和 Content-Length; 按 encoding 压缩过的实体加上 Content-Encoding 和对应的 ETag
+     */
+    private static void write(HttpServletResponse resp, int status, String[] headers, ByteBuffer body, boolean head, Compression.Encoding encoding) throws IOException {
+        resp.setStatus(status);
+        for (int i = 0; i < headers.length; i += 2)
+            resp.addHeader(headers[i], encoding != null && headers[i].equalsIgnoreCase(HttpHeaders.ETAG) ? Compression.tag(headers[i + 1], encoding) : headers[i + 1]);
+        if (encoding != null) resp.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.token);
+        if (body == null) return;
+        if (head) resp.setContentLength(body.remaining());
+        else Contents.write(body, resp);
+    }
+
+    private void length(HttpServletResponse resp, OutboundResponse response, GenericEntity entity) throws IOException {
         if (entity == null) return;
-        MessageBodyWriter writer = providers.getMessageBodyWriter(entity.getRawType(), entity.getType(), response.getAnnotations(), response.getMediaType());
-        writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(), response.getAnnotations(), response.getMediaType(), response.getHeaders(), resp.getOutputStream());
+        long length = Contents.length(entity.getEntity());
+        if (length < 0) {
+            Contents.Counter counter = new Contents.Counter();
+            serialize(response, entity, counter);
+            length = counter.count();
+        }
+        resp.setContentLengthLong(length);
     }
 
-    private static void headers(HttpServletResponse resp, OutboundResponse response) {
-        MultivaluedMap<String, Object> headers = response.getHeaders();
-        for (String name : headers.keySet()) {
-            for (Object value : headers.get(name)) {
-                RuntimeDelegate.HeaderDelegate headerDelegate = RuntimeDelegate.getInstance().createHeaderDelegate(value.getClass());
-                resp.addHeader(name, headerDelegate.toString(value));
-            }
+    /**
+     * 文件和缓冲区直接写出; 其他实体需要压缩时经过 {@link Compression.Output}, 长度未知, 超过阈值才开始压缩
+     */
+    private void body(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response, GenericEntity entity) throws IOException {
+        if (entity == null) return;
+        if (Contents.direct(entity.getEntity()) && Contents.write(entity.getEntity(), resp)) return;
+        Compression.Encoding encoding = encoding(req, resp, false, response.getMediaType(), response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING), -1);
+        if (encoding == null) {
+            serialize(response, entity, resp.getOutputStream());
+            return;
+        }
+        try (Compression.Output output = compression.output(resp, encoding)) {
+            serialize(response, entity, output);
+        }
+    }
+
+    private void serialize(OutboundResponse response, GenericEntity entity, OutputStream output) throws IOException {
+        if (entity.getEntity() instanceof StreamingOutput streaming) {
+            streaming.write(output);
+            return;
         }
+        MessageBodyWriter writer = providers.getMessageBodyWriter(entity.getRawType(), entity.getType(), response.getAnnotations(), response.getMediaType());
+        writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(), response.getAnnotations(), response.getMediaType(), response.getHeaders(), output);
+    }
+
+    /**
+     * 测试和嵌入场景会替换 {@link RuntimeDelegate}, 缓存跟随当前实例重建
+     */
+    private HeaderDelegates delegates() {
+        RuntimeDelegate runtimeDelegate = RuntimeDelegate.getInstance();
+        HeaderDelegates delegates = headerDelegates;
+        if (delegates == null || delegates.getRuntimeDelegate() != runtimeDelegate)
+            headerDelegates = delegates = new HeaderDelegates(runtimeDelegate);
+        return delegates;
+    }
+
+    private void headers(HttpServletResponse resp, OutboundResponse response) {
+        delegates().write(resp, response.getHeaders());
     }
 
     private OutboundResponse from(Throwable throwable) {
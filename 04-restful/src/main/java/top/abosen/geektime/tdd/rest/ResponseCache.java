@@ -0,0 +1,479 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.HttpHeaders;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * GET 响应的服务端缓存, 由 {@link ResourceServlet} 在路由之前按 (路径, 查询参数, Accept) 查找, 命中时直接写出序列化好的响应
+ * <p>
+ * 只缓存 Cache-Control 带有 max-age / s-maxage, 且没有 no-store / no-cache / private 的 200 响应, 有效期取自 s-maxage 或 max-age;
+ * 请求带有 Authorization 或 Cache-Control: no-cache / no-store 时不使用缓存; 带有 Cookie 的请求只使用和放入 Cache-Control 为 public 的响应.
+ * 键中的请求头只有 Accept, 响应的 Vary 含有 Accept 和 Accept-Encoding 以外的请求头时不缓存. 成功的 PUT / POST / DELETE / PATCH 使同一路径的缓存失效,
+ * 也可以通过 {@link #invalidate} / {@link #invalidateAll} 主动失效
+ * <p>
+ * 实体保存在堆外的 direct {@link ByteBuffer} 中, 按 {@link Compression} 压缩后的版本在第一次需要时加入同一条目.
+ * 总字节数超出容量时按 W-TinyLFU 淘汰: 新条目先进入占容量 1% 的窗口 LRU, 移出窗口时
+ * 与主区 (probation / protected 两段 LRU) 的淘汰候选比较 {@link FrequencySketch} 估计的访问频率, 频率高的留下
+ *
+ * @author qiubaisen
+ * @date 2023/3/1
+ */
+public class ResponseCache {
+    public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private final long capacity;
+    private final long windowCapacity;
+    private final long protectedCapacity;
+    private final LongSupplier ticker;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Queue[] queues = {new Queue(), new Queue(), new Queue()};
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 缓存的响应头和实体的总字节数
+     */
+    public ResponseCache(long capacity) {
+        this(capacity, System::nanoTime);
+    }
+
+    ResponseCache(long capacity, LongSupplier ticker) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity: " + capacity);
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.protectedCapacity = (capacity - windowCapacity) * 4 / 5;
+        this.ticker = ticker;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(16, capacity / 1024)));
+    }
+
+    record Key(String path, String query, String accept) {
+        static Key of(HttpServletRequest request) {
+            return new Key(request.getServletPath(), request.getQueryString(), String.join(",", Collections.list(request.getHeaders(HttpHeaders.ACCEPT))));
+        }
+    }
+
+    /**
+     * 序列化后的响应, headers 为依次排列的名字和值
+     */
+    static final class Entry {
+        private final Key key;
+        private final int status;
+        private final String[] headers;
+        private final ByteBuffer body;
+        private final long expires;
+        private final boolean shared;
+        private final AtomicReferenceArray<ByteBuffer> variants = new AtomicReferenceArray<>(Compression.Encoding.values().length);
+        private long weight;
+
+        private Entry previous, next;
+        private int queue = -1;
+
+        Entry(Key key, int status, String[] headers, byte[] content, long expires) {
+            this.key = key;
+            this.status = status;
+            this.headers = headers;
+            this.body = ByteBuffer.allocateDirect(content.length).put(content).flip();
+            this.expires = expires;
+            this.shared = ResponseCache.shared(header(HttpHeaders.CACHE_CONTROL));
+            long weight = content.length;
+            for (String header : headers) weight += header.length();
+            this.weight = weight;
+        }
+
+        int status() {
+            return status;
+        }
+
+        String[] headers() {
+            return headers;
+        }
+
+        /**
+         * 共享的缓冲区, 调用方只能读取它的 slice / duplicate
+         */
+        ByteBuffer body() {
+            return body;
+        }
+
+        /**
+         * 压缩后的实体, 还没有生成时为 null
+         */
+        ByteBuffer variant(Compression.Encoding encoding) {
+            return variants.get(encoding.ordinal());
+        }
+
+        /**
+         * Cache-Control 为 public, 可以响应带有 Cookie 的请求
+         */
+        boolean shared() {
+            return shared;
+        }
+
+        String header(String name) {
+            for (int i = 0; i < headers.length; i += 2) if (headers[i].equalsIgnoreCase(name)) return headers[i + 1];
+            return null;
+        }
+    }
+
+    /**
+     * 请求是否可以读写缓存; HEAD 请求使用 GET 的缓存
+     */
+    static boolean cacheable(HttpServletRequest request) {
+        if (request.getHeader(HttpHeaders.AUTHORIZATION) != null) return false;
+        String cacheControl = request.getHeader(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl == null) return true;
+        String directives = cacheControl.toLowerCase(Locale.ROOT);
+        return !directives.contains("no-cache") && !directives.contains("no-store");
+    }
+
+    /**
+     * 响应的 Vary 是否只含有键能区分的请求头: Accept 在键中, Accept-Encoding 由 {@link Compression} 按条目中的压缩版本区分;
+     * 资源方法自己设置了 Content-Encoding (encoded 为 true) 时实体不再按 Accept-Encoding 区分
+     */
+    static boolean keyed(String vary, boolean encoded) {
+        if (vary == null) return true;
+        for (String header : vary.split(",")) {
+            String name = header.trim();
+            if (name.isEmpty() || name.equalsIgnoreCase(HttpHeaders.ACCEPT)) continue;
+            if (!encoded && name.equalsIgnoreCase(HttpHeaders.ACCEPT_ENCODING)) continue;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cache-Control 中是否有 public
+     */
+    static boolean shared(String cacheControl) {
+        if (cacheControl == null) return false;
+        for (String directive : cacheControl.split(","))
+            if (directive.trim().equalsIgnoreCase("public")) return true;
+        return false;
+    }
+
+    /**
+     * 按响应的 Cache-Control 计算有效期, 不能缓存时返回 -1
+     */
+    static long maxAge(String cacheControl) {
+        if (cacheControl == null) return -1;
+        long maxAge = -1, sharedMaxAge = -1;
+        for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+            String name = directive.trim(), value = null;
+            int equals = name.indexOf('=');
+            if (equals > 0) {
+                value = name.substring(equals + 1).trim();
+                name = name.substring(0, equals).trim();
+            }
+            switch (name) {
+                case "no-store", "no-cache", "private" -> {
+                    return -1;
+                }
+                case "max-age" -> maxAge = seconds(value);
+                case "s-maxage" -> sharedMaxAge = seconds(value);
+                default -> {
+                }
+            }
+        }
+        return sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+    }
+
+    private static long seconds(String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.startsWith("\"") && value.endsWith("\"") && value.length() >= 2 ? value.substring(1, value.length() - 1) : value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 过期的条目在这里移除; 频率在锁外累计, 锁被占用时只放弃调整顺序
+     */
+    Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires - ticker.getAsLong() <= 0) {
+            remove(entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        sketch.increment(key.hashCode());
+        if (lock.tryLock()) {
+            try {
+                if (entry.queue >= 0) access(entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return entry;
+    }
+
+    Entry put(Key key, int status, String[] headers, byte[] content, long maxAge) {
+        if (maxAge <= 0) return null;
+        Entry entry = new Entry(key, status, headers, content, ticker.getAsLong() + TimeUnit.SECONDS.toNanos(maxAge));
+        if (entry.weight > capacity - windowCapacity) return null;
+        lock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            Entry previous = entries.put(key, entry);
+            if (previous != null) unlink(previous);
+            queues[WINDOW].addLast(entry, WINDOW);
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        return entry;
+    }
+
+    /**
+     * 把压缩后的实体加入条目, 计入条目的大小; 条目已经被移除时只返回压缩后的实体
+     */
+    ByteBuffer variant(Entry entry, Compression.Encoding encoding, byte[] content) {
+        ByteBuffer variant = ByteBuffer.allocateDirect(content.length).put(content).flip();
+        lock.lock();
+        try {
+            if (entry.queue < 0 || !entry.variants.compareAndSet(encoding.ordinal(), null, variant)) return variant;
+            entry.weight += content.length;
+            queues[entry.queue].weight += content.length;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        return variant;
+    }
+
+    /**
+     * 移除路径下所有查询参数和 Accept 的缓存
+     */
+    public void invalidate(String path) {
+        for (Entry entry : entries.values()) if (entry.key.path().equals(path)) remove(entry);
+    }
+
+    public void invalidateAll() {
+        for (Entry entry : entries.values()) remove(entry);
+    }
+
+    private void remove(Entry entry) {
+        lock.lock();
+        try {
+            if (entries.remove(entry.key, entry)) unlink(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.queue >= 0) queues[entry.queue].remove(entry);
+    }
+
+    /**
+     * 窗口内移到队尾; probation 中再次访问的条目升入 protected, protected 超出容量时把最久未用的条目降回 probation
+     */
+    private void access(Entry entry) {
+        switch (entry.queue) {
+            case WINDOW, PROTECTED -> queues[entry.queue].moveToLast(entry);
+            case PROBATION -> {
+                queues[PROBATION].remove(entry);
+                queues[PROTECTED].addLast(entry, PROTECTED);
+                while (queues[PROTECTED].weight > protectedCapacity) {
+                    Entry demoted = queues[PROTECTED].first;
+                    queues[PROTECTED].remove(demoted);
+                    queues[PROBATION].addLast(demoted, PROBATION);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 窗口超出容量时, 移出的条目作为候选进入 probation; 总量超出容量时, 候选与主区最久未用的条目比较频率, 淘汰较低的一方
+     */
+    private void evict() {
+        Entry candidate = null;
+        while (queues[WINDOW].weight > windowCapacity) {
+            Entry moved = queues[WINDOW].first;
+            queues[WINDOW].remove(moved);
+            queues[PROBATION].addLast(moved, PROBATION);
+            if (candidate == null) candidate = moved;
+        }
+        while (weightedSize() > capacity) {
+            Entry victim = queues[PROBATION].first != null ? queues[PROBATION].first : queues[PROTECTED].first;
+            if (victim == candidate || candidate == null) {
+                if (victim == candidate) candidate = candidate.next;
+                evict(victim);
+                continue;
+            }
+            if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                evict(victim);
+            } else {
+                Entry rejected = candidate;
+                candidate = candidate.next;
+                evict(rejected);
+            }
+        }
+    }
+
+    private void evict(Entry entry) {
+        unlink(entry);
+        if (entries.remove(entry.key, entry)) evictions.increment();
+    }
+
+    int frequency(Key key) {
+        return sketch.frequency(key.hashCode());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 当前缓存的响应头和实体的总字节数
+     */
+    public long weightedSize() {
+        return queues[WINDOW].weight + queues[PROBATION].weight + queues[PROTECTED].weight;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long hits = hits(), total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 串在条目上的双向链表, 头部最久未用
+     */
+    private static final class Queue {
+        private Entry first, last;
+        private long weight;
+
+        void addLast(Entry entry, int queue) {
+            entry.queue = queue;
+            entry.previous = last;
+            entry.next = null;
+            if (last == null) first = entry;
+            else last.next = entry;
+            last = entry;
+            weight += entry.weight;
+        }
+
+        void remove(Entry entry) {
+            if (entry.previous == null) first = entry.next;
+            else entry.previous.next = entry.next;
+            if (entry.next == null) last = entry.previous;
+            else entry.next.previous = entry.previous;
+            entry.previous = entry.next = null;
+            entry.queue = -1;
+            weight -= entry.weight;
+        }
+
+        void moveToLast(Entry entry) {
+            if (entry == last) return;
+            int queue = entry.queue;
+            remove(entry);
+            addLast(entry, queue);
+        }
+    }
+
+    /**
+     * 4 行的 Count-Min Sketch, 每个计数 4 位, 最大 15; 累计 10 倍宽度次后所有计数减半, 使频率随时间衰减.
+     * 每 16 个计数打包在一个 long 中, 用 CAS 累加, 不需要持有缓存的锁; 并发的累加和减半之间只影响估计的精度
+     */
+    static final class FrequencySketch {
+        private static final int[] SEEDS = {0x97cb3127, 0xb7e15163, 0x9e3779b9, 0x85ebca6b};
+        private static final long HALF = 0x7777777777777777L;
+
+        private final AtomicLongArray counters;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+
+        FrequencySketch(int width) {
+            int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+            this.counters = new AtomicLongArray(size * SEEDS.length / 16);
+            this.mask = size - 1;
+            this.sampleSize = size * 10;
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                frequency = Math.min(frequency, (int) (counters.get(index >>> 4) >>> shift(index)) & 15);
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) added |= incrementAt(index(hash, i));
+            if (added && additions.incrementAndGet() == sampleSize) {
+                reset();
+                additions.addAndGet(-sampleSize / 2);
+            }
+        }
+
+        private boolean incrementAt(int index) {
+            int shift = shift(index);
+            while (true) {
+                long current = counters.get(index >>> 4);
+                if ((current >>> shift & 15) == 15) return false;
+                if (counters.compareAndSet(index >>> 4, current, current + (1L << shift))) return true;
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length(); i++) {
+                long current;
+                do current = counters.get(i);
+                while (!counters.compareAndSet(i, current, current >>> 1 & HALF));
+            }
+        }
+
+        private static int shift(int index) {
+            return (index & 15) << 2;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 16;
+            return row * (mask + 1) + (h & mask);
+        }
+    }
+}
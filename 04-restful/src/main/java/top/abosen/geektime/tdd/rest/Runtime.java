@@ -13,12 +13,20 @@ import top.abosen.geektime.tdd.di.Context;
 public interface Runtime {
     Providers getProviders();
 
+    /**
+     * 在请求作用域内调用, 期间获取的 {@link top.abosen.geektime.tdd.di.RequestScoped} 组件在响应写出后释放
+     */
     ResourceContext createResourceContext(HttpServletRequest request, HttpServletResponse response);
 
     Context getApplicationContext();
 
     ResourceRouter getResourceRouter();
 
-     UriInfoBuilder createUriInfoBuilder(HttpServletRequest request);
+    /**
+     * 默认使用按线程复用的 {@link RequestState}, 由 {@link ResourceServlet} 在响应写出后回收
+     */
+    default UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+        return RequestState.acquire(request);
+    }
 
 }
@@ -0,0 +1,134 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.container.TimeoutHandler;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 注入到 {@link jakarta.ws.rs.container.Suspended} 参数的 {@link AsyncResponse}, resume / cancel 的结果由 {@link #stage()} 交给 {@link ResourceServlet} 写出
+ * <p>
+ * 只支持 {@link CompletionCallback}, 不支持 {@link jakarta.ws.rs.container.ConnectionCallback}
+ *
+ * @author qiubaisen
+ * @date 2023/2/25
+ */
+class SuspendedResponse implements AsyncResponse {
+    private final CompletableFuture<Object> future = new CompletableFuture<>();
+    private final AtomicLong timeouts = new AtomicLong();
+    private volatile TimeoutHandler timeoutHandler;
+    private volatile boolean cancelled;
+
+    CompletionStage<Object> stage() {
+        return future;
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        return future.complete(response);
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        return future.completeExceptionally(response);
+    }
+
+    @Override
+    public boolean cancel() {
+        return cancel(null);
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel((Object) retryAfter);
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel((Object) retryAfter);
+    }
+
+    private synchronized boolean cancel(Object retryAfter) {
+        if (future.isDone()) return cancelled;
+        Response.ResponseBuilder builder = Response.status(Response.Status.SERVICE_UNAVAILABLE);
+        if (retryAfter != null) builder.header(HttpHeaders.RETRY_AFTER, retryAfter);
+        cancelled = true;
+        return future.complete(builder.build());
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !future.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        if (future.isDone()) return false;
+        long timeout = timeouts.incrementAndGet();
+        CompletableFuture.delayedExecutor(time, unit).execute(() -> {
+            if (timeouts.get() == timeout && !future.isDone()) timeout();
+        });
+        return true;
+    }
+
+    private void timeout() {
+        TimeoutHandler handler = timeoutHandler;
+        if (handler != null) handler.handleTimeout(this);
+        else future.completeExceptionally(new ServiceUnavailableException());
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+        this.timeoutHandler = handler;
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        try {
+            return register(callback.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        Map<Class<?>, Collection<Class<?>>> registered = new HashMap<>();
+        registered.put(callback, register(callback));
+        for (Class<?> other : callbacks) registered.put(other, register(other));
+        return registered;
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        if (!(callback instanceof CompletionCallback completion)) return Set.of();
+        future.whenComplete((response, throwable) -> completion.onComplete(throwable));
+        return Set.of(CompletionCallback.class);
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        Map<Class<?>, Collection<Class<?>>> registered = new HashMap<>();
+        registered.put(callback.getClass(), register(callback));
+        for (Object other : callbacks) registered.put(other.getClass(), register(other));
+        return registered;
+    }
+}
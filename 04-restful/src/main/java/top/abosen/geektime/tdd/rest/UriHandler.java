@@ -1,7 +1,6 @@
 package top.abosen.geektime.tdd.rest;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -15,28 +14,29 @@ interface UriHandler {
 
 class UriHandlers {
 
-    public static <T extends UriHandler> Optional<T> match(String path, List<T> handlers,
+    public static <T extends UriHandler> Optional<T> match(String path, RouteTrie<T> handlers,
                                                            Function<UriTemplate.MatchResult, Boolean> matchFunction) {
         return matched(path, handlers, matchFunction).map(Result::handler);
     }
 
     public static <T extends UriHandler, R> Optional<R> match(
-            String path, List<T> handlers,
+            String path, RouteTrie<T> handlers,
             BiFunction<Optional<UriTemplate.MatchResult>, T, Optional<R>> mapper
     ) {
         return matched(path, handlers, r -> true).flatMap(r -> mapper.apply(r.matched, r.handler));
     }
 
-    public static <T extends UriHandler> Optional<T> match(String path, List<T> handlers) {
+    public static <T extends UriHandler> Optional<T> match(String path, RouteTrie<T> handlers) {
         return match(path, handlers, r -> true);
     }
 
-    private static <T extends UriHandler> Optional<Result<T>> matched(String path, List<T> handlers, Function<UriTemplate.MatchResult, Boolean> matchFunction) {
-        return handlers.stream()
-                .map(handler -> new Result<>(handler.getUriTemplate().match(path), handler, matchFunction))
-                .filter(Result::isMatched)
-                .sorted()
-                .findFirst();
+    private static <T extends UriHandler> Optional<Result<T>> matched(String path, RouteTrie<T> handlers, Function<UriTemplate.MatchResult, Boolean> matchFunction) {
+        Result<T> best = null;
+        for (T handler : handlers.candidates(path)) {
+            Result<T> result = new Result<>(handler.getUriTemplate().match(path), handler, matchFunction);
+            if (result.isMatched() && (best == null || result.compareTo(best) < 0)) best = result;
+        }
+        return Optional.ofNullable(best);
     }
 
     private record Result<T extends UriHandler>(
@@ -53,4 +53,62 @@ class UriHandlers {
             return matched.flatMap(x -> o.matched.map(x::compareTo)).orElse(0);
         }
     }
-}
\ No newline at end of file
+}
+
+/**
+ * 按模板的字面量路径段建立的前缀树, 用于在正则匹配前筛掉不可能匹配的 handler
+ * <p>
+ * 每个 handler 挂在其 {@link UriTemplate#literalSegments()} 对应的节点上, 查找时沿请求路径逐段下行,
+ * 收集经过的所有节点上的 handler 并按注册顺序返回; 最终仍由正则匹配和 {@link UriTemplate.MatchResult#compareTo}
+ * 决定优先级, 因此结果与逐个扫描全部 handler 一致
+ *
+ * @author qiubaisen
+ * @date 2023/2/20
+ */
+class RouteTrie<T extends UriHandler> {
+    private static final RouteTrie<?> EMPTY = new RouteTrie<>(List.of());
+
+    private final List<T> handlers;
+    private final Node root = new Node();
+
+    RouteTrie(List<T> handlers) {
+        this.handlers = List.copyOf(handlers);
+        for (int i = 0; i < this.handlers.size(); i++) {
+            Node node = root;
+            for (String segment : this.handlers.get(i).getUriTemplate().literalSegments())
+                node = node.children.computeIfAbsent(segment, it -> new Node());
+            node.handlers.add(i);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends UriHandler> RouteTrie<T> empty() {
+        return (RouteTrie<T>) EMPTY;
+    }
+
+    List<T> handlers() {
+        return handlers;
+    }
+
+    List<T> candidates(String path) {
+        if (root.children.isEmpty()) return handlers;
+        List<Integer> found = new ArrayList<>(root.handlers);
+        Node node = root;
+        int start = 1;
+        while (path.startsWith("/", start - 1)) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = path.length();
+            node = node.children.get(path.substring(start, end));
+            if (node == null) break;
+            found.addAll(node.handlers);
+            start = end + 1;
+        }
+        Collections.sort(found);
+        return found.stream().map(handlers::get).toList();
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<Integer> handlers = new ArrayList<>();
+    }
+}
@@ -1,5 +1,6 @@
 package top.abosen.geektime.tdd.rest;
 
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.UriInfo;
 
 import java.util.Map;
@@ -20,5 +21,18 @@ public interface UriInfoBuilder {
     void addMatchedResource(Object resource);
     void addMatchedPathParameter(Map<String,String> pathParameter);
 
+    /**
+     * 记录匹配到的 URI, 即请求路径去掉 remaining 之后的部分; remaining 为 null 时匹配了整个路径
+     */
+    default void addMatchedPath(String remaining) {
+    }
+
     UriInfo createUriInfo();
+
+    /**
+     * 注入到 @Context {@link Request} 参数的请求, 不支持时为 null
+     */
+    default Request createRequest() {
+        return null;
+    }
 }
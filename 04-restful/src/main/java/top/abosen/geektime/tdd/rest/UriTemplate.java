@@ -19,18 +19,63 @@ interface UriTemplate {
 
     Optional<MatchResult> match(String path);
 
+    /**
+     * 模板开头完整的字面量路径段, 匹配的路径必然以这些段开头; 无法确定时返回空列表
+     */
+    default List<String> literalSegments() {
+        return List.of();
+    }
+
+    /**
+     * 按 '/' 切分的全部路径段, 整段的默认变量记为 {@value #VARIABLE_SEGMENT}; 有路径段不是字面量也不是整段的默认变量时返回 null
+     */
+    default String[] segments() {
+        return null;
+    }
+
+    String VARIABLE_SEGMENT = "{}";
 
 }
 
 class PathTemplate implements UriTemplate {
 
+    private static final String RegexCharacters = "{}\\.[]()*+?^$|";
+
     private final Pattern pattern;
     private final PathVariables pathVariables = new PathVariables();
     private final int variableGroupStartFrom;
+    private final List<String> literalSegments;
+    private final String[] literals;
+    private final String[] segments;
 
     public PathTemplate(String template) {
-        pattern = Pattern.compile(group(pathVariables.template(template)) + "(/.*)?");
+        String regex = pathVariables.template(template);
+        literals = pathVariables.literals(template);
+        pattern = literals == null ? Pattern.compile(group(regex) + "(/.*)?") : null;
         variableGroupStartFrom = 2;
+        literalSegments = literalSegments(template);
+        segments = literals == null ? null : segments(template);
+    }
+
+    private static String[] segments(String template) {
+        if (template.isEmpty()) return new String[0];
+        if (!template.startsWith("/")) return null;
+        String[] segments = template.substring(1).split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].indexOf('{') < 0) continue;
+            if (!PathVariables.variable.matcher(segments[i]).matches()) return null;
+            segments[i] = VARIABLE_SEGMENT;
+        }
+        return segments;
+    }
+
+    private static List<String> literalSegments(String template) {
+        int end = 0;
+        while (end < template.length() && RegexCharacters.indexOf(template.charAt(end)) < 0) end++;
+        if (!template.startsWith("/")) return List.of();
+        List<String> segments = new ArrayList<>(Arrays.asList(template.substring(1, Math.max(end, 1)).split("/", -1)));
+        if (end < template.length()) segments.remove(segments.size() - 1);
+        return List.copyOf(segments);
     }
 
     private static String group(String pattern, boolean optional) {
@@ -41,11 +86,54 @@ class PathTemplate implements UriTemplate {
         return group(pattern, false);
     }
 
+    @Override
+    public List<String> literalSegments() {
+        return literalSegments;
+    }
+
+    @Override
+    public String[] segments() {
+        return segments == null ? null : segments.clone();
+    }
+
     @Override
     public Optional<MatchResult> match(String path) {
+        if (literals == null) return matchPattern(path);
+        return matchSegments(path);
+    }
+
+    private Optional<MatchResult> matchPattern(String path) {
         Matcher matcher = pattern.matcher(path);
         if (!matcher.matches()) return Optional.empty();
-        return Optional.of(new PathMatchResult(matcher, pathVariables));
+        int[] bounds = new int[pathVariables.variables.size() * 2];
+        for (int i = 0; i < pathVariables.variables.size(); i++) {
+            bounds[i * 2] = matcher.start(i + variableGroupStartFrom);
+            bounds[i * 2 + 1] = matcher.end(i + variableGroupStartFrom);
+        }
+        return Optional.of(new PathMatchResult(path, matcher.end(1), bounds, pathVariables));
+    }
+
+    /**
+     * 变量只能占满到下一个 '/' 或路径末尾, 因此逐段比较字面量并定位变量边界即可, 与正则 {@code ([^/]+?)} 的匹配结果一致
+     */
+    private Optional<MatchResult> matchSegments(String path) {
+        int[] bounds = new int[(literals.length - 1) * 2];
+        int position = 0;
+        for (int i = 0; i < literals.length - 1; i++) {
+            if (!path.startsWith(literals[i], position)) return Optional.empty();
+            position += literals[i].length();
+            int end = path.indexOf('/', position);
+            if (end < 0) end = path.length();
+            if (end == position) return Optional.empty();
+            bounds[i * 2] = position;
+            bounds[i * 2 + 1] = end;
+            position = end;
+        }
+        String last = literals[literals.length - 1];
+        if (!path.startsWith(last, position)) return Optional.empty();
+        position += last.length();
+        if (position < path.length() && path.charAt(position) != '/') return Optional.empty();
+        return Optional.of(new PathMatchResult(path, position, bounds, pathVariables));
     }
 
     class PathVariables implements Comparable<PathVariables> {
@@ -65,6 +153,21 @@ class PathTemplate implements UriTemplate {
             return variable.matcher(template).replaceAll(pathVariables::replace);
         }
 
+        /**
+         * 按变量切分出的字面量片段; 含自定义正则、正则字符, 或变量后面不是 '/' 和结尾时返回 null, 只能用正则匹配
+         */
+        private String[] literals(String template) {
+            if (specificParameterCount > 0) return null;
+            String[] literals = variable.split(template, -1);
+            for (int i = 0; i < literals.length; i++) {
+                for (char c : literals[i].toCharArray())
+                    if (RegexCharacters.indexOf(c) >= 0) return null;
+                if (i > 0 && !literals[i].isEmpty() && literals[i].charAt(0) != '/') return null;
+                if (i > 0 && literals[i].isEmpty() && i < literals.length - 1) return null;
+            }
+            return literals;
+        }
+
         private String replace(java.util.regex.MatchResult result) {
             String variableName = result.group(variableNameGroup);
             String pattern = result.group(variablePatternGroup);
@@ -79,15 +182,6 @@ class PathTemplate implements UriTemplate {
             return DefaultVariablePattern;
         }
 
-
-        private Map<String, String> extract(Matcher matcher) {
-            Map<String, String> parameters = new HashMap<>();
-            for (int i = 0; i < variables.size(); i++) {
-                parameters.put(variables.get(i), matcher.group(i + variableGroupStartFrom));
-            }
-            return parameters;
-        }
-
         @Override
         public int compareTo(PathVariables o) {
             return Comparator.<PathVariables, Integer>comparing(it -> it.variables.size(), Comparator.reverseOrder())
@@ -96,32 +190,45 @@ class PathTemplate implements UriTemplate {
         }
     }
 
+    /**
+     * 只记录匹配位置, 路径参数在第一次读取时才生成
+     */
     class PathMatchResult implements MatchResult {
 
-        private final Matcher matcher;
-        private final Map<String, String> parameters;
+        private final String path;
+        private final int end;
+        private final int[] bounds;
         private final PathVariables variables;
         private final int matchLiteralCount;
-
-        public PathMatchResult(Matcher matcher, PathVariables variable) {
-            this.matcher = matcher;
-            this.variables = variable;
-            this.parameters = variable.extract(matcher);
-            this.matchLiteralCount = matcher.group(1).length() - parameters.values().stream().mapToInt(String::length).sum();
+        private Map<String, String> parameters;
+
+        public PathMatchResult(String path, int end, int[] bounds, PathVariables variables) {
+            this.path = path;
+            this.end = end;
+            this.bounds = bounds;
+            this.variables = variables;
+            int literalCount = end;
+            for (int i = 0; i < bounds.length; i += 2) literalCount -= bounds[i + 1] - bounds[i];
+            this.matchLiteralCount = literalCount;
         }
 
         @Override
         public String getMatched() {
-            return matcher.group(1);
+            return path.substring(0, end);
         }
 
         @Override
         public String getRemaining() {
-            return matcher.group(matcher.groupCount());
+            return end == path.length() ? null : path.substring(end);
         }
 
         @Override
         public Map<String, String> getMatchedPathParameters() {
+            if (parameters == null) {
+                parameters = new HashMap<>();
+                for (int i = 0; i < variables.variables.size(); i++)
+                    parameters.put(variables.variables.get(i), path.substring(bounds[i * 2], bounds[i * 2 + 1]));
+            }
             return parameters;
         }
 
@@ -0,0 +1,157 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author qiubaisen
+ * @date 2023/3/2
+ */
+public class CompressionTest {
+    static final String CONTENT = "{\"id\":\"1\",\"name\":\"user\"}".repeat(100);
+
+    private Compression compression;
+
+    @BeforeEach
+    void before() {
+        compression = new Compression(64, Deflater.DEFAULT_COMPRESSION, 1);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', nullValues = "null", textBlock = """
+            gzip                        | GZIP
+            deflate                     | DEFLATE
+            gzip, deflate, br           | GZIP
+            deflate, gzip               | GZIP
+            gzip;q=0.5, deflate         | DEFLATE
+            x-gzip                      | GZIP
+            *                           | GZIP
+            *, gzip;q=0                 | DEFLATE
+            gzip;q=0, deflate;q=0       | null
+            identity                    | null
+            br                          | null
+            null                        | null
+            """)
+    void should_negotiate_accept_encoding(String acceptEncoding, Compression.Encoding encoding) {
+        assertEquals(encoding, Compression.negotiate(acceptEncoding));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', textBlock = """
+            text/plain                  | true
+            application/json            | true
+            application/hal+json        | true
+            application/xml             | true
+            image/svg+xml               | true
+            image/png                   | false
+            application/octet-stream    | false
+            */*                         | false
+            """)
+    void should_compress_textual_media_types(String mediaType, boolean compressible) {
+        assertEquals(compressible, Compression.compressible(Negotiation.mediaType(mediaType)));
+    }
+
+    @Test
+    void should_add_and_remove_encoding_suffix_of_entity_tag() {
+        assertEquals("\"v1-gzip\"", Compression.tag("\"v1\"", Compression.Encoding.GZIP));
+        assertEquals("W/\"v1\"", Compression.tag("W/\"v1\"", Compression.Encoding.GZIP));
+        assertEquals("v1", Compression.untag("v1-deflate"));
+        assertEquals("v1", Compression.untag("v1"));
+    }
+
+    @Test
+    void should_compress_content_with_gzip() throws IOException {
+        byte[] compressed = compression.compress(ByteBuffer.wrap(CONTENT.getBytes(StandardCharsets.UTF_8)), Compression.Encoding.GZIP);
+
+        assertTrue(compressed.length < CONTENT.length());
+        assertEquals(CONTENT, new String(new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void should_compress_direct_buffer_with_deflate() throws IOException {
+        byte[] content = CONTENT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(content.length).put(content).flip();
+
+        byte[] compressed = compression.compress(direct, Compression.Encoding.DEFLATE);
+
+        assertEquals(content.length, direct.remaining());
+        assertEquals(CONTENT, new String(new InflaterInputStream(new ByteArrayInputStream(compressed)).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void should_reuse_pooled_deflater() throws IOException {
+        for (int i = 0; i < 3; i++) compression.compress(ByteBuffer.wrap(CONTENT.getBytes()), Compression.Encoding.GZIP);
+
+        assertEquals(1, compression.allocated());
+    }
+
+    @Nested
+    class Output {
+        private HttpServletResponse response;
+        private ByteArrayOutputStream written;
+
+        @BeforeEach
+        void before() throws IOException {
+            written = new ByteArrayOutputStream();
+            response = mock(HttpServletResponse.class);
+            when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    written.write(b);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            });
+        }
+
+        @Test
+        void should_write_content_under_threshold_as_is() throws IOException {
+            try (Compression.Output output = compression.output(response, Compression.Encoding.GZIP)) {
+                output.write("small".getBytes());
+            }
+
+            assertEquals("small", written.toString());
+            verify(response).setContentLength(5);
+            verify(response, never()).setHeader(eq(HttpHeaders.CONTENT_ENCODING), any());
+            assertEquals(0, compression.allocated());
+        }
+
+        @Test
+        void should_compress_content_over_threshold() throws IOException {
+            when(response.getHeader(HttpHeaders.ETAG)).thenReturn("\"v1\"");
+            try (Compression.Output output = compression.output(response, Compression.Encoding.GZIP)) {
+                for (byte b : CONTENT.getBytes()) output.write(b);
+            }
+
+            verify(response).setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            verify(response).setHeader(HttpHeaders.ETAG, "\"v1-gzip\"");
+            assertEquals(CONTENT, new String(new GZIPInputStream(new ByteArrayInputStream(written.toByteArray())).readAllBytes()));
+        }
+    }
+}
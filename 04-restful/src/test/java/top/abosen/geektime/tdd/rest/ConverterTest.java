@@ -2,10 +2,11 @@ package top.abosen.geektime.tdd.rest;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author qiubaisen
@@ -15,24 +16,79 @@ public class ConverterTest {
 
     @Test
     void should_convert_via_converter_constructor() {
-        assertEquals(new BigDecimal("12345"), ConverterConstructor.convert(BigDecimal.class, "12345").get());
+        assertEquals(new BigDecimal("12345"), ConverterConstructor.converter(BigDecimal.class).get().fromString(List.of("12345")));
     }
 
     @Test
-    void should_not_convert_if_no_converter_constructor() {
-        assertTrue(ConverterConstructor.convert(NoConverter.class, "12345").isEmpty());
-
+    void should_not_select_converter_constructor_if_not_exist() {
+        assertTrue(ConverterConstructor.converter(NoConverter.class).isEmpty());
     }
 
     @Test
     void should_convert_via_converter_factory() {
-        assertEquals(Converter.Factory, ConverterFactory.convert(Converter.class, "Factory").get());
+        assertEquals(Converter.Factory, ConverterFactory.converter(Converter.class).get().fromString(List.of("Factory")));
+    }
 
+    @Test
+    void should_not_select_converter_factory_if_not_exist() {
+        assertTrue(ConverterFactory.converter(NoConverter.class).isEmpty());
     }
 
     @Test
-    void should_not_convert_if_no_converter_factory() {
-        assertTrue(ConverterFactory.convert(NoConverter.class, "Factory").isEmpty());
+    void should_convert_to_null_if_converter_throws_exception() {
+        assertNull(ConverterConstructor.converter(BigDecimal.class).get().fromString(List.of("not a number")));
+        assertNull(ConverterFactory.converter(Converter.class).get().fromString(List.of("Missing")));
+        assertNull(ConverterConstructor.converter(CheckedConverter.class).get().fromString(List.of("value")));
     }
-}
 
+    @Test
+    void should_fall_back_to_converter_factory_if_converter_constructor_throws_exception() {
+        MethodInvoker.ValueConverter<Object> converter = ConverterConstructor.converter(FallbackConverter.class).get();
+
+        assertEquals("constructor:value", converter.fromString(List.of("value")).toString());
+        assertEquals("factory:legacy", converter.fromString(List.of("legacy")).toString());
+        assertNull(converter.fromString(List.of("")));
+    }
+
+    @Test
+    void should_rethrow_error_thrown_by_converter() {
+        MethodInvoker.ValueConverter<Object> converter = ConverterConstructor.converter(ErrorConverter.class).get();
+
+        assertThrows(AssertionError.class, () -> converter.fromString(List.of("value")));
+    }
+
+    public static class CheckedConverter {
+        public CheckedConverter(String value) throws IOException {
+            throw new IOException(value);
+        }
+    }
+
+    public static class FallbackConverter {
+        private final String value;
+
+        public FallbackConverter(String value) {
+            if (value.isEmpty() || value.equals("legacy")) throw new IllegalArgumentException(value);
+            this.value = "constructor:" + value;
+        }
+
+        private FallbackConverter(String value, boolean factory) {
+            this.value = "factory:" + value;
+        }
+
+        public static FallbackConverter valueOf(String value) {
+            if (value.isEmpty()) throw new IllegalArgumentException();
+            return new FallbackConverter(value, true);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    public static class ErrorConverter {
+        public ErrorConverter(String value) {
+            throw new AssertionError(value);
+        }
+    }
+}
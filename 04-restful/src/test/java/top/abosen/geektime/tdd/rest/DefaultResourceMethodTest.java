@@ -1,17 +1,25 @@
 package top.abosen.geektime.tdd.rest;
 
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.UriInfo;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
 
 /**
  * @author qiubaisen
@@ -61,6 +69,74 @@ public class DefaultResourceMethodTest extends InjectableCallerTest {
         assertEquals(300, exception.getResponse().getStatus());
     }
 
+    @Test
+    void should_return_completion_stage_of_suspended_response() throws Exception {
+        GenericEntity<?> entity = getResourceMethod("getSuspended", AsyncResponse.class).call(context, builder);
+        ((AsyncResponse) lastCall.arguments().get(0)).resume("resumed");
+
+        assertEquals(CompletionStage.class, entity.getType());
+        assertEquals("resumed", ((CompletionStage<?>) entity.getEntity()).toCompletableFuture().get());
+    }
+
+    @ParameterizedTest
+    @EnumSource(MethodInvoker.Strategy.class)
+    void should_call_resource_method_with_each_invoker_strategy(MethodInvoker.Strategy strategy) throws NoSuchMethodException {
+        parameters.put("param", List.of("1"));
+        new MethodInvoker(CallableResourceMethods.class.getMethod("getPathParam", int.class), strategy).invoke(context, builder);
+
+        assertEquals("getPathParam(int)", lastCall.name());
+        assertEquals(List.of(1), lastCall.arguments());
+    }
+
+    @ParameterizedTest
+    @EnumSource(MethodInvoker.Strategy.class)
+    void should_wrap_checked_exception_with_each_invoker_strategy(MethodInvoker.Strategy strategy) throws NoSuchMethodException {
+        MethodInvoker invoker = new MethodInvoker(Checked.class.getMethod("get"), strategy);
+        when(builder.getLastMatchedResource()).thenReturn(new Checked());
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> invoker.invoke(context, builder));
+        assertEquals(Exception.class, exception.getCause().getClass());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(nullValues = "null", textBlock = """
+            reflection,         REFLECTION
+            Method_Handle,      METHOD_HANDLE
+            ' lambda ',         LAMBDA
+            null,               LAMBDA
+            unknown,            LAMBDA
+            """)
+    void should_parse_invoker_strategy_and_fall_back_to_lambda(String value, MethodInvoker.Strategy strategy) {
+        assertEquals(strategy, MethodInvoker.Strategy.parse(value));
+    }
+
+    @Test
+    void should_provide_cache_control_from_cached_annotation() throws NoSuchMethodException {
+        assertEquals("max-age=60", new DefaultResourceMethod(Cacheable.class.getMethod("get")).getCacheControl());
+        assertEquals("private, max-age=10", new DefaultResourceMethod(Cacheable.class.getMethod("getPrivate")).getCacheControl());
+        assertNull(getResourceMethod("get").getCacheControl());
+    }
+
+    public static class Cacheable {
+        @GET
+        @Cached(maxAge = 60)
+        public String get() {
+            return "cached";
+        }
+
+        @GET
+        @Cached(maxAge = 10, isPrivate = true)
+        public String getPrivate() {
+            return "private";
+        }
+    }
+
+    public static class Checked {
+        public String get() throws Exception {
+            throw new Exception();
+        }
+    }
+
     @Override
     protected void callInjectable(String method, Class<?> type) throws NoSuchMethodException {
         DefaultResourceMethod resourceMethod = getResourceMethod(method, type);
@@ -145,8 +221,14 @@ public class DefaultResourceMethodTest extends InjectableCallerTest {
         @GET
         String getContext(@Context UriInfo uriInfo);
 
+        @GET
+        String getContext(@Context Request request);
+
         @GET
         String throwWebApplicationException(@PathParam("param") String value);
+
+        @GET
+        void getSuspended(@Suspended AsyncResponse response);
     }
 
     private static DefaultResourceMethod getResourceMethod(String methodName, Class... types) throws NoSuchMethodException {
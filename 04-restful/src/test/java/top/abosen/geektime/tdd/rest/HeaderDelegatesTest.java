@@ -0,0 +1,74 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author qiubaisen
+ * @date 2023/2/26
+ */
+public class HeaderDelegatesTest {
+    record Token(String value) {
+    }
+
+    private RuntimeDelegate runtimeDelegate;
+    private RuntimeDelegate.HeaderDelegate<Object> headerDelegate;
+    private HeaderDelegates delegates;
+
+    @BeforeEach
+    void before() {
+        runtimeDelegate = mock(RuntimeDelegate.class);
+        headerDelegate = mock(RuntimeDelegate.HeaderDelegate.class);
+        when(headerDelegate.toString(any())).thenAnswer(invocation -> invocation.getArgument(0) instanceof Token token ? token.value() : "text/plain");
+        when(runtimeDelegate.createHeaderDelegate(any())).thenReturn(headerDelegate);
+        delegates = new HeaderDelegates(runtimeDelegate);
+    }
+
+    @Test
+    void should_write_string_value_without_header_delegate() {
+        assertEquals("no-cache", delegates.toString("no-cache"));
+
+        verify(runtimeDelegate, never()).createHeaderDelegate(any());
+    }
+
+    @Test
+    void should_create_header_delegate_once_per_value_type() {
+        assertEquals("first", delegates.toString(new Token("first")));
+        assertEquals("second", delegates.toString(new Token("second")));
+
+        verify(runtimeDelegate, times(1)).createHeaderDelegate(eq(Token.class));
+    }
+
+    @Test
+    void should_reuse_string_form_of_media_type() {
+        assertEquals("text/plain", delegates.toString(MediaType.TEXT_PLAIN_TYPE));
+        assertEquals("text/plain", delegates.toString(new MediaType("text", "plain")));
+
+        verify(headerDelegate, times(1)).toString(any());
+    }
+
+    @Test
+    void should_write_all_values_of_headers() {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_TYPE);
+        headers.addAll(HttpHeaders.ALLOW, "GET", "HEAD");
+
+        delegates.write(response, headers);
+
+        verify(response).addHeader(HttpHeaders.CONTENT_TYPE, "text/plain");
+        verify(response).addHeader(HttpHeaders.ALLOW, "GET");
+        verify(response).addHeader(HttpHeaders.ALLOW, "HEAD");
+    }
+}
@@ -2,6 +2,7 @@ package top.abosen.geektime.tdd.rest;
 
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.ext.RuntimeDelegate;
 import org.junit.jupiter.api.BeforeEach;
@@ -28,6 +29,7 @@ public abstract class InjectableCallerTest {
     protected ResourceContext context;
     protected UriInfoBuilder builder;
     protected UriInfo uriInfo;
+    protected Request request;
     protected MultivaluedHashMap<String, String> parameters;
     protected DefaultResourceMethodTest.LastCall lastCall;
     protected SomeServiceInContext service;
@@ -49,6 +51,7 @@ public abstract class InjectableCallerTest {
         context = mock(ResourceContext.class);
         builder = mock(UriInfoBuilder.class);
         uriInfo = mock(UriInfo.class);
+        request = mock(Request.class);
         service = mock(SomeServiceInContext.class);
         parameters = new MultivaluedHashMap<>();
         delegate = mock(RuntimeDelegate.class);
@@ -57,6 +60,7 @@ public abstract class InjectableCallerTest {
 
         when(builder.getLastMatchedResource()).thenReturn(resource);
         when(builder.createUriInfo()).thenReturn(uriInfo);
+        when(builder.createRequest()).thenReturn(request);
         when(uriInfo.getPathParameters()).thenReturn(parameters);
         when(uriInfo.getQueryParameters()).thenReturn(parameters);
         when(context.getResource(eq(SomeServiceInContext.class))).thenReturn(service);
@@ -98,7 +102,8 @@ public abstract class InjectableCallerTest {
         List<InjectableTypeTestCase> typeCases = List.of(
                 new InjectableTypeTestCase(SomeServiceInContext.class, "N/A", service),
                 new InjectableTypeTestCase(ResourceContext.class, "N/A", context),
-                new InjectableTypeTestCase(UriInfo.class, "N/A", uriInfo)
+                new InjectableTypeTestCase(UriInfo.class, "N/A", uriInfo),
+                new InjectableTypeTestCase(Request.class, "N/A", request)
         );
         List<String> paramTypes = List.of("getContext");
 
@@ -0,0 +1,75 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author qiubaisen
+ * @date 2023/2/27
+ */
+public class NegotiationTest {
+
+    @Test
+    void should_sort_accepted_types_by_quality_then_specificity() {
+        List<Negotiation.Accepted> accepted = Negotiation.accept("*/*;q=0.1, text/*, text/html;level=1;q=0.8, application/json");
+
+        assertEquals(List.of(
+                new Negotiation.Accepted(new MediaType("application", "json"), 1000),
+                new Negotiation.Accepted(new MediaType("text", "*"), 1000),
+                new Negotiation.Accepted(new MediaType("text", "html", Map.of("level", "1")), 800),
+                new Negotiation.Accepted(MediaType.WILDCARD_TYPE, 100)), accepted);
+    }
+
+    @Test
+    void should_keep_types_not_acceptable_as_exclusions() {
+        assertEquals(List.of(new Negotiation.Accepted(new MediaType("text", "plain"), 1000), new Negotiation.Accepted(new MediaType("application", "json"), 0)),
+                Negotiation.accept("text/plain, application/json;q=0"));
+    }
+
+    @Test
+    void should_take_quality_of_most_specific_accepted_type() {
+        List<Negotiation.Accepted> accepted = Negotiation.accept("*/*, text/*;q=0.5, text/html;q=0");
+
+        assertEquals(0, Negotiation.quality(accepted, new MediaType("text", "html")));
+        assertEquals(500, Negotiation.quality(accepted, new MediaType("text", "plain")));
+        assertEquals(1000, Negotiation.quality(accepted, new MediaType("application", "json")));
+        assertEquals(1000, Negotiation.quality(accepted, MediaType.WILDCARD_TYPE));
+        assertEquals(0, Negotiation.quality(Negotiation.accept("text/html"), new MediaType("text", "*")));
+    }
+
+    @Test
+    void should_accept_any_type_if_accept_missing() {
+        assertSame(Negotiation.ANY, Negotiation.accept(null));
+        assertSame(Negotiation.ANY, Negotiation.accept(""));
+    }
+
+    @Test
+    void should_reuse_parsed_accept_header() {
+        assertSame(Negotiation.accept("text/plain, application/json"), Negotiation.accept("text/plain, application/json"));
+    }
+
+    @Test
+    void should_intern_same_media_type() {
+        MediaType contentType = Negotiation.mediaType("application/json");
+
+        assertEquals(new MediaType("application", "json"), contentType);
+        assertSame(contentType, Negotiation.mediaType("Application/JSON"));
+        assertSame(contentType, Negotiation.accept("application/json;q=0.9").get(0).type());
+    }
+
+    @Test
+    void should_keep_parameters_of_content_type() {
+        assertEquals(new MediaType("text", "plain", "utf-8"), Negotiation.mediaType("text/plain; charset=\"utf-8\""));
+    }
+
+    @Test
+    void should_ignore_malformed_media_type() {
+        assertNull(Negotiation.mediaType("plain"));
+        assertEquals(List.of(new Negotiation.Accepted(new MediaType("text", "plain"), 1000)), Negotiation.accept("plain, text/plain"));
+    }
+}
@@ -4,6 +4,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -75,4 +80,49 @@ public class PathTemplateTest {
 
         assertEquals(0, result.compareTo(result));
     }
+
+    @ParameterizedTest
+    @CsvSource(value = {"/users|users",
+            "/users/{id}|users",
+            "/users/{id}/orders|users",
+            "/users/orders|users,orders",
+            "/users/orders{id}|users",
+            "/users.json|",
+            "/{id}|",
+            "/|''",
+            "users|",
+    }, delimiter = '|')
+    void should_extract_leading_literal_segments(String pattern, String segments) {
+        List<String> expected = segments == null ? List.of() : List.of(segments.split(",", -1));
+        assertEquals(expected, new PathTemplate(pattern).literalSegments());
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {"/users/{id}|/users/1/orders",
+            "/users/{id}|/users/",
+            "/users/{id}|/users",
+            "/users/{id}/|/users/1/",
+            "/users/{id}/|/users/1",
+            "/{resources}/{id}/orders|/users/1/orders/2",
+            "/{resources}/{id}/orders|/users/1/order",
+            "/orders{id}|/orders12/items",
+            "/orders{id}|/orders",
+            "|/users",
+            "|''",
+            "/|/",
+            "/|/users",
+            "/users|/users/",
+            "/users|/usersX",
+    }, delimiter = '|')
+    void should_match_same_as_regex_if_template_without_specific_pattern(String template, String path) {
+        template = template == null ? "" : template;
+        Matcher expected = Pattern.compile("(" + template.replaceAll("\\{\\w+}", "([^/]+?)") + ")(/.*)?").matcher(path);
+        Optional<UriTemplate.MatchResult> result = new PathTemplate(template).match(path);
+
+        assertEquals(expected.matches(), result.isPresent());
+        if (result.isEmpty()) return;
+        assertEquals(expected.group(1), result.get().getMatched());
+        assertEquals(expected.group(expected.groupCount()), result.get().getRemaining());
+        assertEquals(expected.groupCount() - 2, result.get().getMatchedPathParameters().size());
+    }
 }
@@ -0,0 +1,97 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Variant;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author qiubaisen
+ * @date 2023/3/4
+ */
+public class PreconditionRequestTest {
+    static final Date LAST_MODIFIED = new Date(1677283200000L);
+
+    @BeforeEach
+    void before() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenAnswer(it -> new StubResponseBuilder());
+    }
+
+    @ParameterizedTest(name = "{4}")
+    @CsvSource(delimiter = '|', textBlock = """
+            PUT    | If-Match            | "v1"                          | 0   | If-Match matched
+            PUT    | If-Match            | "v0"                          | 412 | If-Match not matched
+            DELETE | If-Match            | "v1-gzip"                     | 412 | If-Match not matched by encoded representation
+            PUT    | If-Unmodified-Since | Fri, 24 Feb 2023 00:00:00 GMT | 412 | modified after If-Unmodified-Since
+            PUT    | If-None-Match       | *                             | 412 | If-None-Match any by unsafe method
+            GET    | If-None-Match       | "v1"                          | 304 | If-None-Match matched by safe method
+            """)
+    void should_evaluate_preconditions_against_current_validators(String method, String header, String value, int expected, String testName) {
+        PreconditionRequest request = new PreconditionRequest(request(method, header, value));
+
+        Response.ResponseBuilder builder = request.evaluatePreconditions(LAST_MODIFIED, new EntityTag("v1"));
+        if (expected == Preconditions.PROCEED) assertNull(builder);
+        else assertEquals(expected, builder.build().getStatus());
+    }
+
+    @Test
+    void should_evaluate_preconditions_by_entity_tag_or_last_modified_only() {
+        PreconditionRequest request = new PreconditionRequest(request("PUT", HttpHeaders.IF_UNMODIFIED_SINCE, "Fri, 24 Feb 2023 00:00:00 GMT"));
+
+        assertNull(request.evaluatePreconditions(new EntityTag("v1")));
+        assertEquals(412, request.evaluatePreconditions(LAST_MODIFIED).build().getStatus());
+    }
+
+    @Test
+    void should_fail_if_match_for_resource_not_exist() {
+        assertEquals(412, new PreconditionRequest(request("PUT", HttpHeaders.IF_MATCH, "*")).evaluatePreconditions().build().getStatus());
+        assertNull(new PreconditionRequest(request("PUT", HttpHeaders.IF_NONE_MATCH, "*")).evaluatePreconditions());
+    }
+
+    @Test
+    void should_reject_missing_validators() {
+        PreconditionRequest request = new PreconditionRequest(request("PUT", HttpHeaders.IF_MATCH, "\"v1\""));
+
+        assertThrows(IllegalArgumentException.class, () -> request.evaluatePreconditions((EntityTag) null));
+        assertThrows(IllegalArgumentException.class, () -> request.evaluatePreconditions((Date) null));
+        assertThrows(IllegalArgumentException.class, () -> request.evaluatePreconditions(LAST_MODIFIED, null));
+    }
+
+    @Test
+    void should_return_method_of_servlet_request() {
+        assertEquals("DELETE", new PreconditionRequest(request("DELETE", HttpHeaders.IF_MATCH, "*")).getMethod());
+    }
+
+    @Test
+    void should_not_support_variant_selection() {
+        PreconditionRequest request = new PreconditionRequest(request("GET", HttpHeaders.ACCEPT, "*/*"));
+
+        assertThrows(IllegalArgumentException.class, () -> request.selectVariant(List.of()));
+        assertThrows(UnsupportedOperationException.class, () -> request.selectVariant(List.of(mock(Variant.class))));
+    }
+
+    private static HttpServletRequest request(String method, String header, String value) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getHeader(eq(header))).thenReturn(value);
+        when(request.getHeaders(eq(header))).thenAnswer(invocation -> Collections.enumeration(List.of(value)));
+        return request;
+    }
+}
@@ -0,0 +1,72 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author qiubaisen
+ * @date 2023/2/28
+ */
+public class PreconditionsTest {
+    static final String MODIFIED = "Sat, 25 Feb 2023 00:00:00 GMT";
+    static final Date LAST_MODIFIED = new Date(1677283200000L);
+
+    @ParameterizedTest(name = "{4}")
+    @CsvSource(delimiter = '|', textBlock = """
+            GET  | If-None-Match       | "v1"                          | 304 | If-None-Match matched
+            GET  | If-None-Match       | W/"v1"                        | 304 | If-None-Match uses weak comparison
+            GET  | If-None-Match       | *                             | 304 | If-None-Match any
+            GET  | If-None-Match       | "v0"                          | 0   | If-None-Match not matched
+            HEAD | If-None-Match       | "v0", "v1"                    | 304 | If-None-Match matched one of tags
+            POST | If-None-Match       | "v1"                          | 412 | If-None-Match matched by unsafe method
+            PUT  | If-Match            | "v1"                          | 0   | If-Match matched
+            PUT  | If-Match            | "v0"                          | 412 | If-Match not matched
+            PUT  | If-Match            | W/"v1"                        | 412 | If-Match uses strong comparison
+            PUT  | If-Match            | "v1-gzip"                     | 412 | If-Match not matched by encoded representation
+            GET  | If-None-Match       | "v1-gzip"                     | 304 | If-None-Match matched by encoded representation
+            GET  | If-Modified-Since   | Sat, 25 Feb 2023 00:00:00 GMT | 304 | not modified since
+            GET  | If-Modified-Since   | Fri, 24 Feb 2023 00:00:00 GMT | 0   | modified since
+            PUT  | If-Modified-Since   | Sat, 25 Feb 2023 00:00:00 GMT | 0   | If-Modified-Since ignored by unsafe method
+            PUT  | If-Unmodified-Since | Fri, 24 Feb 2023 00:00:00 GMT | 412 | modified after If-Unmodified-Since
+            PUT  | If-Unmodified-Since | Sat, 25 Feb 2023 00:00:00 GMT | 0   | not modified after If-Unmodified-Since
+            GET  | If-Modified-Since   | not a date                    | 0   | malformed date ignored
+            """)
+    void should_evaluate_preconditions(String method, String header, String value, int expected, String testName) {
+        HttpServletRequest request = request(method, header, value);
+
+        assertEquals(expected, Preconditions.evaluate(request, new EntityTag("v1"), LAST_MODIFIED));
+        assertEquals(expected, Preconditions.evaluate(request, "\"v1\"", MODIFIED));
+    }
+
+    @ParameterizedTest(name = "{2}")
+    @CsvSource(delimiter = '|', textBlock = """
+            "v0" | 0   | If-None-Match takes precedence over If-Modified-Since
+            "v1" | 304 | both matched
+            """)
+    void should_ignore_if_modified_since_if_none_match_present(String ifNoneMatch, int expected, String testName) {
+        HttpServletRequest request = request("GET", HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        when(request.getHeader(eq(HttpHeaders.IF_MODIFIED_SINCE))).thenReturn(MODIFIED);
+
+        assertEquals(expected, Preconditions.evaluate(request, "\"v1\"", LAST_MODIFIED));
+    }
+
+    private static HttpServletRequest request(String method, String header, String value) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getHeader(eq(header))).thenReturn(value);
+        when(request.getHeaders(eq(header))).thenAnswer(invocation -> Collections.enumeration(List.of(value)));
+        return request;
+    }
+}
@@ -0,0 +1,229 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.PathSegment;
+import jakarta.ws.rs.core.UriInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author qiubaisen
+ * @date 2023/3/3
+ */
+public class RequestStateTest {
+    private HttpServletRequest request;
+
+    @BeforeEach
+    void before() {
+        request = request();
+    }
+
+    @AfterEach
+    void after() {
+        RequestState.release(request);
+    }
+
+    @Test
+    void should_return_last_matched_resource() {
+        RequestState state = RequestState.acquire(request);
+        state.addMatchedResource("root");
+        state.addMatchedResource("sub");
+
+        assertEquals("sub", state.getLastMatchedResource());
+        assertEquals(List.of("sub", "root"), state.createUriInfo().getMatchedResources());
+    }
+
+    @Test
+    void should_grow_matched_resources_and_path_parameters() {
+        RequestState state = RequestState.acquire(request);
+        for (int i = 0; i < 10; i++) {
+            state.addMatchedResource(i);
+            state.addMatchedPathParameter(Map.of("p" + i, String.valueOf(i)));
+        }
+
+        assertEquals(9, state.getLastMatchedResource());
+        assertEquals(10, state.createUriInfo().getPathParameters().size());
+        assertEquals("9", state.createUriInfo().getPathParameters().getFirst("p9"));
+    }
+
+    @Test
+    void should_return_same_uri_info_within_request() {
+        RequestState state = RequestState.acquire(request);
+
+        assertSame(state.createUriInfo(), state.createUriInfo());
+    }
+
+    @Test
+    void should_reflect_path_parameters_added_after_uri_info_created() {
+        RequestState state = RequestState.acquire(request);
+        UriInfo uriInfo = state.createUriInfo();
+        state.addMatchedPathParameter(Map.of("id", "1"));
+        state.addMatchedPathParameter(Map.of("id", "2", "name", "john"));
+
+        MultivaluedMap<String, String> parameters = uriInfo.getPathParameters();
+        assertEquals(List.of("1", "2"), parameters.get("id"));
+        assertEquals("1", parameters.getFirst("id"));
+        assertEquals(List.of("john"), parameters.get("name"));
+        assertNull(parameters.get("missing"));
+        assertTrue(parameters.containsKey("name"));
+        assertEquals(Map.of("id", List.of("1", "2"), "name", List.of("john")), new HashMap<>(parameters));
+    }
+
+    @Test
+    void should_copy_path_parameters_on_first_modification() {
+        RequestState state = RequestState.acquire(request);
+        state.addMatchedPathParameter(Map.of("id", "1"));
+        MultivaluedMap<String, String> parameters = state.createUriInfo().getPathParameters();
+
+        parameters.add("id", "2");
+        parameters.putSingle("name", "john");
+        parameters.remove("missing");
+
+        assertEquals(List.of("1", "2"), parameters.get("id"));
+        assertEquals("john", parameters.getFirst("name"));
+        assertEquals(List.of("1"), state.createUriInfo().getPathParameters(false).get("id"));
+    }
+
+    @Test
+    void should_encode_path_parameters_if_not_decode() {
+        RequestState state = RequestState.acquire(request);
+        state.addMatchedPathParameter(Map.of("name", "john smith/中"));
+
+        UriInfo uriInfo = state.createUriInfo();
+        assertEquals("john smith/中", uriInfo.getPathParameters().getFirst("name"));
+        assertEquals("john%20smith%2F%E4%B8%AD", uriInfo.getPathParameters(false).getFirst("name"));
+    }
+
+    @Test
+    void should_decode_query_parameters() {
+        when(request.getQueryString()).thenReturn("name=john%20smith&tag=a&tag=b&flag");
+        RequestState state = RequestState.acquire(request);
+
+        MultivaluedMap<String, String> parameters = state.createUriInfo().getQueryParameters();
+        assertEquals(List.of("john smith"), parameters.get("name"));
+        assertEquals(List.of("a", "b"), parameters.get("tag"));
+        assertEquals(List.of(""), parameters.get("flag"));
+        assertSame(parameters, state.createUriInfo().getQueryParameters());
+        assertEquals(List.of("john%20smith"), state.createUriInfo().getQueryParameters(false).get("name"));
+    }
+
+    @Test
+    void should_split_raw_path_into_segments_with_matrix_parameters() {
+        when(request.getContextPath()).thenReturn("/app");
+        when(request.getRequestURI()).thenReturn("/app/users;role=a%20b/john%20smith+1");
+        RequestState state = RequestState.acquire(request);
+
+        UriInfo uriInfo = state.createUriInfo();
+        assertEquals("users;role=a%20b/john%20smith+1", uriInfo.getPath(false));
+        List<PathSegment> segments = uriInfo.getPathSegments();
+        assertEquals(List.of("users", "john smith+1"), segments.stream().map(PathSegment::getPath).toList());
+        assertEquals(List.of("a b"), segments.get(0).getMatrixParameters().get("role"));
+        assertEquals("john%20smith+1", uriInfo.getPathSegments(false).get(1).getPath());
+        assertEquals(List.of("a%20b"), uriInfo.getPathSegments(false).get(0).getMatrixParameters().get("role"));
+    }
+
+    @Test
+    void should_return_matched_uris_with_current_resource_first() {
+        when(request.getServletPath()).thenReturn("/users/john smith/orders/2");
+        RequestState state = RequestState.acquire(request);
+        state.addMatchedPath("/orders/2");
+        state.addMatchedPath(null);
+
+        UriInfo uriInfo = state.createUriInfo();
+        assertEquals(List.of("users/john smith/orders/2", "users/john smith"), uriInfo.getMatchedURIs());
+        assertEquals(List.of("users/john%20smith/orders/2", "users/john%20smith"), uriInfo.getMatchedURIs(false));
+    }
+
+    @Test
+    void should_create_request_of_servlet_request() {
+        when(request.getMethod()).thenReturn("PUT");
+        RequestState state = RequestState.acquire(request);
+
+        assertEquals("PUT", state.createRequest().getMethod());
+    }
+
+    @Test
+    void should_invalidate_uri_info_after_release() {
+        RequestState state = RequestState.acquire(request);
+        state.addMatchedPathParameter(Map.of("id", "1"));
+        UriInfo uriInfo = state.createUriInfo();
+        MultivaluedMap<String, String> parameters = uriInfo.getPathParameters();
+        RequestState.release(request);
+
+        HttpServletRequest next = request();
+        RequestState reused = RequestState.acquire(next);
+        reused.addMatchedPathParameter(Map.of("id", "2"));
+        assertNotSame(uriInfo, reused.createUriInfo());
+        assertThrows(IllegalStateException.class, uriInfo::getMatchedResources);
+        assertThrows(IllegalStateException.class, uriInfo::getPath);
+        assertThrows(IllegalStateException.class, () -> parameters.getFirst("id"));
+        RequestState.release(next);
+    }
+
+    @Test
+    void should_build_path_and_request_uri_from_request() {
+        when(request.getServletPath()).thenReturn("/users");
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getRequestURL()).thenReturn(new StringBuffer("http://localhost:8080/users/1"));
+        when(request.getQueryString()).thenReturn("q=1");
+        RequestState state = RequestState.acquire(request);
+
+        UriInfo uriInfo = state.createUriInfo();
+        assertEquals("users/1", uriInfo.getPath());
+        assertEquals("http://localhost:8080/users/1?q=1", uriInfo.getRequestUri().toString());
+        assertEquals("http://localhost:8080/", uriInfo.getBaseUri().toString());
+    }
+
+    @Test
+    void should_reuse_released_state_on_same_thread() {
+        RequestState state = RequestState.acquire(request);
+        state.addMatchedResource("resource");
+        state.addMatchedPathParameter(Map.of("id", "1"));
+        RequestState.release(request);
+
+        HttpServletRequest next = request();
+        RequestState reused = RequestState.acquire(next);
+        assertSame(state, reused);
+        assertEquals(List.of(), reused.createUriInfo().getMatchedResources());
+        assertNull(reused.createUriInfo().getPathParameters().get("id"));
+        assertNull(request.getAttribute(RequestState.ATTRIBUTE));
+        RequestState.release(next);
+    }
+
+    @Test
+    void should_not_share_state_between_concurrent_requests_on_same_thread() {
+        RequestState state = RequestState.acquire(request);
+
+        HttpServletRequest other = request();
+        assertNotSame(state, RequestState.acquire(other));
+        RequestState.release(other);
+    }
+
+    @Test
+    void should_ignore_release_without_acquire() {
+        HttpServletRequest other = request();
+
+        assertDoesNotThrow(() -> RequestState.release(other));
+        verify(other, never()).removeAttribute(anyString());
+    }
+
+    private static HttpServletRequest request() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        Map<String, Object> attributes = new HashMap<>();
+        doAnswer(it -> attributes.put(it.getArgument(0), it.getArgument(1))).when(request).setAttribute(anyString(), any());
+        doAnswer(it -> attributes.remove(it.getArgument(0))).when(request).removeAttribute(anyString());
+        when(request.getAttribute(anyString())).thenAnswer(it -> attributes.get(it.<String>getArgument(0)));
+        return request;
+    }
+}
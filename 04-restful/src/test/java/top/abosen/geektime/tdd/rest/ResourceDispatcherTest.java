@@ -7,7 +7,10 @@ import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.RuntimeDelegate;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
@@ -17,10 +20,10 @@ import java.util.Optional;
 import java.util.Vector;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * @author qiubaisen
@@ -79,6 +82,28 @@ public class ResourceDispatcherTest {
         assertEquals(304, response.getStatus());
     }
 
+    @Test
+    void should_add_cache_control_of_resource_method_to_response() {
+        ResourceRouter.ResourceMethod method = returns(new GenericEntity("matched", String.class));
+        when(method.getCacheControl()).thenReturn("max-age=60");
+
+        DefaultResourceRouter router = new DefaultResourceRouter(runtime, List.of(rootResource(matched("/users/1", result("/1")), method)));
+
+        OutboundResponse response = router.dispatch(request, context);
+        assertEquals("max-age=60", response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void should_set_negotiated_media_type_of_resource_method_to_response() {
+        ResourceRouter.ResourceMethod method = returns(new GenericEntity("matched", String.class));
+        when(method.getMediaType()).thenReturn(MediaType.TEXT_PLAIN_TYPE);
+
+        DefaultResourceRouter router = new DefaultResourceRouter(runtime, List.of(rootResource(matched("/users/1", result("/1")), method)));
+
+        OutboundResponse response = router.dispatch(request, context);
+        assertEquals(MediaType.TEXT_PLAIN_TYPE, response.getMediaType());
+    }
+
     @Test
     void should_sort_matched_root_resource_descending_order() {
         GenericEntity entity1 = new GenericEntity("1", String.class);
@@ -123,10 +148,163 @@ public class ResourceDispatcherTest {
         assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
     }
 
+    @Nested
+    class Cache {
+        @Path("/users/{id}")
+        public static class Users {
+            @GET
+            public String get() {
+                return "user";
+            }
+
+            @Path("/orders")
+            public Orders orders() {
+                return new Orders();
+            }
+        }
+
+        public static class Orders {
+            @GET
+            public String get() {
+                return "orders";
+            }
+        }
+
+        @BeforeEach
+        void before() {
+            builder = spy(new StubUriInfoBuilder());
+            when(runtime.createUriInfoBuilder(same(request))).thenReturn(builder);
+            when(context.getResource(eq(Users.class))).thenReturn(new Users());
+            when(request.getHeaders(eq(HttpHeaders.ACCEPT))).thenAnswer(it -> new Vector<>(List.of(MediaType.WILDCARD)).elements());
+        }
+
+        @Test
+        void should_reuse_resolved_route_for_same_request() {
+            DefaultResourceRouter router = new DefaultResourceRouter(runtime, List.of(new ResourceHandler(Users.class)));
+
+            assertEquals("user", router.dispatch(request, context).getGenericEntity().getEntity());
+            assertEquals("user", router.dispatch(request, context).getGenericEntity().getEntity());
+
+            assertEquals(1, router.getDispatchCache().hits());
+            assertEquals(1, router.getDispatchCache().misses());
+            verify(builder, times(2)).addMatchedResource(any(Users.class));
+            verify(builder, times(2)).addMatchedPathParameter(eq(Map.of("id", "1")));
+        }
+
+        @Test
+        void should_share_route_between_paths_of_same_shape() {
+            DefaultResourceRouter router = new DefaultResourceRouter(runtime, List.of(new ResourceHandler(Users.class)));
+
+            router.dispatch(request, context);
+            when(request.getServletPath()).thenReturn("/users/2");
+            assertEquals("user", router.dispatch(request, context).getGenericEntity().getEntity());
+
+            assertEquals(1, router.getDispatchCache().size());
+            assertEquals(1, router.getDispatchCache().hits());
+            verify(builder).addMatchedPathParameter(eq(Map.of("id", "2")));
+        }
+
+        @Path("/items")
+        public static class Items {
+            @GET
+            @Path("/{id:[0-9]+}")
+            public String get() {
+                return "item";
+            }
+
+            @GET
+            @Path("/all")
+            public String all() {
+                return "all";
+            }
+        }
+
+        @Test
+        void should_only_cache_literal_paths_if_template_has_custom_pattern() {
+            when(context.getResource(eq(Items.class))).thenReturn(new Items());
+            DefaultResourceRouter router = new DefaultResourceRouter(runtime, List.of(new ResourceHandler(Items.class)));
+
+            when(request.getServletPath()).thenReturn("/items/1");
+            assertEquals("item", router.dispatch(request, context).getGenericEntity().getEntity());
+            assertEquals(0, router.getDispatchCache().size());
+
+            when(request.getServletPath()).thenReturn("/items/all");
+            assertEquals("all", router.dispatch(request, context).getGenericEntity().getEntity());
+            assertEquals(1, router.getDispatchCache().size());
+        }
+
+        @Test
+        void should_not_cache_route_through_sub_resource_locator() {
+            when(request.getServletPath()).thenReturn("/users/1/orders");
+            DefaultResourceRouter router = new DefaultResourceRouter(runtime, List.of(new ResourceHandler(Users.class)));
+
+            assertEquals("orders", router.dispatch(request, context).getGenericEntity().getEntity());
+            assertEquals("orders", router.dispatch(request, context).getGenericEntity().getEntity());
+
+            assertEquals(0, router.getDispatchCache().size());
+            assertEquals(0, router.getDispatchCache().hits());
+        }
+
+        @Test
+        void should_not_cache_if_capacity_is_zero() {
+            DefaultResourceRouter router = new DefaultResourceRouter(runtime, List.of(new ResourceHandler(Users.class)), 0);
+
+            router.dispatch(request, context);
+            router.dispatch(request, context);
+
+            assertEquals(0, router.getDispatchCache().size());
+            assertEquals(2, router.getDispatchCache().misses());
+        }
+
+        @Test
+        void should_evict_least_recently_used_route_if_capacity_exceeded() {
+            DispatchCache cache = new DispatchCache(2);
+            DispatchCache.Route route = new DispatchCache.Route(null, null);
+            DispatchCache.Key first = new DispatchCache.Key("GET", "*/*", null, "/users/1");
+            DispatchCache.Key second = new DispatchCache.Key("GET", "*/*", null, "/users/2");
+            cache.put(first, route);
+            cache.put(second, route);
+            cache.get(first);
+
+            cache.put(new DispatchCache.Key("GET", "*/*", null, "/users/3"), route);
+
+            assertSame(route, cache.get(first));
+            assertNull(cache.get(second));
+            assertEquals(1, cache.evictions());
+        }
+    }
+
+    @Nested
+    class NormalizePath {
+        @Test
+        void should_replace_non_literal_segments_with_wildcard() {
+            DispatchCache.Paths paths = new DispatchCache.Paths(List.of(new PathTemplate("/users/{id}"), new PathTemplate("/{id}/orders")));
+
+            assertEquals("/users/*/orders", paths.normalize("/users/1/orders"));
+            assertEquals("/users/*/*", paths.normalize("/users/1/2"));
+            assertEquals("/users/", paths.normalize("/users/"));
+        }
+
+        @Test
+        void should_keep_path_if_all_segments_are_literal() {
+            String path = "/users/orders";
+
+            assertSame(path, new DispatchCache.Paths(List.of(new PathTemplate("/users/orders"))).normalize(path));
+        }
+
+        @Test
+        void should_not_normalize_path_if_template_is_not_segmented() {
+            DispatchCache.Paths paths = new DispatchCache.Paths(List.of(new PathTemplate("/users/{id:[0-9]+}"), new PathTemplate("/users/me")));
+
+            assertNull(paths.normalize("/users/1"));
+            assertEquals("/users/me", paths.normalize("/users/me"));
+        }
+    }
+
     private ResourceRouter.Resource rootResource(StubUriTemplate stub) {
         ResourceRouter.Resource rootResource = mock(ResourceRouter.Resource.class);
         when(rootResource.getUriTemplate()).thenReturn(stub.uriTemplate);
-        when(rootResource.match(same(stub.result), eq("GET"), eq(new String[]{MediaType.WILDCARD}), same(context), eq(builder))).thenReturn(Optional.empty());
+        when(rootResource.match(same(stub.result), eq("GET"), eq(Negotiation.of(MediaType.WILDCARD, null)), same(context), eq(builder))).thenReturn(Optional.empty());
 
         return rootResource;
     }
@@ -140,7 +318,7 @@ public class ResourceDispatcherTest {
     private ResourceRouter.Resource rootResource(StubUriTemplate stub, ResourceRouter.ResourceMethod method) {
         ResourceRouter.Resource rootResource = mock(ResourceRouter.Resource.class);
         when(rootResource.getUriTemplate()).thenReturn(stub.uriTemplate);
-        when(rootResource.match(same(stub.result), eq("GET"), eq(new String[]{MediaType.WILDCARD}), same(context), eq(builder))).thenReturn(Optional.of(method));
+        when(rootResource.match(same(stub.result), eq("GET"), eq(Negotiation.of(MediaType.WILDCARD, null)), same(context), eq(builder))).thenReturn(Optional.of(method));
         return rootResource;
     }
 
@@ -112,6 +112,132 @@ public class ResourceMethodsTest {
     }
 
 
+    @ParameterizedTest(name = "{3}")
+    @CsvSource(textBlock = """
+            'text/plain',                           ,                   Negotiated.plain,       Accept matches one of resource methods
+            'text/plain;q=0.5, application/json',   ,                   Negotiated.json,        Accept with higher quality
+            'text/*',                               ,                   Negotiated.plain,       more specific produced type preferred
+            'text/html',                            ,                   Negotiated.text,        produced wildcard type matches
+            '*/*',                                  application/json,   Negotiated.consumeJson, Content-Type matches consumes
+            """)
+    void should_select_resource_method_by_negotiation(String accept, String contentType, String resourceMethod, String testName) {
+        ResourceMethods resourceMethods = new ResourceMethods(Negotiated.class.getMethods());
+        String httpMethod = contentType == null ? "GET" : "POST";
+
+        ResourceRouter.ResourceMethod method = resourceMethods.findResourceMethod("/negotiated", httpMethod, Negotiation.of(accept, contentType)).get();
+        assertEquals(resourceMethod, method.toString());
+    }
+
+    @Test
+    void should_throw_not_acceptable_if_no_resource_method_produces_accepted_type() {
+        RuntimeDelegate delegate = Mockito.mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenReturn(new StubResponseBuilder());
+
+        ResourceMethods resourceMethods = new ResourceMethods(Negotiated.class.getMethods());
+        assertThrows(NotAcceptableException.class, () -> resourceMethods.findResourceMethod("/negotiated", "GET", Negotiation.of("image/png", null)));
+    }
+
+    @ParameterizedTest(name = "{2}")
+    @CsvSource(textBlock = """
+            /negotiated/html,   'text/html;q=0',            only produced type excluded
+            /negotiated/html,   '*/*, text/html;q=0',       exclusion beats less specific wildcard
+            /negotiated/html,   'text/*, text/html;q=0',    exclusion beats subtype wildcard
+            /negotiated/any,    'text/html;q=0',            nothing acceptable for unconstrained method
+            """)
+    void should_throw_not_acceptable_if_produced_type_excluded(String path, String accept, String testName) {
+        RuntimeDelegate delegate = Mockito.mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenReturn(new StubResponseBuilder());
+
+        ResourceMethods resourceMethods = new ResourceMethods(Negotiated.class.getMethods());
+        assertThrows(NotAcceptableException.class, () -> resourceMethods.findResourceMethod(path, "GET", Negotiation.of(accept, null)));
+    }
+
+    @ParameterizedTest(name = "{3}")
+    @CsvSource(textBlock = """
+            /negotiated,        'text/*',                   text/plain,     produced type narrower than accepted
+            /negotiated,        'text/html',                text/html,      accepted type narrower than produced
+            /negotiated,        '*/*;q=0.5, text/plain',    text/plain,     most specific accepted type decides quality
+            /negotiated/html,   '*/*',                      text/html,      produced type for wildcard accepted
+            /negotiated/any,    'text/html',                ,               unconstrained method left to message body writer
+            """)
+    void should_return_negotiated_media_type_with_resource_method(String path, String accept, String mediaType, String testName) {
+        ResourceMethods resourceMethods = new ResourceMethods(Negotiated.class.getMethods());
+
+        ResourceRouter.ResourceMethod method = resourceMethods.findResourceMethod(path, "GET", Negotiation.of(accept, null)).get();
+        assertEquals(mediaType == null ? null : Negotiation.mediaType(mediaType), method.getMediaType());
+    }
+
+    @Test
+    void should_keep_negotiated_media_type_for_head_request() {
+        ResourceMethods resourceMethods = new ResourceMethods(Negotiated.class.getMethods());
+
+        ResourceRouter.ResourceMethod method = resourceMethods.findResourceMethod("/negotiated/html", "HEAD", Negotiation.of("*/*", null)).get();
+        assertEquals(new MediaType("text", "html"), method.getMediaType());
+    }
+
+    @Test
+    void should_throw_not_supported_if_no_resource_method_consumes_content_type() {
+        RuntimeDelegate delegate = Mockito.mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenReturn(new StubResponseBuilder());
+
+        ResourceMethods resourceMethods = new ResourceMethods(Negotiated.class.getMethods());
+        assertThrows(NotSupportedException.class, () -> resourceMethods.findResourceMethod("/negotiated", "POST", Negotiation.of("*/*", "image/png")));
+    }
+
+    @Path("/negotiated")
+    static class Negotiated {
+        @GET
+        @Path("/negotiated")
+        @Produces(MediaType.TEXT_PLAIN)
+        public String plain() {
+            return "plain";
+        }
+
+        @GET
+        @Path("/negotiated")
+        @Produces(MediaType.APPLICATION_JSON)
+        public String json() {
+            return "json";
+        }
+
+        @GET
+        @Path("/negotiated")
+        @Produces("text/*")
+        public String text() {
+            return "text";
+        }
+
+        @GET
+        @Path("/negotiated/html")
+        @Produces(MediaType.TEXT_HTML)
+        public String html() {
+            return "html";
+        }
+
+        @GET
+        @Path("/negotiated/any")
+        public String any() {
+            return "any";
+        }
+
+        @POST
+        @Path("/negotiated")
+        @Consumes(MediaType.APPLICATION_JSON)
+        public String consumeJson() {
+            return "json";
+        }
+
+        @POST
+        @Path("/negotiated")
+        @Consumes(MediaType.TEXT_PLAIN)
+        public String consumePlain() {
+            return "plain";
+        }
+    }
+
     @Path("/missing-messages")
     static class MissingMessages {
         @GET
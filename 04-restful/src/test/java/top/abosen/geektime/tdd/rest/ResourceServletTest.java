@@ -9,7 +9,14 @@ import jakarta.ws.rs.ext.Providers;
 import jakarta.ws.rs.ext.RuntimeDelegate;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.function.Executable;
-
+import org.junit.jupiter.api.io.TempDir;
+import top.abosen.geektime.tdd.di.ComponentRef;
+import top.abosen.geektime.tdd.di.Context;
+import top.abosen.geektime.tdd.di.ContextConfig;
+import top.abosen.geektime.tdd.di.RequestScoped;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
@@ -19,14 +26,24 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
-import static org.junit.jupiter.api.Assertions.assertArrayEquals;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * @author qiubaisen
@@ -38,6 +55,11 @@ public class ResourceServletTest extends ServletTest {
     private ResourceContext resourceContext;
     private Providers providers;
     private RuntimeDelegate delegate;
+    private Executor executor;
+    private boolean entityTags;
+    private ResponseCache cache;
+    private Compression compression;
+    private long timeout = ResourceServlet.DEFAULT_TIMEOUT;
 
 
     @Override
@@ -50,7 +72,7 @@ public class ResourceServletTest extends ServletTest {
         when(runtime.getResourceRouter()).thenReturn(router);
         when(runtime.createResourceContext(any(), any())).thenReturn(resourceContext);
         when(runtime.getProviders()).thenReturn(providers);
-        return new ResourceServlet(runtime);
+        return new ResourceServlet(runtime, new ResourceServlet.Options().executor(executor).entityTags(entityTags).cache(cache).compression(compression).timeout(timeout));
     }
 
 
@@ -109,6 +131,609 @@ public class ResourceServletTest extends ServletTest {
         }
     }
 
+    @Nested
+    class RespondForContent {
+        @TempDir
+        java.nio.file.Path directory;
+
+        @Test
+        void should_write_streaming_output_without_message_body_writer() {
+            StreamingOutput output = stream -> stream.write("streamed".getBytes());
+            response().entity(new GenericEntity<>(output, StreamingOutput.class), new Annotation[0]).returnFrom(router);
+
+            assertEquals("streamed", get("/test").body());
+        }
+
+        @Test
+        void should_send_file_with_content_length() throws IOException {
+            java.nio.file.Path file = Files.writeString(directory.resolve("content.txt"), "file content");
+            response().entity(new GenericEntity<>(file.toFile(), File.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals("file content", httpResponse.body());
+            assertEquals(OptionalLong.of(12), httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH));
+        }
+
+        @Test
+        void should_send_path_with_content_length() throws IOException {
+            java.nio.file.Path file = Files.writeString(directory.resolve("content.txt"), "path content");
+            response().entity(new GenericEntity<>(file, java.nio.file.Path.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals("path content", httpResponse.body());
+            assertEquals(OptionalLong.of(12), httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH));
+        }
+
+        @Test
+        void should_send_file_larger_than_output_buffer_in_chunks() throws IOException {
+            String content = "0123456789abcdef".repeat(64 * 1024);
+            java.nio.file.Path file = Files.writeString(directory.resolve("large.txt"), content);
+            response().entity(new GenericEntity<>(file, java.nio.file.Path.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals(content, httpResponse.body());
+            assertEquals(OptionalLong.of(content.length()), httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH));
+        }
+
+        @Test
+        void should_send_remaining_bytes_of_byte_buffer() {
+            ByteBuffer buffer = ByteBuffer.wrap("__buffer content".getBytes()).position(2);
+            response().entity(new GenericEntity<>(buffer, ByteBuffer.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals("buffer content", httpResponse.body());
+            assertEquals(OptionalLong.of(14), httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH));
+            assertEquals(2, buffer.position());
+        }
+    }
+
+    @Nested
+    class RespondForCompletionStage {
+        @Test
+        void should_write_response_after_completion_stage_completed() {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            response().build(response -> CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(() -> future.complete(response)));
+            response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("entity", httpResponse.body());
+        }
+
+        @Test
+        void should_respond_web_application_exception_completed_exceptionally() {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            response().status(Response.Status.FORBIDDEN).build(response -> future.completeExceptionally(new WebApplicationException(response)));
+            response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), get("/test").statusCode());
+        }
+
+        @Test
+        void should_map_exception_completed_exceptionally() {
+            CompletableFuture<Object> future = CompletableFuture.failedFuture(new IllegalArgumentException());
+            response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).returnFrom(router);
+            when(providers.getExceptionMapper(eq(IllegalArgumentException.class))).thenReturn(e -> response().status(Response.Status.FORBIDDEN).build());
+
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), get("/test").statusCode());
+        }
+
+        @Test
+        void should_respond_service_unavailable_if_completion_stage_timed_out() throws Exception {
+            timeout = 100;
+            stop();
+            start();
+            try {
+                CompletableFuture<Object> future = new CompletableFuture<>();
+                response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+                assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), get("/test").statusCode());
+
+                response().build(future::complete);
+                response().entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+                assertEquals("entity", get("/test").body());
+            } finally {
+                timeout = ResourceServlet.DEFAULT_TIMEOUT;
+            }
+        }
+
+        @Test
+        void should_not_accept_non_positive_timeout() {
+            assertThrows(IllegalArgumentException.class, () -> new ResourceServlet.Options().timeout(0));
+        }
+    }
+
+    @Nested
+    class ConditionalRequest {
+        @Test
+        void should_respond_not_modified_before_writing_entity_if_none_match() {
+            response().headers(HttpHeaders.ETAG, "\"v1\"").entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.IF_NONE_MATCH, "\"v0\", \"v1\"");
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), httpResponse.statusCode());
+            assertEquals(Optional.of("\"v1\""), httpResponse.headers().firstValue(HttpHeaders.ETAG));
+            verify(providers, never()).getMessageBodyWriter(any(), any(), any(), any());
+        }
+
+        @Test
+        void should_respond_not_modified_if_not_modified_since() {
+            response().headers(HttpHeaders.LAST_MODIFIED, "Sat, 25 Feb 2023 00:00:00 GMT")
+                    .entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.IF_MODIFIED_SINCE, "Sat, 25 Feb 2023 00:00:00 GMT");
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), httpResponse.statusCode());
+        }
+
+        @Test
+        void should_respond_precondition_failed_if_match_not_matched() {
+            response().headers(HttpHeaders.ETAG, "\"v1\"").entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.IF_MATCH, "\"v0\"");
+            assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), httpResponse.statusCode());
+        }
+
+        @Test
+        void should_not_evaluate_preconditions_after_unsafe_method_invoked() {
+            response().headers(HttpHeaders.ETAG, "\"v1\"").entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("PUT", "/test", HttpHeaders.IF_MATCH, "\"v0\"");
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("entity", httpResponse.body());
+        }
+
+        @Test
+        void should_write_entity_if_none_match_not_matched() {
+            response().headers(HttpHeaders.ETAG, "\"v1\"").entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.IF_NONE_MATCH, "\"v0\"");
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("entity", httpResponse.body());
+        }
+
+        @Test
+        void should_compute_content_length_without_body_for_head() {
+            response().entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("HEAD", "/test");
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals(OptionalLong.of(6), httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH));
+            assertEquals("", httpResponse.body());
+        }
+
+        @Test
+        void should_compute_content_length_of_file_for_head(@TempDir java.nio.file.Path dir) throws Exception {
+            File file = Files.writeString(dir.resolve("hello.txt"), "hello world!").toFile();
+            response().entity(new GenericEntity<>(file, File.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("HEAD", "/test");
+            assertEquals(OptionalLong.of(12), httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH));
+        }
+    }
+
+    @Nested
+    class GenerateEntityTag {
+        @BeforeEach
+        void before() throws Exception {
+            entityTags = true;
+            stop();
+            start();
+        }
+
+        @AfterEach
+        void after() {
+            entityTags = false;
+        }
+
+        @Test
+        void should_generate_entity_tag_from_entity() {
+            response().entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> first = get("/test");
+            HttpResponse<String> second = get("/test");
+            assertEquals("entity", first.body());
+            assertTrue(first.headers().firstValue(HttpHeaders.ETAG).get().startsWith("W/\""));
+            assertEquals(first.headers().firstValue(HttpHeaders.ETAG), second.headers().firstValue(HttpHeaders.ETAG));
+        }
+
+        @Test
+        void should_respond_not_modified_if_none_match_generated_entity_tag() {
+            response().entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            String tag = get("/test").headers().firstValue(HttpHeaders.ETAG).get();
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.IF_NONE_MATCH, tag);
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), httpResponse.statusCode());
+            assertEquals("", httpResponse.body());
+        }
+
+        @Test
+        void should_not_match_generated_weak_entity_tag_with_if_match() {
+            response().entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            String tag = get("/test").headers().firstValue(HttpHeaders.ETAG).get();
+            assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), request("GET", "/test", HttpHeaders.IF_MATCH, tag).statusCode());
+        }
+
+        @Test
+        void should_keep_entity_tag_from_response() {
+            response().headers(HttpHeaders.ETAG, "\"v1\"").entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            assertEquals(Optional.of("\"v1\""), get("/test").headers().firstValue(HttpHeaders.ETAG));
+        }
+    }
+
+    @Nested
+    class CacheResponse {
+        @BeforeEach
+        void before() throws Exception {
+            cache = new ResponseCache(1024 * 1024);
+            stop();
+            start();
+        }
+
+        @AfterEach
+        void after() {
+            cache = null;
+        }
+
+        @Test
+        void should_respond_from_cache_without_dispatching() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+
+            assertEquals("entity", get("/test").body());
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals("entity", httpResponse.body());
+            assertEquals(Optional.of("max-age=60"), httpResponse.headers().firstValue(HttpHeaders.CACHE_CONTROL));
+            verify(router, times(1)).dispatch(any(), any());
+            assertEquals(1, cache.hits());
+        }
+
+        @Test
+        void should_cache_response_completed_from_completion_stage() {
+            when(delegate.createResponseBuilder()).thenAnswer(it -> new StubResponseBuilder());
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60")
+                    .entity(new GenericEntity<>(CompletableFuture.completedFuture("entity"), CompletionStage.class), new Annotation[0]).returnFrom(router);
+            when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), any(), eq(MediaType.TEXT_PLAIN_TYPE))).thenReturn(stringWriter());
+
+            assertEquals("entity", get("/test").body());
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals("entity", httpResponse.body());
+            assertEquals(Optional.of("max-age=60"), httpResponse.headers().firstValue(HttpHeaders.CACHE_CONTROL));
+            verify(router, times(1)).dispatch(any(), any());
+            assertEquals(1, cache.hits());
+        }
+
+        @Test
+        void should_not_cache_response_without_max_age() {
+            response().returnFrom(router);
+
+            get("/test");
+            get("/test");
+            verify(router, times(2)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_not_cache_private_response() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "private, max-age=60").returnFrom(router);
+
+            get("/test");
+            get("/test");
+            verify(router, times(2)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_cache_response_by_accept() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+
+            request("GET", "/test", HttpHeaders.ACCEPT, "text/plain");
+            request("GET", "/test", HttpHeaders.ACCEPT, "application/json");
+            request("GET", "/test", HttpHeaders.ACCEPT, "text/plain");
+            verify(router, times(2)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_not_cache_response_varying_on_header_not_in_key() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").headers(HttpHeaders.VARY, "Accept-Language").returnFrom(router);
+
+            request("GET", "/test", "Accept-Language", "en");
+            request("GET", "/test", "Accept-Language", "zh");
+            verify(router, times(2)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_not_cache_response_for_request_with_cookie_unless_public() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+
+            request("GET", "/test", HttpHeaders.COOKIE, "session=1");
+            request("GET", "/test", HttpHeaders.COOKIE, "session=1");
+            get("/test");
+            request("GET", "/test", HttpHeaders.COOKIE, "session=2");
+            verify(router, times(4)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_respond_public_response_from_cache_for_request_with_cookie() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "public, max-age=60").returnFrom(router);
+
+            request("GET", "/test", HttpHeaders.COOKIE, "session=1");
+            assertEquals("entity", request("GET", "/test", HttpHeaders.COOKIE, "session=2").body());
+            verify(router, times(1)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_not_use_cache_if_request_no_cache() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+
+            get("/test");
+            request("GET", "/test", HttpHeaders.CACHE_CONTROL, "no-cache");
+            verify(router, times(2)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_invalidate_path_after_successful_unsafe_method() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+
+            get("/test");
+            request("PUT", "/test");
+            get("/test");
+            verify(router, times(3)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_respond_not_modified_from_cache() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").headers(HttpHeaders.ETAG, "\"v1\"").returnFrom(router);
+
+            get("/test");
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), httpResponse.statusCode());
+            verify(router, times(1)).dispatch(any(), any());
+        }
+
+        @Test
+        void should_compute_content_length_from_cache_for_head() {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+
+            get("/test");
+            HttpResponse<String> httpResponse = request("HEAD", "/test");
+            assertEquals(OptionalLong.of(6), httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH));
+            verify(router, times(1)).dispatch(any(), any());
+        }
+    }
+
+    @Nested
+    class CompressEntity {
+        static final String CONTENT = "compressible ".repeat(100);
+
+        @BeforeEach
+        void before() throws Exception {
+            compression = new Compression(64, Deflater.DEFAULT_COMPRESSION, 4);
+            stop();
+            start();
+        }
+
+        @AfterEach
+        void after() {
+            compression = null;
+            cache = null;
+            entityTags = false;
+        }
+
+        @Test
+        void should_compress_entity_with_accepted_encoding() throws IOException {
+            response().entity(new GenericEntity<>(CONTENT, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<byte[]> httpResponse = bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip");
+            assertEquals(Optional.of("gzip"), httpResponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(Optional.of(HttpHeaders.ACCEPT_ENCODING), httpResponse.headers().firstValue(HttpHeaders.VARY));
+            assertEquals(CONTENT, new String(new GZIPInputStream(new ByteArrayInputStream(httpResponse.body())).readAllBytes()));
+        }
+
+        @Test
+        void should_compress_entity_with_deflate() throws IOException {
+            response().entity(new GenericEntity<>(CONTENT, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<byte[]> httpResponse = bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip;q=0.5, deflate");
+            assertEquals(Optional.of("deflate"), httpResponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(CONTENT, new String(new InflaterInputStream(new ByteArrayInputStream(httpResponse.body())).readAllBytes()));
+        }
+
+        @Test
+        void should_not_compress_entity_under_threshold() {
+            response().returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.ACCEPT_ENCODING, "gzip");
+            assertEquals(Optional.empty(), httpResponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING));
+            assertEquals("entity", httpResponse.body());
+        }
+
+        @Test
+        void should_not_compress_entity_without_accept_encoding() {
+            response().entity(new GenericEntity<>(CONTENT, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals(Optional.empty(), httpResponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(CONTENT, httpResponse.body());
+        }
+
+        @Test
+        void should_not_compress_incompressible_media_type() {
+            response().mediaType(new MediaType("image", "png")).entity(new GenericEntity<>(CONTENT, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = request("GET", "/test", HttpHeaders.ACCEPT_ENCODING, "gzip");
+            assertEquals(Optional.empty(), httpResponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(Optional.empty(), httpResponse.headers().firstValue(HttpHeaders.VARY));
+        }
+
+        @Test
+        void should_add_encoding_to_entity_tag_of_compressed_entity() {
+            response().headers(HttpHeaders.ETAG, "\"v1\"").entity(new GenericEntity<>(CONTENT, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<byte[]> httpResponse = bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip");
+            assertEquals(Optional.of("\"v1-gzip\""), httpResponse.headers().firstValue(HttpHeaders.ETAG));
+            HttpResponse<byte[]> notModified = bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip", HttpHeaders.IF_NONE_MATCH, "\"v1-gzip\"");
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), notModified.statusCode());
+        }
+
+        @Test
+        void should_compress_entity_with_generated_entity_tag() throws Exception {
+            entityTags = true;
+            stop();
+            start();
+            response().entity(new GenericEntity<>(CONTENT, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<byte[]> httpResponse = bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip");
+            String tag = httpResponse.headers().firstValue(HttpHeaders.ETAG).get();
+            assertTrue(tag.startsWith("W/\""));
+            assertEquals(Optional.of(tag), get("/test").headers().firstValue(HttpHeaders.ETAG));
+            assertEquals(CONTENT, new String(new GZIPInputStream(new ByteArrayInputStream(httpResponse.body())).readAllBytes()));
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(),
+                    bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip", HttpHeaders.IF_NONE_MATCH, tag).statusCode());
+        }
+
+        @Test
+        void should_serve_precompressed_variant_from_cache() throws Exception {
+            cache = new ResponseCache(1024 * 1024);
+            stop();
+            start();
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").headers(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .entity(new GenericEntity<>(CONTENT, String.class), new Annotation[0]).returnFrom(router);
+
+            bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip");
+            long weight = cache.weightedSize();
+            HttpResponse<byte[]> httpResponse = bytes("/test", HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+            assertEquals(Optional.of("gzip"), httpResponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(CONTENT, new String(new GZIPInputStream(new ByteArrayInputStream(httpResponse.body())).readAllBytes()));
+            assertEquals(CONTENT, get("/test").body());
+            assertEquals(weight, cache.weightedSize());
+            verify(router, times(1)).dispatch(any(), any());
+            assertEquals(1, compression.allocated());
+        }
+    }
+
+    @Nested
+    class DispatchOnExecutor {
+        private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        @BeforeEach
+        void before() throws Exception {
+            ExecutorService virtualThreads = ResourceServlet.virtualThreads();
+            executor = command -> virtualThreads.execute(() -> {
+                threads.add(Thread.currentThread());
+                command.run();
+            });
+            stop();
+            start();
+        }
+
+        @AfterEach
+        void after() {
+            executor = null;
+        }
+
+        @Test
+        void should_dispatch_request_on_executor() {
+            List<Thread> dispatched = new CopyOnWriteArrayList<>();
+            response().entity(new GenericEntity<>("entity", String.class), new Annotation[0]).build(response ->
+                    when(router.dispatch(any(), eq(resourceContext))).thenAnswer(invocation -> {
+                        dispatched.add(Thread.currentThread());
+                        return response;
+                    }));
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("entity", httpResponse.body());
+            assertEquals(threads, dispatched);
+        }
+
+        @Test
+        void should_bound_platform_threads_if_virtual_threads_not_available() {
+            ExecutorService executor = ResourceServlet.virtualThreads();
+            try {
+                if (!(executor instanceof ThreadPoolExecutor pool)) return;
+                assertTrue(pool.getMaximumPoolSize() < Integer.MAX_VALUE);
+                assertTrue(pool.getQueue().remainingCapacity() < Integer.MAX_VALUE);
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        void should_write_completion_stage_dispatched_on_executor() {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            response().build(response -> CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(() -> future.complete(response)));
+            response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("entity", httpResponse.body());
+        }
+
+        @Test
+        void should_create_resource_context_within_request_scope_on_executor() {
+            ContextConfig config = new ContextConfig();
+            config.bindComponent(RequestScope.RequestScopedComponent.class, RequestScope.RequestScopedComponent.class);
+            Context context = config.getContext();
+
+            List<Object> components = new CopyOnWriteArrayList<>();
+            when(runtime.createResourceContext(any(), any())).thenAnswer(invocation -> {
+                components.add(context.get(ComponentRef.of(RequestScope.RequestScopedComponent.class)));
+                components.add(context.get(ComponentRef.of(RequestScope.RequestScopedComponent.class)));
+                return resourceContext;
+            });
+            response().returnFrom(router);
+
+            get("/test");
+            get("/test");
+            assertEquals(4, components.size());
+            assertSame(components.get(0), components.get(1));
+            assertNotSame(components.get(1), components.get(2));
+        }
+    }
+
+    @Nested
+    class RequestScope {
+        @RequestScoped
+        static class RequestScopedComponent {
+        }
+
+        @Test
+        void should_create_resource_context_within_request_scope() {
+            ContextConfig config = new ContextConfig();
+            config.bindComponent(RequestScopedComponent.class, RequestScopedComponent.class);
+            Context context = config.getContext();
+
+            List<RequestScopedComponent> components = new CopyOnWriteArrayList<>();
+            when(runtime.createResourceContext(any(), any())).thenAnswer(invocation -> {
+                components.add(context.get(ComponentRef.of(RequestScopedComponent.class)));
+                components.add(context.get(ComponentRef.of(RequestScopedComponent.class)));
+                return resourceContext;
+            });
+            response().returnFrom(router);
+
+            get("/test");
+            get("/test");
+            assertEquals(4, components.size());
+            assertSame(components.get(0), components.get(1));
+            assertNotSame(components.get(1), components.get(2));
+        }
+
+        @Test
+        void should_recycle_request_state_after_response_written() {
+            List<UriInfo> uriInfos = new CopyOnWriteArrayList<>();
+            when(runtime.createResourceContext(any(), any())).thenAnswer(invocation -> {
+                UriInfoBuilder builder = RequestState.acquire(invocation.getArgument(0));
+                builder.addMatchedResource("resource");
+                uriInfos.add(builder.createUriInfo());
+                return resourceContext;
+            });
+            response().returnFrom(router);
+
+            get("/test");
+            assertEquals(1, uriInfos.size());
+            assertThrows(IllegalStateException.class, () -> uriInfos.get(0).getMatchedResources());
+        }
+    }
+
     @TestFactory
     List<DynamicTest> RespondWhenExtensionMissing() {
         List<DynamicTest> tests = new ArrayList<>();
@@ -246,6 +871,22 @@ public class ResourceServletTest extends ServletTest {
         return callers;
     }
 
+    private static MessageBodyWriter<String> stringWriter() {
+        return new MessageBodyWriter<>() {
+            @Override
+            public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+                return false;
+            }
+
+            @Override
+            public void writeTo(String s, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+                PrintWriter writer = new PrintWriter(entityStream);
+                writer.write(s);
+                writer.flush();
+            }
+        };
+    }
+
     OutboundResponseBuilder response() {
         return new OutboundResponseBuilder();
     }
@@ -297,19 +938,7 @@ public class ResourceServletTest extends ServletTest {
         private void stubMessageBodyWriter() {
             if (Objects.isNull(entity)) return;
             when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), same(annotations), eq(mediaType)))
-                    .thenReturn(new MessageBodyWriter<String>() {
-                        @Override
-                        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations1, MediaType mediaType1) {
-                            return false;
-                        }
-
-                        @Override
-                        public void writeTo(String s, Class<?> type, Type genericType, Annotation[] annotations1, MediaType mediaType1, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
-                            PrintWriter writer = new PrintWriter(entityStream);
-                            writer.write(s);
-                            writer.flush();
-                        }
-                    });
+                    .thenReturn(stringWriter());
         }
 
         private OutboundResponse build() {
@@ -0,0 +1,236 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.HttpHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author qiubaisen
+ * @date 2023/3/1
+ */
+public class ResponseCacheTest {
+    private long now;
+    private ResponseCache cache;
+
+    @BeforeEach
+    void before() {
+        cache = new ResponseCache(10_000, () -> now);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', nullValues = "null", textBlock = """
+            max-age=60                  | 60
+            public, max-age=60          | 60
+            max-age=60, s-maxage=10     | 10
+            max-age="30"                | 30
+            no-store                    | -1
+            no-cache, max-age=60        | -1
+            private, max-age=60         | -1
+            must-revalidate             | -1
+            max-age=abc                 | -1
+            null                        | -1
+            """)
+    void should_compute_max_age_from_cache_control(String cacheControl, long maxAge) {
+        assertEquals(maxAge, ResponseCache.maxAge(cacheControl));
+    }
+
+    @ParameterizedTest(name = "{0}, encoded: {1}")
+    @CsvSource(delimiter = '|', nullValues = "null", textBlock = """
+            null                        | false | true
+            Accept                      | false | true
+            accept, Accept-Encoding     | false | true
+            Accept-Encoding             | true  | false
+            Accept, Cookie              | false | false
+            *                           | false | false
+            """)
+    void should_only_cache_response_varying_on_headers_in_key(String vary, boolean encoded, boolean keyed) {
+        assertEquals(keyed, ResponseCache.keyed(vary, encoded));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', nullValues = "null", textBlock = """
+            public, max-age=60          | true
+            max-age=60, Public          | true
+            max-age=60                  | false
+            null                        | false
+            """)
+    void should_share_response_with_public_cache_control(String cacheControl, boolean shared) {
+        assertEquals(shared, ResponseCache.shared(cacheControl));
+    }
+
+    @Test
+    void should_not_use_cache_for_request_with_authorization_or_no_cache() {
+        assertTrue(ResponseCache.cacheable(request(null, null)));
+        assertFalse(ResponseCache.cacheable(request(HttpHeaders.AUTHORIZATION, "Basic dXNlcg==")));
+        assertFalse(ResponseCache.cacheable(request(HttpHeaders.CACHE_CONTROL, "no-cache")));
+        assertFalse(ResponseCache.cacheable(request(HttpHeaders.CACHE_CONTROL, "No-Store")));
+    }
+
+    @Test
+    void should_store_content_off_heap() {
+        cache.put(key("/users/1"), 200, new String[]{HttpHeaders.CONTENT_TYPE, "application/json"}, bytes("{}"), 60);
+
+        ResponseCache.Entry entry = cache.get(key("/users/1"));
+        assertEquals(200, entry.status());
+        assertEquals("application/json", entry.header("content-type"));
+        assertTrue(entry.body().isDirect());
+        assertEquals("{}", StandardCharsets.UTF_8.decode(entry.body().duplicate()).toString());
+    }
+
+    @Test
+    void should_count_hits_and_misses() {
+        cache.put(key("/users/1"), 200, new String[0], bytes("1"), 60);
+
+        cache.get(key("/users/1"));
+        cache.get(key("/users/2"));
+        cache.get(key("/users/1"));
+
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(2.0 / 3, cache.hitRate());
+    }
+
+    @Test
+    void should_expire_entry_after_max_age() {
+        cache.put(key("/users/1"), 200, new String[0], bytes("1"), 60);
+
+        now += TimeUnit.SECONDS.toNanos(59);
+        assertNotNull(cache.get(key("/users/1")));
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertNull(cache.get(key("/users/1")));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void should_not_store_entry_larger_than_capacity() {
+        assertNull(cache.put(key("/large"), 200, new String[0], new byte[10_000], 60));
+        assertEquals(0, cache.size());
+    }
+
+    @Nested
+    class Invalidate {
+        @BeforeEach
+        void before() {
+            cache.put(new ResponseCache.Key("/users/1", null, "application/json"), 200, new String[0], bytes("1"), 60);
+            cache.put(new ResponseCache.Key("/users/1", "fields=name", "application/json"), 200, new String[0], bytes("1"), 60);
+            cache.put(new ResponseCache.Key("/users/2", null, "application/json"), 200, new String[0], bytes("2"), 60);
+        }
+
+        @Test
+        void should_invalidate_all_variants_of_path() {
+            cache.invalidate("/users/1");
+
+            assertEquals(1, cache.size());
+            assertNotNull(cache.get(new ResponseCache.Key("/users/2", null, "application/json")));
+        }
+
+        @Test
+        void should_invalidate_all() {
+            cache.invalidateAll();
+
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.weightedSize());
+        }
+    }
+
+    @Nested
+    class Eviction {
+        @Test
+        void should_keep_weighted_size_within_capacity() {
+            for (int i = 0; i < 100; i++) cache.put(key("/users/" + i), 200, new String[0], new byte[500], 60);
+
+            assertTrue(cache.weightedSize() <= 10_000);
+            assertEquals(cache.size(), (int) (cache.weightedSize() / 500));
+            assertTrue(cache.evictions() > 0);
+        }
+
+        @Test
+        void should_keep_frequently_used_entries_during_scan() {
+            for (int i = 0; i < 10; i++) cache.put(key("/hot/" + i), 200, new String[0], new byte[500], 60);
+            for (int round = 0; round < 5; round++)
+                for (int i = 0; i < 10; i++) cache.get(key("/hot/" + i));
+
+            for (int i = 0; i < 200; i++) cache.put(key("/scan/" + i), 200, new String[0], new byte[500], 60);
+
+            for (int i = 0; i < 10; i++) assertNotNull(cache.get(key("/hot/" + i)), "/hot/" + i);
+        }
+
+        @Test
+        void should_count_frequency_while_lock_held_by_other_thread() throws Exception {
+            ResponseCache.Key key = key("/users/1");
+            cache.put(key, 200, new String[0], new byte[500], 60);
+            int frequency = cache.frequency(key);
+
+            CountDownLatch locked = new CountDownLatch(1), done = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                cache.lock.lock();
+                try {
+                    locked.countDown();
+                    done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    cache.lock.unlock();
+                }
+            });
+            holder.start();
+            locked.await();
+            try {
+                for (int i = 0; i < 3; i++) assertNotNull(cache.get(key));
+            } finally {
+                done.countDown();
+                holder.join();
+            }
+
+            assertEquals(frequency + 3, cache.frequency(key));
+            assertEquals(3, cache.hits());
+        }
+
+        @Test
+        void should_halve_frequencies_after_sample_size() {
+            ResponseCache.FrequencySketch sketch = new ResponseCache.FrequencySketch(16);
+            for (int i = 0; i < 15; i++) sketch.increment(1);
+            assertEquals(15, sketch.frequency(1));
+
+            for (int i = 2; sketch.frequency(1) == 15; i++) sketch.increment(i);
+            assertEquals(7, sketch.frequency(1));
+        }
+
+        @Test
+        void should_replace_entry_of_same_key() {
+            cache.put(key("/users/1"), 200, new String[0], new byte[500], 60);
+            cache.put(key("/users/1"), 200, new String[0], new byte[300], 60);
+
+            assertEquals(1, cache.size());
+            assertEquals(300, cache.weightedSize());
+        }
+    }
+
+    private static ResponseCache.Key key(String path) {
+        return new ResponseCache.Key(path, null, "");
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static HttpServletRequest request(String name, String value) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        if (name != null) when(request.getHeader(name)).thenReturn(value);
+        return request;
+    }
+}
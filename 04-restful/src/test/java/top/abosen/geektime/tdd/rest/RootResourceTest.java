@@ -8,6 +8,7 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.UriInfo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
@@ -15,8 +16,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * @author qiubaisen
@@ -53,7 +53,7 @@ public class RootResourceTest {
         UriInfoBuilder builder = new StubUriInfoBuilder();
         ResourceRouter.Resource resource = new ResourceHandler(Messages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match(path).get();
-        ResourceRouter.ResourceMethod method = resource.match(result, httpMethod, new String[]{MediaType.TEXT_PLAIN}, context, builder).get();
+        ResourceRouter.ResourceMethod method = resource.match(result, httpMethod, Negotiation.of(MediaType.TEXT_PLAIN, null), context, builder).get();
         assertEquals(resourceMethod, method.toString());
     }
 
@@ -66,7 +66,7 @@ public class RootResourceTest {
         UriInfoBuilder builder = new StubUriInfoBuilder();
         ResourceRouter.Resource resource = new ResourceHandler(Messages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match(uri).get();
-        assertTrue(resource.match(result, httpMethod, new String[]{MediaType.TEXT_PLAIN}, context, builder).isEmpty());
+        assertTrue(resource.match(result, httpMethod, Negotiation.of(MediaType.TEXT_PLAIN, null), context, builder).isEmpty());
     }
 
     @Test
@@ -79,7 +79,7 @@ public class RootResourceTest {
         ResourceRouter.Resource resource = new ResourceHandler(Messages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages").get();
         StubUriInfoBuilder uriInfoBuilder = new StubUriInfoBuilder();
-        resource.match(result, "GET", new String[]{MediaType.TEXT_PLAIN}, context, uriInfoBuilder);
+        resource.match(result, "GET", Negotiation.of(MediaType.TEXT_PLAIN, null), context, uriInfoBuilder);
 
         assertTrue(uriInfoBuilder.getLastMatchedResource() instanceof Messages);
     }
@@ -90,7 +90,7 @@ public class RootResourceTest {
 
         ResourceRouter.Resource resource = new ResourceHandler(Messages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/1").get();
-        resource.match(result, "GET", new String[]{MediaType.TEXT_PLAIN}, context, uriInfoBuilder);
+        resource.match(result, "GET", Negotiation.of(MediaType.TEXT_PLAIN, null), context, uriInfoBuilder);
 
         assertTrue(uriInfoBuilder.getLastMatchedResource() instanceof Message);
         UriInfo uriInfo = uriInfoBuilder.createUriInfo();
@@ -98,6 +98,20 @@ public class RootResourceTest {
         assertEquals(List.of("1"), uriInfo.getPathParameters().get("id"));
     }
 
+    @Test
+    void should_add_matched_paths_of_resource_and_sub_resources_to_uri_info_builder() {
+        UriInfoBuilder uriInfoBuilder = spy(new StubUriInfoBuilder());
+
+        ResourceRouter.Resource resource = new ResourceHandler(Messages.class);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/1/body").get();
+        resource.match(result, "GET", Negotiation.of(MediaType.TEXT_PLAIN, null), context, uriInfoBuilder);
+
+        InOrder inOrder = inOrder(uriInfoBuilder);
+        inOrder.verify(uriInfoBuilder).addMatchedPath("/1/body");
+        inOrder.verify(uriInfoBuilder).addMatchedPath("/body");
+        inOrder.verify(uriInfoBuilder).addMatchedPath(null);
+    }
+
     @Path("/messages")
     static class Messages {
         @GET
@@ -0,0 +1,54 @@
+package top.abosen.geektime.tdd.rest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author qiubaisen
+ * @date 2023/2/20
+ */
+public class RouteTrieTest {
+    record Route(String template, UriTemplate getUriTemplate) implements UriHandler {
+        Route(String template) {
+            this(template, new PathTemplate(template));
+        }
+    }
+
+    static final List<Route> routes = Stream.of("/users", "/users/{id}", "/users/{id:[0-9]+}", "/users/me",
+            "/users/me/orders", "/{resources}/1234", "/{resources}/{id}/orders", "/orders/{id}", "/orders.json",
+            "/", "/{any}").map(Route::new).toList();
+
+    @Test
+    void should_only_return_candidates_whose_literal_segments_are_prefix_of_path() {
+        RouteTrie<Route> trie = new RouteTrie<>(routes);
+
+        assertEquals(List.of("/users", "/users/{id}", "/users/{id:[0-9]+}", "/users/me", "/users/me/orders",
+                        "/{resources}/1234", "/{resources}/{id}/orders", "/orders.json", "/{any}"),
+                trie.candidates("/users/me/orders").stream().map(Route::template).toList());
+        assertEquals(List.of("/{resources}/1234", "/{resources}/{id}/orders", "/orders.json", "/{any}"),
+                trie.candidates("/missing").stream().map(Route::template).toList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/users", "/users/1", "/users/me", "/users/me/orders", "/users/1234", "/orders/1",
+            "/orders.json", "/items/1/orders", "/", "/missing", "", "users"})
+    void should_match_same_handler_as_scanning_all_handlers(String path) {
+        RouteTrie<Route> trie = new RouteTrie<>(routes);
+
+        assertEquals(scan(path, routes), UriHandlers.match(path, trie));
+    }
+
+    private static Optional<Route> scan(String path, List<Route> routes) {
+        return routes.stream()
+                .filter(it -> it.getUriTemplate().match(path).isPresent())
+                .min(Comparator.comparing(it -> it.getUriTemplate().match(path).get()));
+    }
+}
@@ -28,7 +28,9 @@ public abstract class ServletTest {
         server.addConnector(connector);
 
         ServletContextHandler handler = new ServletContextHandler(server, "/");
-        handler.addServlet(new ServletHolder(getServlet()), "/");
+        ServletHolder holder = new ServletHolder(getServlet());
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder, "/");
 
         server.setHandler(handler);
         server.start();
@@ -45,6 +47,31 @@ public abstract class ServletTest {
         return new URL(new URL("http://localhost:8080/"), path).toURI();
     }
 
+    /**
+     * @param headers 依次为名称和值
+     */
+    protected HttpResponse<String> request(String method, String path, String... headers) {
+        return send(method, path, HttpResponse.BodyHandlers.ofString(), headers);
+    }
+
+    /**
+     * 按原样读取实体, 用于检查压缩后的内容
+     */
+    protected HttpResponse<byte[]> bytes(String path, String... headers) {
+        return send("GET", path, HttpResponse.BodyHandlers.ofByteArray(), headers);
+    }
+
+    private <T> HttpResponse<T> send(String method, String path, HttpResponse.BodyHandler<T> handler, String... headers) {
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest.Builder request = HttpRequest.newBuilder(path(path)).method(method, HttpRequest.BodyPublishers.noBody());
+            if (headers.length > 0) request.headers(headers);
+            return client.send(request.build(), handler);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     protected HttpResponse<String> get(String path) {
         try {
 
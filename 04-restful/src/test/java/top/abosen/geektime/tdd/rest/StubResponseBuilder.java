@@ -18,7 +18,9 @@ public class StubResponseBuilder extends Response.ResponseBuilder {
 
     private Object entity;
     private int status;
+    private MediaType mediaType;
     private Set<String> allowed = new HashSet<>();
+    private MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
 
     @Override
     public Response build() {
@@ -28,7 +30,8 @@ public class StubResponseBuilder extends Response.ResponseBuilder {
         when(response.getStatus()).thenReturn(status);
         when(response.getStatusInfo()).thenReturn(Response.Status.fromStatusCode(status));
         when(response.getAllowedMethods()).thenReturn(allowed);
-        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        when(response.getHeaders()).thenReturn(headers);
+        when(response.getMediaType()).thenReturn(mediaType);
         return response;
     }
 
@@ -83,6 +86,7 @@ public class StubResponseBuilder extends Response.ResponseBuilder {
 
     @Override
     public Response.ResponseBuilder header(String name, Object value) {
+        headers.add(name, value);
         return this;
     }
 
@@ -103,6 +107,7 @@ public class StubResponseBuilder extends Response.ResponseBuilder {
 
     @Override
     public Response.ResponseBuilder type(MediaType type) {
+        this.mediaType = type;
         return this;
     }
 
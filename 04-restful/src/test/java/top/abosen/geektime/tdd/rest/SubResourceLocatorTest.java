@@ -3,6 +3,7 @@ package top.abosen.geektime.tdd.rest;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.ext.RuntimeDelegate;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -67,7 +69,7 @@ class SubResourceLocatorTest extends InjectableCallerTest {
     @Override
     protected void callInjectable(String method, Class<?> type) throws NoSuchMethodException {
         SubResourceLocators.SubResourceLocator locator = new SubResourceLocators.SubResourceLocator(SubResourceMethods.class.getMethod(method, type));
-        locator.match(result, "GET", new String[0], context, builder).get();
+        locator.match(result, "GET", Negotiation.NONE, context, builder).get();
     }
 
     @Test
@@ -78,6 +80,17 @@ class SubResourceLocatorTest extends InjectableCallerTest {
         verify(builder).addMatchedPathParameter(same(matchedPathParameters));
     }
 
+    @Test
+    void should_reuse_resource_methods_of_same_sub_resource_class() throws NoSuchMethodException {
+        parameters.put("param", List.of("param"));
+        SubResourceLocators.SubResourceLocator locator = new SubResourceLocators.SubResourceLocator(SubResourceMethods.class.getMethod("getPathParam", String.class));
+
+        ResourceRouter.ResourceMethod first = locator.match(result, "GET", Negotiation.NONE, context, builder).get();
+        ResourceRouter.ResourceMethod second = locator.match(result, "GET", Negotiation.NONE, context, builder).get();
+
+        assertSame(first, second);
+    }
+
     @Test
     void should_not_wrap_around_web_application_exception() {
         parameters.put("param", List.of("param"));
@@ -151,6 +164,9 @@ class SubResourceLocatorTest extends InjectableCallerTest {
         @Path("/message")
         Message getContext(@Context UriInfo uriInfo);
 
+        @Path("/message")
+        Message getContext(@Context Request request);
+
         @Path("/message")
         Message throwWebApplicationException(@PathParam("param") String value);
     }
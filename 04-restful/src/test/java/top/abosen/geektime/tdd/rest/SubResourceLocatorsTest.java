@@ -32,7 +32,7 @@ public class SubResourceLocatorsTest {
         infoBuilder.addMatchedResource(new Messages());
         SubResourceLocators locators = new SubResourceLocators(Messages.class.getMethods());
         Optional<ResourceRouter.ResourceMethod> method = locators.findSubResourceMethod(
-                path, "GET", new String[]{MediaType.TEXT_PLAIN}, mock(ResourceContext.class), infoBuilder);
+                path, "GET", Negotiation.of(MediaType.TEXT_PLAIN, null), mock(ResourceContext.class), infoBuilder);
         assertTrue(method.isPresent());
 
         assertEquals(message, ((Message) infoBuilder.getLastMatchedResource()).message);
@@ -48,7 +48,7 @@ public class SubResourceLocatorsTest {
         infoBuilder.addMatchedResource(new Messages());
         SubResourceLocators locators = new SubResourceLocators(Messages.class.getMethods());
         Optional<ResourceRouter.ResourceMethod> method = locators.findSubResourceMethod(
-                path, "GET", new String[]{MediaType.TEXT_PLAIN}, mock(ResourceContext.class), infoBuilder);
+                path, "GET", Negotiation.of(MediaType.TEXT_PLAIN, null), mock(ResourceContext.class), infoBuilder);
         assertTrue(method.isEmpty());
     }
 
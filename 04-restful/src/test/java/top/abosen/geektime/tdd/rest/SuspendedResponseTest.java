@@ -0,0 +1,88 @@
+package top.abosen.geektime.tdd.rest;
+
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author qiubaisen
+ * @date 2023/2/25
+ */
+public class SuspendedResponseTest {
+    private SuspendedResponse response;
+
+    @BeforeEach
+    void before() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenAnswer(it -> new StubResponseBuilder());
+        response = new SuspendedResponse();
+    }
+
+    private CompletableFuture<Object> future() {
+        return response.stage().toCompletableFuture();
+    }
+
+    @Test
+    void should_complete_stage_with_resumed_value() throws Exception {
+        assertTrue(response.isSuspended());
+        assertTrue(response.resume("resumed"));
+
+        assertEquals("resumed", future().get());
+        assertTrue(response.isDone());
+        assertFalse(response.resume("again"));
+    }
+
+    @Test
+    void should_complete_stage_with_service_unavailable_if_cancelled() throws Exception {
+        assertTrue(response.cancel());
+
+        assertTrue(response.isCancelled());
+        assertTrue(response.cancel());
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), ((Response) future().get()).getStatus());
+    }
+
+    @Test
+    void should_not_cancel_resumed_response() {
+        response.resume("resumed");
+
+        assertFalse(response.cancel());
+        assertFalse(response.isCancelled());
+    }
+
+    @Test
+    void should_complete_stage_exceptionally_if_timeout_without_handler() {
+        response.setTimeout(10, TimeUnit.MILLISECONDS);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future().get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceUnavailableException.class, exception.getCause());
+    }
+
+    @Test
+    void should_call_timeout_handler_if_timeout() throws Exception {
+        response.setTimeoutHandler(it -> it.resume("timeout"));
+        response.setTimeout(10, TimeUnit.MILLISECONDS);
+
+        assertEquals("timeout", future().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void should_call_completion_callback_when_completed() {
+        CompletionCallback callback = mock(CompletionCallback.class);
+        assertEquals(Set.of(CompletionCallback.class), response.register(callback));
+
+        response.resume("resumed");
+        verify(callback).onComplete(isNull());
+    }
+}